@@ -23,6 +23,7 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
 import android.content.DialogInterface;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.support.design.widget.FloatingActionButton;
@@ -30,19 +31,23 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.BaseAdapter;
 import android.widget.CheckBox;
 import android.widget.ListView;
 import android.widget.Spinner;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.github.koszoaron.uninav.R;
 import com.github.koszoaron.uninav.Util;
-import com.github.koszoaron.uninav.footpath.core.BestFitPositioner;
 import com.github.koszoaron.uninav.footpath.graph.Graph;
-import com.github.koszoaron.uninav.footpath.graph.GraphEdge;
+import com.github.koszoaron.uninav.footpath.graph.GraphFile;
 import com.github.koszoaron.uninav.footpath.graph.GraphNode;
+import com.github.koszoaron.uninav.footpath.graph.Route;
+import com.github.koszoaron.uninav.footpath.graph.RouteSimplifier;
+import com.github.koszoaron.uninav.footpath.graph.RoutingProfile;
+import com.github.koszoaron.uninav.footpath.graph.SearchMode;
+import com.github.koszoaron.uninav.overlay.GraphOverlays;
 
 import org.osmdroid.bonuspack.overlays.Polyline;
 import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
@@ -53,16 +58,18 @@ import org.osmdroid.views.overlay.OverlayItem;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
 
 /**
  *
  * @author Aron Koszo <koszoaron@gmail.com>
  */
 public class MainActivity extends AppCompatActivity {
+    private static final String COMPILED_GRAPH_ASSET = "ir1.graph";
+    private static final String COMPILED_HIERARCHY_ASSET = "ir1.ch";
+    private static final String COMPILED_ROOM_TABLE_ASSET = "ir1.rt";
 
     private ListView lvDrawer;
     private MapView mvOsm;
@@ -82,7 +89,7 @@ public class MainActivity extends AppCompatActivity {
     private List<String> roomsList;
     private Graph graph;
     private double pathLength = 0.0;
-    private List<GraphEdge> pathEdges;
+    private final RouteSimplifier pathSegments = new RouteSimplifier();  /* the current path */
 
     private View.OnClickListener buttonClickListener = new View.OnClickListener() {
         @Override
@@ -184,15 +191,67 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Spinner adapter showing a hint followed by the room names. The names are read from the
+     * list of the graph, so they are not copied for every spinner.
+     */
+    private class RoomsAdapter extends BaseAdapter {
+        private final String hint;
+
+        public RoomsAdapter(String hint) {
+            this.hint = hint;
+        }
+
+        @Override
+        public int getCount() {
+            return roomsList.size() + 1;
+        }
+
+        @Override
+        public String getItem(int i) {
+            return (i == 0) ? hint : roomsList.get(i - 1);
+        }
+
+        @Override
+        public long getItemId(int i) {
+            return i;
+        }
+
+        @Override
+        public View getView(int i, View convertView, ViewGroup parent) {
+            return createView(i, convertView, parent, android.R.layout.simple_spinner_item);
+        }
+
+        @Override
+        public View getDropDownView(int i, View convertView, ViewGroup parent) {
+            return createView(i, convertView, parent, android.R.layout.simple_spinner_dropdown_item);
+        }
+
+        private View createView(int i, View convertView, ViewGroup parent, int layout) {
+            if (convertView == null) {
+                convertView = getLayoutInflater().inflate(layout, parent, false);
+            }
+            ((TextView)convertView).setText(getItem(i));
+
+            return convertView;
+        }
+    }
+
     private void initData() {
-        graph = new Graph(MainActivity.this);
+        graph = new Graph();
 
         try {
-//			graph.addToGraphFromXMLResourceParser(getResources().getXml(R.xml.fesu5_mod));
-            graph.addToGraphFromXMLResourceParser(getResources().getXml(R.xml.ir1));
-            graph.mergeNodes();  /* called after all XML resources have been added */
+            if (loadCompiledGraph()) {
+                loadCompiledHierarchy();
+                loadCompiledRoomTable();
+            } else {
+                /* no graph was compiled at build time, parse the maps */
+//			graph.addToGraphFromXmlPullParser(getResources().getXml(R.xml.fesu5_mod));
+                graph.addToGraphFromXmlPullParser(getResources().getXml(R.xml.ir1));
+                graph.mergeNodes();  /* called after all XML resources have been added */
+            }
 
-            List<Polyline> walls = graph.getWalls(1);
+            List<Polyline> walls = GraphOverlays.createWalls(MainActivity.this, graph, 1);
             if (walls != null && walls.size() > 0) {
                 mvOsm.getOverlays().addAll(walls);
                 mvOsm.invalidate();
@@ -207,8 +266,70 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Memory maps the graph compiled from the maps at build time (see the compileGraphs task of the core module).
+     *
+     * @return true if the graph was loaded.
+     */
+    private boolean loadCompiledGraph() {
+        try {
+            AssetFileDescriptor afd = getAssets().openFd(COMPILED_GRAPH_ASSET);
+            try {
+                FileChannel channel = afd.createInputStream().getChannel();
+                graph.loadCompiledGraph(GraphFile.map(channel, afd.getStartOffset(), afd.getLength()));
+            } finally {
+                afd.close();
+            }
+
+            return true;
+        } catch (IOException e) {
+            Util.logw("Could not load the compiled graph: " + e.getMessage());
+            graph = new Graph();
+
+            return false;
+        }
+    }
+
+    /**
+     * Loads the contraction hierarchy compiled next to the graph and switches the routing to it.
+     * Without it the graph is searched with Dijkstra's algorithm.
+     */
+    private void loadCompiledHierarchy() {
+        try {
+            AssetFileDescriptor afd = getAssets().openFd(COMPILED_HIERARCHY_ASSET);
+            try {
+                FileChannel channel = afd.createInputStream().getChannel();
+                graph.loadContractionHierarchy(channel, afd.getStartOffset(), afd.getLength());
+            } finally {
+                afd.close();
+            }
+
+            graph.setSearchMode(SearchMode.CONTRACTION_HIERARCHY);
+        } catch (IOException e) {
+            Util.logw("Could not load the contraction hierarchy: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the paths between the rooms compiled next to the graph, the routes between two rooms
+     * are read from it without a search.
+     */
+    private void loadCompiledRoomTable() {
+        try {
+            AssetFileDescriptor afd = getAssets().openFd(COMPILED_ROOM_TABLE_ASSET);
+            try {
+                FileChannel channel = afd.createInputStream().getChannel();
+                graph.loadRoomTable(channel, afd.getStartOffset(), afd.getLength());
+            } finally {
+                afd.close();
+            }
+        } catch (IOException e) {
+            Util.logw("Could not load the room table: " + e.getMessage());
+        }
+    }
+
     private void initNavigation() {
-        Stack<GraphNode> navPathStack;
+        Route route;
 
         if (nodeStart == null || nodeDest == null) {
             Toast.makeText(MainActivity.this, R.string.you_must_select_a_destination, Toast.LENGTH_LONG).show();
@@ -220,154 +341,22 @@ public class MainActivity extends AppCompatActivity {
         btnX.setVisibility(View.VISIBLE);
 
 		/* calculate the route */
-        navPathStack = graph.getShortestPath(nodeStart, nodeDest, true, false, true);
-
-        if (navPathStack != null) {
-			/* the navPathStack consists of the correct order of nodes on the path
-			 * from these nodes the corresponding edge is used to get the original
-			 * data connected to it. What has to be recalculated is the initial bearing
-			 * because this is depending on the order of nodes being passed */
-
-			/* list to store the new edges in */
-            List<GraphEdge> tempEdges = new LinkedList<>();
-			/* get the first node
-			 * this is always the 'left' node, when considering
-			 * a path going from left to right. */
-            GraphNode node0 = navPathStack.pop();
-
-            while (!navPathStack.isEmpty()) {
-				/* get the 'right' node */
-                GraphNode node1 = navPathStack.pop();
-				/* get the edge connecting 'left' and 'right' nodes */
-                GraphEdge origEdge = graph.getEdge(node0, node1);
-
-				/* get the data which remains unchanged */
-                double length = origEdge.getLength();
-                float level = origEdge.getLevel();
-                boolean indoor = origEdge.isIndoor();
-
-				/* the direction has to be recalculated */
-                double direction = graph.getInitialBearing(node0.getLat(), node0.getLon(), node1.getLat(), node1.getLon());
-
-				/* create a new edge */
-                GraphEdge tempEdge = new GraphEdge(node0, node1, length, direction, level, indoor);
-				/* update additional values */
-                tempEdge.setElevator(origEdge.isElevator());
-                tempEdge.setStairs(origEdge.isStairs());
-                tempEdge.setSteps(origEdge.getSteps());
-                tempEdges.add(tempEdge);
-
-				/* update the path length */
-                pathLength += origEdge.getLength();
-
-				/* the 'right' node is the new 'left' node */
-                node0 = node1;
-            }
+        route = graph.getRoute(nodeStart, nodeDest, RoutingProfile.of(true, false, true));
 
-			/* now that we have the correct order of nodes and initial bearings of edges
-			 * we look for successive edges with little difference in their bearing
-			 * to simplify the path and have less but longer edges */
-
-			/* allow a difference of 5 degrees to both sides */
-            double diff = 8.0;
-            List<GraphEdge> simplifiedEdges = new LinkedList<>();
-			/* the current edge to find equaling edges to */
-            GraphEdge edgeI;
-			/* the first node of the current edge */
-            GraphNode nodeI0;
-			/* this will be the last node of the last edge equaling edgeI */
-            GraphNode nodeX1 = null;
-
-			/* the data to sum up for the merging */
-            float level;
-            boolean indoor;
-            boolean stairs;
-            boolean elevator;
-            int steps;
-            int lastI = -1;
-
-			/* iterate over all edges */
-            for (int i = 0; i < tempEdges.size(); i++) {
-                edgeI = tempEdges.get(i);
-                nodeI0 = tempEdges.get(i).getNode0();
-                level = edgeI.getLevel();
-                indoor = edgeI.isIndoor();
-                stairs = edgeI.isStairs();
-                elevator = edgeI.isElevator();
-                steps = edgeI.getSteps();
-
-                lastI = i;
-                for (int j = i + 1; j < tempEdges.size(); j++) {
-                    GraphEdge edgeJ = tempEdges.get(j);
-					/* only merge edges if they are identical in their characteristics */
-                    if (edgeI.getLevel() == edgeJ.getLevel()
-                            && edgeI.isElevator() == edgeJ.isElevator()
-                            && edgeI.isIndoor() == edgeJ.isIndoor()
-                            && edgeI.isStairs() == edgeJ.isStairs()
-                            && BestFitPositioner.isInRange(edgeI.getCompDir(), tempEdges.get(j).getCompDir(), diff)) {
-
-						/* edge_i and edge_j can be merged
-						 * save the last node1 of last edge_j equaling edge_i */
-                        nodeX1 = edgeJ.getNode1();
-
-						/* set the number of steps only if defined (-1 := undefined, but steps) */
-                        if (steps != -1) {
-							/* only change 0 or defined steps */
-                            if (edgeJ.getSteps() != -1) {
-                                steps += edgeJ.getSteps();
-                            } else {
-								/* edge_j has no defined step count so set to undefined */
-                                steps = -1;
-                            }
-                        }
-                    } else {
-						/* edge_i and edge_j can not be merged
-						 * merge possible previously found edges and add them */
-
-						/* point to the latest edge to try matching from */
-                        i = j-1;
-
-						/* nothing can be merged, leave edge_i as is */
-                        if (nodeX1 == null) {
-							/* add the same edge_i */
-                            simplifiedEdges.add(edgeI);
-
-                            break;
-                        } else {
-							/* add the modified new edge */
-                            double bearing = graph.getInitialBearing(nodeI0.getLat(), nodeI0.getLon(), nodeX1.getLat(), nodeX1.getLon());
-                            double length = graph.getDistance(nodeI0.getLat(), nodeI0.getLon(), nodeX1.getLat(), nodeX1.getLon());
-                            GraphEdge tempEdge = new GraphEdge(nodeI0, nodeX1, length, bearing, level, indoor);
-
-                            tempEdge.setElevator(elevator);
-                            tempEdge.setStairs(stairs);
-                            tempEdge.setSteps(steps);
-                            simplifiedEdges.add(tempEdge);
-
-							/* reset the last node to null to distinguish if something has to be merged */
-                            nodeX1 = null;
-
-                            break;
-                        }
-                    }
-                }
-            }
-
-            if (lastI != -1) {
-                for (int i = lastI; i < tempEdges.size(); i++) {
-                    simplifiedEdges.add(tempEdges.get(i));
-                }
-            }
-
-			/* set the current path */
-            pathEdges = simplifiedEdges;
+        if (route != null) {
+			/* the route holds the edges in the order of walking with their bearings,
+			 * successive edges with little difference in their bearing are merged
+			 * to have less but longer edges */
+            pathLength += route.getLength();
+            pathSegments.simplify(route, RouteSimplifier.DEFAULT_TOLERANCE);
 
 			/* load fancy graphics */
 
             Polyline p = new Polyline(MainActivity.this);
             List<GeoPoint> tempList = new ArrayList<>();
-            for (GraphEdge e : pathEdges) {
-                tempList.add(new GeoPoint(e.getNode0().getLat(), e.getNode0().getLon()));
+            for (int i = 0; i < pathSegments.getSegmentCount(); i++) {
+                GraphNode node = pathSegments.getStartNode(i);
+                tempList.add(new GeoPoint(node.getLat(), node.getLon()));
             }
             p.setPoints(tempList);
             p.setWidth(2);
@@ -375,18 +364,20 @@ public class MainActivity extends AppCompatActivity {
             mvOsm.getOverlays().add(p);
 
 
-            GeoPoint startPoint = new GeoPoint(pathEdges.get(1).getNode0().getLat(), pathEdges.get(1).getNode0().getLon());
-            //GraphNode startNode = graph.getNodeFromName(nodeStart);
-            //GeoPoint startPoint = new GeoPoint(startNode.getLat(), startNode.getLon());
-            OverlayItem item = new OverlayItem("", "", startPoint);
-            item.setMarker(getResources().getDrawable(R.drawable.arrowred));
-            List<OverlayItem> oList = new ArrayList<>();
-            oList.add(item);
-            ItemizedIconOverlay overlay = new ItemizedIconOverlay(MainActivity.this, oList, null);
-            mvOsm.getOverlays().add(overlay);
+            if (pathSegments.getSegmentCount() > 1) {  /* the marker is at the start of the second segment */
+                GeoPoint startPoint = new GeoPoint(pathSegments.getStartNode(1).getLat(), pathSegments.getStartNode(1).getLon());
+                //GraphNode startNode = graph.getNodeFromName(nodeStart);
+                //GeoPoint startPoint = new GeoPoint(startNode.getLat(), startNode.getLon());
+                OverlayItem item = new OverlayItem("", "", startPoint);
+                item.setMarker(getResources().getDrawable(R.drawable.arrowred));
+                List<OverlayItem> oList = new ArrayList<>();
+                oList.add(item);
+                ItemizedIconOverlay overlay = new ItemizedIconOverlay(MainActivity.this, oList, null);
+                mvOsm.getOverlays().add(overlay);
+            }
 
             mvOsm.invalidate();
-        } else { /* navPathStack was null */
+        } else { /* the destination is not reachable */
             this.setResult(RESULT_CANCELED);
             this.finish();
         }
@@ -403,20 +394,12 @@ public class MainActivity extends AppCompatActivity {
             AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
             View dialogView = getActivity().getLayoutInflater().inflate(R.layout.dialog_navigation, null);
 
-            final List<String> tempLocList = new LinkedList<>(roomsList);
-            tempLocList.add(0, getString(R.string.select_or_click_find));
-
+            final RoomsAdapter locationAdapter = new RoomsAdapter(getString(R.string.select_or_click_find));
             final Spinner spLocation = (Spinner) dialogView.findViewById(R.id.spLocation);
-            ArrayAdapter<String> locationAdapter = new ArrayAdapter<>(MainActivity.this, android.R.layout.simple_spinner_item, tempLocList);
-            locationAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
             spLocation.setAdapter(locationAdapter);
 
-            final List<String> tempDestList = new LinkedList<>(roomsList);
-            tempDestList.add(0, getString(R.string.select_a_destination));
-
+            final RoomsAdapter destinationAdapter = new RoomsAdapter(getString(R.string.select_a_destination));
             final Spinner spDestination = (Spinner) dialogView.findViewById(R.id.spDestination);
-            ArrayAdapter<String> destinationAdapter = new ArrayAdapter<>(MainActivity.this, android.R.layout.simple_spinner_item, tempDestList);
-            destinationAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
             spDestination.setAdapter(destinationAdapter);
 
             builder.setView(dialogView)
@@ -429,8 +412,8 @@ public class MainActivity extends AppCompatActivity {
 
                             if (spDestination.getSelectedItemPosition() != 0) {
                                 if (spLocation.getSelectedItemPosition() != 0) {
-                                    nodeStart = tempLocList.get(spLocation.getSelectedItemPosition());
-                                    nodeDest = tempDestList.get(spDestination.getSelectedItemPosition());
+                                    nodeStart = locationAdapter.getItem(spLocation.getSelectedItemPosition());
+                                    nodeDest = destinationAdapter.getItem(spDestination.getSelectedItemPosition());
 
                                     Util.logv("Start: " + nodeStart + ", destination: " + nodeDest);
 
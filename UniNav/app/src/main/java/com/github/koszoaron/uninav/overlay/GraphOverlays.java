@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.overlay;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.osmdroid.bonuspack.overlays.Polyline;
+import org.osmdroid.util.GeoPoint;
+
+import com.github.koszoaron.uninav.footpath.graph.Graph;
+import com.github.koszoaron.uninav.pojo.Location;
+
+import android.content.Context;
+
+/**
+ * Creates the osmdroid overlays of a {@link Graph}.
+ * 
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class GraphOverlays {
+	private static final float WALL_WIDTH = 1.0f;
+	
+	/**
+	 * Private constructor.
+	 */
+	private GraphOverlays() {}
+	
+	/**
+	 * Creates a polyline for every wall of the graph.
+	 * 
+	 * @param context The context of the map view.
+	 * @param graph The graph.
+	 * @param level The level to show.
+	 * @return The wall overlays.
+	 */
+	public static List<Polyline> createWalls(Context context, Graph graph, float level) {
+		List<Polyline> res = new LinkedList<>();
+		
+		for (Location[] wall : graph.getWalls(level)) {
+			res.add(createPolyline(context, wall, WALL_WIDTH));
+		}
+		
+		return res;
+	}
+	
+	/**
+	 * Creates a polyline from the given points, the elevation of a point is used as its altitude.
+	 * 
+	 * @param context The context of the map view.
+	 * @param points The points of the line.
+	 * @param width The width of the line.
+	 * @return The polyline.
+	 */
+	public static Polyline createPolyline(Context context, Location[] points, float width) {
+		Polyline pl = new Polyline(context);
+		pl.setWidth(width);
+		
+		List<GeoPoint> geoPoints = new ArrayList<>(points.length);
+		for (Location p : points) {
+			geoPoints.add(new GeoPoint(p.getLatitude(), p.getLongitude(), p.getElevation()));
+		}
+		pl.setPoints(geoPoints);
+		
+		return pl;
+	}
+}
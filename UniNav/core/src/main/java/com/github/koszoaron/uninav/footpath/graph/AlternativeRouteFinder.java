@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds alternatives of the shortest path with the plateau method (choice routing).
+ *
+ * A full search from the source and a backward search from the target are run until their
+ * distances exceed the stretch limit. A node settled by both gives a via path: its tree path
+ * from the source followed by its tree path to the target. The arcs which are on both trees
+ * form plateaus, every node of a plateau gives the same via path, so one path is built per
+ * plateau. A long plateau is a section which is the shortest path between its ends, so only
+ * paths with long plateaus are kept, which avoids detours. The paths must also be loopless and
+ * must not share too much with the routes already chosen.
+ *
+ * Both trees are built once, so a few alternatives cost about two searches. The searches and
+ * the choosing of the paths stop when the time budget runs out, but the shortest path is always
+ * returned if the target is reachable.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class AlternativeRouteFinder {
+	public static final double DEFAULT_STRETCH = 1.25;  /* the longest alternative compared to the shortest path */
+	public static final double DEFAULT_SHARING = 0.75;  /* the largest part shared with a better route */
+	public static final double DEFAULT_PLATEAU = 0.2;  /* the shortest plateau compared to the shortest path */
+
+	private static final int BUDGET_CHECK_INTERVAL = 256;  /* settled nodes between checks of the clock */
+
+	private final RoutingGraph graph;
+	private final NodeIndex nodeIndex;
+	private final Closures closures;
+	private final EdgeWeights weights;
+	private double stretch = DEFAULT_STRETCH;
+	private double sharing = DEFAULT_SHARING;
+	private double plateau = DEFAULT_PLATEAU;
+
+	private final IntArray order = new IntArray();  /* the nodes settled by the forward search */
+	private final int[] plateauStart;  /* the first node of the plateau of each candidate */
+	private final double[] plateauLength;  /* the length of the plateau, stored at its first node */
+	private final int[] marks;  /* loop detection, stamped per path */
+	private int stamp = 0;
+
+	/**
+	 * Creates a finder.
+	 *
+	 * @param graph The graph to search.
+	 * @param nodeIndex The index of the nodes, used by the returned routes.
+	 * @param closures The closures the searches avoid, or null.
+	 * @param weights The congestion factors of the edges, or null.
+	 */
+	public AlternativeRouteFinder(RoutingGraph graph, NodeIndex nodeIndex, Closures closures, EdgeWeights weights) {
+		this.graph = graph;
+		this.nodeIndex = nodeIndex;
+		this.closures = closures;
+		this.weights = weights;
+		plateauStart = new int[graph.getNodeCount()];
+		plateauLength = new double[graph.getNodeCount()];
+		marks = new int[graph.getNodeCount()];
+	}
+
+	/**
+	 * Sets the limits of the alternatives.
+	 *
+	 * @param stretch The longest alternative compared to the shortest path, at least 1.
+	 * @param sharing The largest part of an alternative shared with any better route, compared to the shortest path.
+	 * @param plateau The shortest plateau of an alternative compared to the shortest path.
+	 */
+	public void setLimits(double stretch, double sharing, double plateau) {
+		if (stretch < 1 || sharing < 0 || plateau < 0) {
+			throw new IllegalArgumentException("Invalid limits: " + stretch + ", " + sharing + ", " + plateau);
+		}
+		this.stretch = stretch;
+		this.sharing = sharing;
+		this.plateau = plateau;
+	}
+
+	/**
+	 * Searches the shortest path and at most k - 1 alternatives. The finder and the workspaces
+	 * must not be used by other threads during the search.
+	 *
+	 * @param forward The workspace of the search from the source, its previous contents are discarded.
+	 * @param backward The workspace of the search from the target, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @param k The largest number of routes to return.
+	 * @param budgetNanos The time allowed for the search in nanoseconds.
+	 * @return The routes ordered by their length with the congestion factors, the first is the shortest path, empty if the target is not reachable.
+	 */
+	public List<Route> findRoutes(SearchWorkspace forward, SearchWorkspace backward, int source, int target,
+			int profile, int k, long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		float[] factors = (weights != null) ? weights.getFactors() : null;
+		int[] closed = (closures != null) ? closures.getClosedArcs() : null;
+		List<Route> routes = new ArrayList<>(k);
+		if (k <= 0) {
+			return routes;
+		}
+
+		/* forward until the target, then on until the limit or the deadline */
+		double limit = Double.POSITIVE_INFINITY;
+		order.size = 0;
+		IndexedMinHeap heap = forward.getHeap();
+		forward.begin();
+		forward.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(source, 0);
+		while (!heap.isEmpty() && heap.peekKey() <= limit) {
+			int u = heap.poll();
+			forward.settle(u);
+			order.add(u);
+			if (u == target) {
+				routes.add(Route.create(graph, nodeIndex, source, forward.getPathArcs(target), factors));
+				if (k == 1) {
+					return routes;
+				}
+				limit = stretch * forward.getDistance(target);
+			}
+			if (limit != Double.POSITIVE_INFINITY && isOver(deadline, order.size)) {
+				break;
+			}
+			expand(forward, u, profile, factors, closed);
+		}
+		if (routes.isEmpty() || source == target) {
+			return routes;
+		}
+
+		/* the backward tree over the reversed arcs */
+		int reversed = RoutingProfile.reverse(profile);
+		heap = backward.getHeap();
+		backward.begin();
+		backward.update(target, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(target, 0);
+		while (!heap.isEmpty() && heap.peekKey() <= limit) {
+			int u = heap.poll();
+			backward.settle(u);
+			if (isOver(deadline, backward.getSettledCount())) {
+				break;
+			}
+			expand(backward, u, reversed, factors, closed);
+		}
+
+		/* the plateaus, the forward order puts the parents before their children */
+		double shortest = forward.getDistance(target);
+		List<Integer> candidates = new ArrayList<>();
+		for (int i = 0; i < order.size; i++) {
+			int v = order.values[i];
+			if (!backward.isSettled(v) || forward.getDistance(v) + backward.getDistance(v) > limit) {
+				continue;
+			}
+
+			int u = forward.getParent(v);
+			if (u != SearchWorkspace.NO_NODE && backward.isSettled(u) && backward.getParent(u) == v) {
+				int start = plateauStart[u];
+				plateauStart[v] = start;
+				plateauLength[start] = forward.getDistance(v) - forward.getDistance(start);
+			} else {
+				plateauStart[v] = v;
+				plateauLength[v] = 0;
+				candidates.add(v);
+			}
+		}
+
+		/* the plateau ends give the via paths, the shortest first */
+		List<Integer> vias = new ArrayList<>();
+		for (int start : candidates) {
+			if (plateauLength[start] >= plateau * shortest && !isOnRoute(routes.get(0), start)) {
+				vias.add(start);
+			}
+		}
+		sortByLength(vias, forward, backward);
+
+		Set<Long> chosen = new HashSet<>();
+		addArcs(chosen, routes.get(0));
+		for (int i = 0; i < vias.size() && routes.size() < k; i++) {
+			if (System.nanoTime() > deadline) {
+				break;
+			}
+
+			Route route = createRoute(forward, backward, source, vias.get(i), factors);
+			if (route != null && getShared(chosen, route, forward, backward) <= sharing * shortest) {
+				routes.add(route);
+				addArcs(chosen, route);
+			}
+		}
+
+		return routes;
+	}
+
+	private void expand(SearchWorkspace ws, int u, int profile, float[] factors, int[] closed) {
+		double du = ws.getDistance(u);
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			int v = graph.getArcHead(a);
+			if (ws.isSettled(v) || !graph.isAllowed(a, profile) || (closed != null && Closures.isClosed(closed, a))) {
+				continue;
+			}
+
+			double dv = du + ((factors != null) ? graph.getArcLength(a) * factors[graph.getArcEdge(a)] : graph.getArcLength(a));
+			if (dv < ws.getDistance(v)) {
+				ws.update(v, dv, u, a);
+				ws.getHeap().push(v, dv);
+			}
+		}
+	}
+
+	private boolean isOver(long deadline, int settled) {
+		return settled % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline;
+	}
+
+	private boolean isOnRoute(Route route, int v) {
+		for (int i = 0; i < route.getNodeCount(); i++) {
+			if (route.getNodeIndex(i) == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void sortByLength(List<Integer> vias, final SearchWorkspace forward, final SearchWorkspace backward) {
+		Collections.sort(vias, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(forward.getDistance(a) + backward.getDistance(a),
+						forward.getDistance(b) + backward.getDistance(b));
+			}
+		});
+	}
+
+	/**
+	 * Joins the tree paths of a via node, the arcs of the backward tree are followed in the
+	 * other direction.
+	 *
+	 * @return The route, or null if it has a loop.
+	 */
+	private Route createRoute(SearchWorkspace forward, SearchWorkspace backward, int source, int via, float[] factors) {
+		if (++stamp == 0) {
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+
+		IntArray arcs = new IntArray();
+		marks[source] = stamp;
+		for (int v = via; v != source; v = forward.getParent(v)) {
+			marks[v] = stamp;
+			arcs.add(forward.getParentArc(v));
+		}
+		arcs.reverse();
+		for (int v = via; backward.getParent(v) != SearchWorkspace.NO_NODE; v = backward.getParent(v)) {
+			if (marks[backward.getParent(v)] == stamp) {
+				return null;
+			}
+			marks[backward.getParent(v)] = stamp;
+			arcs.add(graph.getReverseArc(backward.getParentArc(v)));
+		}
+
+		return Route.create(graph, nodeIndex, source, arcs.toArray(), factors);
+	}
+
+	/**
+	 * Returns the length of the arcs of the route which are on a chosen route.
+	 */
+	private double getShared(Set<Long> chosen, Route route, SearchWorkspace forward, SearchWorkspace backward) {
+		double shared = 0;
+		for (int i = 1; i < route.getNodeCount(); i++) {
+			int u = route.getNodeIndex(i - 1);
+			int v = route.getNodeIndex(i);
+			if (chosen.contains(arcKey(u, v))) {
+				/* the nodes of the route are on either tree, the arc is on the one of its head */
+				shared += (forward.getParent(v) == u)
+						? forward.getDistance(v) - forward.getDistance(u)
+						: backward.getDistance(u) - backward.getDistance(v);
+			}
+		}
+		return shared;
+	}
+
+	private void addArcs(Set<Long> chosen, Route route) {
+		for (int i = 1; i < route.getNodeCount(); i++) {
+			chosen.add(arcKey(route.getNodeIndex(i - 1), route.getNodeIndex(i)));
+		}
+	}
+
+	private static long arcKey(int u, int v) {
+		return ((long) u << 32) | (v & 0xffffffffL);
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Answers large numbers of route requests on the threads of an executor, e.g. all rooms to all exits.
+ *
+ * The requests are read in chunks. The requests of a chunk with the same start and profile are
+ * answered by one search, which stops when all their destinations are settled. The calling thread
+ * groups the chunks and puts the groups into one queue, the workers take them until the requests
+ * run out, so the next chunk is read and grouped while the searches of the previous ones run, and
+ * no worker waits for the others at the end of a chunk. At most {@link #CHUNKS_AHEAD} chunks of
+ * requests are waiting for their results. Every worker borrows its own search workspace, the
+ * graph is immutable and shared, so the workers need no locks. The closures and the congestion
+ * factors publish a new copy on every change, every search uses the ones published when it starts.
+ *
+ * The results are passed to the sink as soon as they are found, from the worker threads and in
+ * no particular order, so the sink must be thread safe.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class BatchRouter {
+	private static final int CHUNK_SIZE = 4096;  /* requests grouped at once, at most 2^20 */
+	private static final int CHUNKS_AHEAD = 2;  /* chunks of requests read but not answered yet */
+
+	/**
+	 * Receives the results of a batch.
+	 */
+	public interface Sink {
+		/**
+		 * Called once for every request, from any thread.
+		 *
+		 * @param request The request.
+		 * @param distance The length of the shortest path with the congestion factors, infinity if the destination is not reachable.
+		 * @param route The path if it was requested and the destination is reachable, otherwise null.
+		 */
+		void onResult(RouteRequest request, double distance, Route route);
+	}
+
+	private final PathFinder pathFinder;
+	private final NodeIndex nodeIndex;
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final WorkspacePool workspaces;
+
+	/**
+	 * Creates a router.
+	 *
+	 * @param graph The graph to search.
+	 * @param nodeIndex The index of the nodes of the graph.
+	 * @param closures The closures the searches avoid, or null.
+	 * @param weights The congestion factors of the edges, or null.
+	 * @param executor The executor which runs the searches.
+	 * @param parallelism The number of searches running at the same time, e.g. the number of threads of the executor.
+	 */
+	public BatchRouter(RoutingGraph graph, NodeIndex nodeIndex, Closures closures, EdgeWeights weights, ExecutorService executor, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+		}
+
+		this.pathFinder = new PathFinder(graph);
+		pathFinder.setClosures(closures);
+		pathFinder.setEdgeWeights(weights);
+		this.nodeIndex = nodeIndex;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.workspaces = new WorkspacePool(graph.getNodeCount(), parallelism);
+	}
+
+	/**
+	 * Answers the requests, it returns when all the results were passed to the sink.
+	 *
+	 * @param requests The requests, read by the calling thread.
+	 * @param withPaths Whether to create the routes or only return the distances.
+	 * @param sink The receiver of the results.
+	 * @return The number of the requests.
+	 * @throws IllegalStateException If a search failed or the calling thread was interrupted.
+	 */
+	public int route(Iterator<RouteRequest> requests, boolean withPaths, Sink sink) {
+		Batch batch = new Batch(withPaths, sink);
+		List<Future<?>> workers = new ArrayList<>(parallelism);
+		int count = 0;
+		try {
+			for (int w = 0; w < parallelism; w++) {
+				workers.add(executor.submit(batch));
+			}
+
+			while (requests.hasNext() && batch.failure == null) {
+				RouteRequest[] chunk = new RouteRequest[CHUNK_SIZE];  /* the workers may still use the previous one */
+				int size = 0;
+				while (size < CHUNK_SIZE && requests.hasNext()) {
+					chunk[size++] = requests.next();
+				}
+				count += size;
+				batch.waiting.acquire(size);
+				putGroups(batch, chunk, size);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			batch.fail(e);
+			throw new IllegalStateException("Interrupted while routing a batch", e);
+		} finally {
+			for (int w = 0; w < parallelism; w++) {
+				batch.groups.add(Group.END);
+			}
+		}
+
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			batch.fail(e);
+			throw new IllegalStateException("Interrupted while routing a batch", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not route a batch", e.getCause());
+		}
+		if (batch.failure != null) {
+			throw new IllegalStateException("Could not route a batch", batch.failure);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Sorts a chunk by start and profile and queues its groups for the workers.
+	 */
+	private void putGroups(Batch batch, RouteRequest[] chunk, int size) {
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			/* only the low byte of a profile can match the attributes of the arcs */
+			int source = indexOf(chunk[i].getFrom());
+			keys[i] = ((long) (source + 1) << 32) | ((long) (chunk[i].getProfile() & 0xff) << 20) | i;
+		}
+		Arrays.sort(keys);
+
+		int first = 0;
+		for (int i = 1; i <= size; i++) {
+			if (i == size || (keys[i] >>> 20) != (keys[i - 1] >>> 20)) {
+				batch.groups.add(new Group(chunk, keys, first, i));
+				first = i;
+			}
+		}
+	}
+
+	private int indexOf(GraphNode node) {
+		return (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+	}
+
+	/**
+	 * Answers the requests of a group, they have the same start and profile.
+	 */
+	private void routeGroup(SearchWorkspace ws, Group group, boolean withPaths, Sink sink) {
+		RouteRequest[] chunk = group.chunk;
+		long[] keys = group.keys;
+		int first = group.first;
+		int end = group.end;
+		RouteRequest head = chunk[(int) (keys[first] & 0xfffff)];
+		int source = indexOf(head.getFrom());
+		int profile = head.getProfile();
+
+		int[] targets = new int[end - first];
+		for (int i = first; i < end; i++) {
+			targets[i - first] = indexOf(chunk[(int) (keys[i] & 0xfffff)].getTo());
+		}
+
+		if (source != NodeIndex.NOT_FOUND) {
+			/* unknown destinations are searched as the start, and reported as unreachable below */
+			for (int i = 0; i < targets.length; i++) {
+				if (targets[i] == NodeIndex.NOT_FOUND) {
+					targets[i] = source;
+				}
+			}
+			pathFinder.findPaths(ws, source, targets, profile);
+		}
+		float[] factors = pathFinder.getFactors();
+
+		for (int i = first; i < end; i++) {
+			RouteRequest request = chunk[(int) (keys[i] & 0xfffff)];
+			int target = indexOf(request.getTo());
+			if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND || !ws.isSettled(target)) {
+				sink.onResult(request, Double.POSITIVE_INFINITY, null);
+			} else {
+				Route route = withPaths ? Route.create(pathFinder.getGraph(), nodeIndex, source, ws.getPathArcs(target), factors) : null;
+				sink.onResult(request, ws.getDistance(target), route);
+			}
+		}
+	}
+
+	/**
+	 * The requests first .. end - 1 of the sorted keys of a chunk.
+	 */
+	private static final class Group {
+		static final Group END = new Group(null, null, 0, 0);  /* stops a worker */
+
+		final RouteRequest[] chunk;
+		final long[] keys;
+		final int first;
+		final int end;
+
+		Group(RouteRequest[] chunk, long[] keys, int first, int end) {
+			this.chunk = chunk;
+			this.keys = keys;
+			this.first = first;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * The queue of a batch, every worker runs this until it takes an {@link Group#END}.
+	 */
+	private final class Batch implements Runnable {
+		final BlockingQueue<Group> groups = new LinkedBlockingQueue<>();
+		final Semaphore waiting = new Semaphore(CHUNKS_AHEAD * CHUNK_SIZE);  /* requests read but not answered */
+		final boolean withPaths;
+		final Sink sink;
+		volatile Throwable failure;
+
+		Batch(boolean withPaths, Sink sink) {
+			this.withPaths = withPaths;
+			this.sink = sink;
+		}
+
+		/**
+		 * Stops the batch: the remaining groups are skipped and the reader is woken up.
+		 */
+		void fail(Throwable e) {
+			if (failure == null) {
+				failure = e;
+			}
+			waiting.release(CHUNKS_AHEAD * CHUNK_SIZE);
+		}
+
+		@Override
+		public void run() {
+			SearchWorkspace ws = workspaces.borrow();
+			try {
+				for (Group group = groups.take(); group != Group.END; group = groups.take()) {
+					try {
+						if (failure == null) {
+							routeGroup(ws, group, withPaths, sink);
+						}
+					} catch (RuntimeException | Error e) {
+						fail(e);
+					} finally {
+						waiting.release(group.end - group.first);
+					}
+				}
+			} catch (InterruptedException e) {
+				fail(e);
+			} finally {
+				workspaces.release(ws);
+			}
+		}
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * The graph with its degree-2 chains contracted: the ways of the maps are split into many short
+ * edges along the corridors, and the nodes between them only continue the corridor. A node with
+ * exactly two neighbours, which are connected to it in both directions, is an inner node; every
+ * maximal path between two other (core) nodes through inner nodes becomes a super-edge with the
+ * summed length. The searches settle only the core nodes.
+ *
+ * A super-edge keeps its arcs and its inner nodes with their distances from its tail, so the paths
+ * are unpacked to the original arcs and the ends of a query can be inner nodes too. Its attributes are the
+ * union of the attributes of its arcs, so one contracted graph serves every profile. Cycles made
+ * only of inner nodes get one core node.
+ *
+ * The structure is immutable, the queries can run from more threads if every thread uses its own
+ * workspace.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ChainGraph {
+	private static final int NO_SUPER_EDGE = -1;
+
+	private final RoutingGraph graph;
+	private final int coreCount;
+
+	private final int[] firstSuperEdge;  /* the super-edges of core node u are firstSuperEdge[u] .. firstSuperEdge[u + 1] - 1 */
+	private final int[] superTail;
+	private final int[] superHead;
+	private final double[] superLength;
+	private final int[] superAttributes;  /* RoutingProfile attribute bits of all the arcs */
+
+	private final int[] firstInner;  /* the inner nodes of super-edge s are firstInner[s] .. firstInner[s + 1] - 1 */
+	private final int[] innerNodes;
+	private final int[] innerSuperEdges;
+	private final double[] innerDistances;  /* from the tail of the super-edge */
+	private final int[] innerPrefixes;  /* attributes of the arcs from the tail to the inner node */
+	private final int[] innerSuffixes;  /* attributes of the arcs from the inner node to the head */
+	private final int[] nodeInner;  /* the two positions of every inner node, one in each direction, -1 for core nodes */
+	private final int[] chainArcs;  /* by position + super-edge, the arc into the inner node, at firstInner[s + 1] + s the arc into the head */
+
+	/**
+	 * Finds the chains of a graph and contracts them.
+	 *
+	 * @param graph The graph.
+	 */
+	public ChainGraph(RoutingGraph graph) {
+		this.graph = graph;
+		int nodeCount = graph.getNodeCount();
+
+		int[] inDegree = new int[nodeCount];
+		for (int a = 0; a < graph.getArcCount(); a++) {
+			inDegree[graph.getArcHead(a)]++;
+		}
+		boolean[] core = new boolean[nodeCount];
+		int innerCount = 0;
+		for (int u = 0; u < nodeCount; u++) {
+			core[u] = !isInner(u, inDegree[u]);
+			if (!core[u]) {
+				innerCount++;
+			}
+		}
+
+		/* a cycle of inner nodes is not reached from any core node, its first node becomes one */
+		boolean[] visited = new boolean[nodeCount];
+		for (int u = 0; u < nodeCount; u++) {
+			if (core[u]) {
+				visitChains(u, core, visited);
+			}
+		}
+		for (int u = 0; u < nodeCount; u++) {
+			if (!core[u] && !visited[u]) {
+				core[u] = true;
+				innerCount--;
+				visitChains(u, core, visited);
+			}
+		}
+		coreCount = nodeCount - innerCount;
+
+		int superCount = 0;
+		for (int u = 0; u < nodeCount; u++) {
+			if (core[u]) {
+				superCount += graph.getFirstArc(u + 1) - graph.getFirstArc(u);
+			}
+		}
+
+		firstSuperEdge = new int[nodeCount + 1];
+		superTail = new int[superCount];
+		superHead = new int[superCount];
+		superLength = new double[superCount];
+		superAttributes = new int[superCount];
+		firstInner = new int[superCount + 1];
+		innerNodes = new int[2 * innerCount];
+		innerSuperEdges = new int[2 * innerCount];
+		innerDistances = new double[2 * innerCount];
+		innerPrefixes = new int[2 * innerCount];
+		innerSuffixes = new int[2 * innerCount];
+		nodeInner = new int[2 * nodeCount];
+		Arrays.fill(nodeInner, -1);
+		chainArcs = new int[2 * innerCount + superCount];
+
+		int s = 0;
+		int position = 0;
+		for (int u = 0; u < nodeCount; u++) {
+			firstSuperEdge[u] = s;
+			if (!core[u]) {
+				continue;
+			}
+
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				firstInner[s] = position;
+				int prev = u;
+				int arc = a;
+				int v = graph.getArcHead(a);
+				double length = graph.getArcLength(a);
+				int attributes = graph.getArcAttributes(a);
+				while (!core[v]) {
+					innerNodes[position] = v;
+					innerSuperEdges[position] = s;
+					innerDistances[position] = length;
+					innerPrefixes[position] = attributes;
+					nodeInner[2 * v + ((nodeInner[2 * v] == -1) ? 0 : 1)] = position;
+					chainArcs[position + s] = arc;
+					position++;
+
+					arc = getNextArc(v, prev);
+					prev = v;
+					v = graph.getArcHead(arc);
+					length += graph.getArcLength(arc);
+					attributes |= graph.getArcAttributes(arc);
+				}
+
+				superTail[s] = u;
+				superHead[s] = v;
+				superLength[s] = length;
+				superAttributes[s] = attributes;
+				chainArcs[position + s] = arc;
+
+				/* the suffixes backwards from the head, the last arc is the one to the head */
+				int suffix = graph.getArcAttributes(arc);
+				for (int i = position - 1; i >= firstInner[s]; i--) {
+					innerSuffixes[i] = suffix;
+					if (i > firstInner[s]) {
+						suffix |= graph.getArcAttributes(chainArcs[i + s]);
+					}
+				}
+				s++;
+			}
+		}
+		firstSuperEdge[nodeCount] = s;
+		firstInner[s] = position;
+	}
+
+	/**
+	 * Checks if a node only continues a chain: it has two different neighbours, with arcs in
+	 * both directions, and no other arcs.
+	 */
+	private boolean isInner(int u, int inDegree) {
+		int first = graph.getFirstArc(u);
+		if (graph.getFirstArc(u + 1) - first != 2 || inDegree != 2) {
+			return false;
+		}
+
+		int h0 = graph.getArcHead(first);
+		int h1 = graph.getArcHead(first + 1);
+		return h0 != h1 && findArc(h0, u) != -1 && findArc(h1, u) != -1;
+	}
+
+	/**
+	 * Marks the inner nodes of the chains starting at a core node.
+	 */
+	private void visitChains(int u, boolean[] core, boolean[] visited) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			int prev = u;
+			int v = graph.getArcHead(a);
+			while (!core[v]) {
+				visited[v] = true;
+				int next = graph.getArcHead(getNextArc(v, prev));
+				prev = v;
+				v = next;
+			}
+		}
+	}
+
+	/**
+	 * Returns the arc of an inner node which does not lead back to the previous node.
+	 */
+	private int getNextArc(int v, int prev) {
+		int first = graph.getFirstArc(v);
+		return (graph.getArcHead(first) != prev) ? first : first + 1;
+	}
+
+	/**
+	 * Returns the first arc from u to v, -1 if there is none.
+	 */
+	private int findArc(int u, int v) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v) {
+				return a;
+			}
+		}
+		return -1;
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of nodes the searches settle at most.
+	 */
+	public int getCoreNodeCount() {
+		return coreCount;
+	}
+
+	/**
+	 * Returns the number of super-edges, one for each direction of a chain.
+	 */
+	public int getSuperEdgeCount() {
+		return superHead.length;
+	}
+
+	public boolean isCore(int node) {
+		return nodeInner[2 * node] == -1;
+	}
+
+	/**
+	 * Creates a workspace for the queries.
+	 */
+	public SearchWorkspace createWorkspace() {
+		return new SearchWorkspace(graph.getNodeCount());
+	}
+
+	/**
+	 * Searches the shortest path between two nodes with A* over the core nodes. If the source is
+	 * an inner node, the search starts from the ends of its chain; if the target is, it stops when
+	 * no unsettled node can lead to a shorter path through the ends of the chain of the target.
+	 *
+	 * @param ws The workspace of the search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @return The indices of the arcs of the path from the source to the target, or null if the target is not reachable.
+	 */
+	public int[] findPath(SearchWorkspace ws, int source, int target, int profile) {
+		if (source == target) {
+			return new int[0];
+		}
+		IndexedMinHeap heap = ws.getHeap();
+
+		ws.begin();
+		if (isCore(source)) {
+			ws.update(source, 0, SearchWorkspace.NO_NODE, NO_SUPER_EDGE);
+			heap.push(source, graph.estimate(source, target));
+		} else {
+			/* the rest of the super-edges, their parent is the missing node */
+			for (int k = 0; k < 2; k++) {
+				int p = nodeInner[2 * source + k];
+				int s = innerSuperEdges[p];
+				if ((innerSuffixes[p] & profile) == 0) {
+					relax(ws, superHead[s], superLength[s] - innerDistances[p], SearchWorkspace.NO_NODE, s, target);
+				}
+			}
+		}
+
+		double best = Double.POSITIVE_INFINITY;
+		int bestTail = SearchWorkspace.NO_NODE;  /* the last core node of the path */
+		int bestInner = -1;  /* the position of an inner target */
+		if (!isCore(source) && !isCore(target)) {
+			/* the ends on the same chain */
+			for (int k = 0; k < 2; k++) {
+				int p = nodeInner[2 * source + k];
+				for (int j = 0; j < 2; j++) {
+					int q = nodeInner[2 * target + j];
+					if (innerSuperEdges[q] == innerSuperEdges[p] && q > p && isAllowed(p, q, profile)
+							&& innerDistances[q] - innerDistances[p] < best) {
+						best = innerDistances[q] - innerDistances[p];
+						bestInner = q;
+					}
+				}
+			}
+		}
+
+		while (!heap.isEmpty() && heap.peekKey() < best) {
+			int u = heap.poll();
+			ws.settle(u);
+			double du = ws.getDistance(u);
+			if (u == target) {
+				best = du;
+				bestTail = u;
+				bestInner = -1;
+				break;
+			}
+
+			if (!isCore(target)) {
+				for (int j = 0; j < 2; j++) {
+					int q = nodeInner[2 * target + j];
+					if (superTail[innerSuperEdges[q]] == u && (innerPrefixes[q] & profile) == 0 && du + innerDistances[q] < best) {
+						best = du + innerDistances[q];
+						bestTail = u;
+						bestInner = q;
+					}
+				}
+			}
+
+			for (int s = firstSuperEdge[u]; s < firstSuperEdge[u + 1]; s++) {
+				int v = superHead[s];
+				if (!ws.isSettled(v) && (superAttributes[s] & profile) == 0) {
+					relax(ws, v, du + superLength[s], u, s, target);
+				}
+			}
+		}
+
+		if (best == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+
+		/* the arcs from the target back to the source, the super-edges are unpacked in reverse;
+		 * if the source is an inner node, the arcs before it are left out */
+		IntArray path = new IntArray();
+		int v = bestTail;
+		if (bestInner != -1) {
+			int s = innerSuperEdges[bestInner];
+			int end = (bestTail == SearchWorkspace.NO_NODE) ? getPosition(source, s) + 1 : firstInner[s];
+			for (int i = bestInner; i >= end; i--) {
+				path.add(chainArcs[i + s]);
+			}
+		}
+		while (v != SearchWorkspace.NO_NODE) {
+			int s = ws.getParentArc(v);
+			if (s == NO_SUPER_EDGE) {
+				break;  /* v is the source */
+			}
+
+			int u = ws.getParent(v);
+			int end = (u == SearchWorkspace.NO_NODE) ? getPosition(source, s) + 1 : firstInner[s];
+			for (int i = firstInner[s + 1]; i >= end; i--) {
+				path.add(chainArcs[i + s]);
+			}
+			v = u;
+		}
+
+		path.reverse();
+		return path.toArray();
+	}
+
+	private void relax(SearchWorkspace ws, int v, double dv, int u, int s, int target) {
+		if (dv < ws.getDistance(v)) {
+			ws.update(v, dv, u, s);
+			ws.getHeap().push(v, dv + graph.estimate(v, target));
+		}
+	}
+
+	/**
+	 * Returns the position of an inner node in a super-edge.
+	 */
+	private int getPosition(int node, int s) {
+		return (innerSuperEdges[nodeInner[2 * node]] == s) ? nodeInner[2 * node] : nodeInner[2 * node + 1];
+	}
+
+	/**
+	 * Checks the arcs between two positions of the same super-edge.
+	 */
+	private boolean isAllowed(int from, int to, int profile) {
+		int s = innerSuperEdges[from];
+		for (int i = from + 1; i <= to; i++) {
+			if (!graph.isAllowed(chainArcs[i + s], profile)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
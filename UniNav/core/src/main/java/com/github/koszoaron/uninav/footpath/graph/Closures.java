@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * Passages and nodes closed at runtime, e.g. a corridor being cleaned or a broken elevator.
+ *
+ * The closures are kept in bit sets. The searches read one bit per arc: an arc is closed if
+ * its passage, its tail or its head is closed. A passage closes the arcs between two nodes in
+ * both directions. Removing arcs never makes a path shorter, so a shortest path which does not
+ * cross a closure is still the shortest; only the paths crossing one have to be searched again.
+ *
+ * The closures can be changed from any thread. A change copies the bit sets of the arcs and the
+ * nodes, changes the copies and publishes them; a search reads the arcs with {@link #getClosedArcs()}
+ * once, so it uses one version for its whole duration and never waits for the changes.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class Closures {
+	private final RoutingGraph graph;
+	private final int[] closedPassages;  /* by arc, only used by the changes */
+	private volatile int[] closedNodes;  /* by node, never changed after it is published */
+	private volatile int[] closedArcs;  /* by arc, read by the searches, never changed after it is published */
+	private int passageCount;
+	private int nodeCount;
+
+	/**
+	 * Creates an empty set of closures.
+	 *
+	 * @param graph The graph of the closures.
+	 */
+	public Closures(RoutingGraph graph) {
+		this.graph = graph;
+		closedPassages = new int[(graph.getArcCount() + 31) >>> 5];
+		closedNodes = new int[(graph.getNodeCount() + 31) >>> 5];
+		closedArcs = new int[closedPassages.length];
+	}
+
+	private static boolean get(int[] bits, int i) {
+		return (bits[i >>> 5] & (1 << i)) != 0;
+	}
+
+	private static void set(int[] bits, int i, boolean value) {
+		if (value) {
+			bits[i >>> 5] |= 1 << i;
+		} else {
+			bits[i >>> 5] &= ~(1 << i);
+		}
+	}
+
+	/**
+	 * Returns the current closed arcs for a search.
+	 *
+	 * @return The bits of the arcs, they must not be modified, see {@link #isClosed(int[], int)}.
+	 */
+	public int[] getClosedArcs() {
+		return closedArcs;
+	}
+
+	/**
+	 * Checks if an arc is closed in a version returned by {@link #getClosedArcs()}.
+	 */
+	public static boolean isClosed(int[] closedArcs, int arc) {
+		return (closedArcs[arc >>> 5] & (1 << arc)) != 0;
+	}
+
+	/**
+	 * Checks if an arc is closed by a passage or node closure.
+	 */
+	public boolean isClosed(int arc) {
+		return isClosed(closedArcs, arc);
+	}
+
+	public boolean isNodeClosed(int node) {
+		return get(closedNodes, node);
+	}
+
+	/**
+	 * Checks if the passage between two nodes is closed, not counting the closures of the nodes.
+	 */
+	public synchronized boolean isPassageClosed(int u, int v) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v && get(closedPassages, a)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if nothing is closed.
+	 */
+	public synchronized boolean isEmpty() {
+		return passageCount == 0 && nodeCount == 0;
+	}
+
+	/**
+	 * Closes or opens the passage between two neighbouring nodes in both directions.
+	 *
+	 * @param u The index of one end.
+	 * @param v The index of the other end.
+	 * @return true if the closures changed.
+	 */
+	public synchronized boolean setPassageClosed(int u, int v, boolean isClosed) {
+		if (isPassageClosed(u, v) == isClosed || !isNeighbour(u, v)) {
+			return false;
+		}
+
+		int[] arcs = closedArcs.clone();
+		setArcs(arcs, u, v, isClosed);
+		setArcs(arcs, v, u, isClosed);
+		closedArcs = arcs;
+		passageCount += isClosed ? 1 : -1;
+		return true;
+	}
+
+	private boolean isNeighbour(int u, int v) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void setArcs(int[] arcs, int u, int v, boolean isClosed) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v) {
+				set(closedPassages, a, isClosed);
+				updateArc(arcs, closedNodes, u, a);
+			}
+		}
+	}
+
+	/**
+	 * Closes or opens a node, with all the arcs leading to and from it.
+	 *
+	 * @param node The index of the node.
+	 * @return true if the closures changed.
+	 */
+	public synchronized boolean setNodeClosed(int node, boolean isClosed) {
+		if (isNodeClosed(node) == isClosed) {
+			return false;
+		}
+
+		int[] nodes = closedNodes.clone();
+		int[] arcs = closedArcs.clone();
+		set(nodes, node, isClosed);
+		nodeCount += isClosed ? 1 : -1;
+		for (int a = graph.getFirstArc(node); a < graph.getFirstArc(node + 1); a++) {
+			int v = graph.getArcHead(a);
+			updateArc(arcs, nodes, node, a);
+			for (int b = graph.getFirstArc(v); b < graph.getFirstArc(v + 1); b++) {
+				if (graph.getArcHead(b) == node) {
+					updateArc(arcs, nodes, v, b);
+				}
+			}
+		}
+		closedNodes = nodes;
+		closedArcs = arcs;
+		return true;
+	}
+
+	private void updateArc(int[] arcs, int[] nodes, int tail, int arc) {
+		set(arcs, arc, get(closedPassages, arc) || get(nodes, tail) || get(nodes, graph.getArcHead(arc)));
+	}
+
+	/**
+	 * Opens everything.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(closedPassages, 0);
+		closedNodes = new int[closedNodes.length];
+		closedArcs = new int[closedArcs.length];
+		passageCount = 0;
+		nodeCount = 0;
+	}
+
+	/**
+	 * Checks if a route crosses a closure, so it has to be searched again.
+	 *
+	 * @param route The route.
+	 * @return true if a node or an arc of the route is closed.
+	 */
+	public boolean crosses(Route route) {
+		int[] arcs = closedArcs;
+
+		/* an arc is closed with its ends, only the start of a route without arcs is left */
+		if (isNodeClosed(route.getNodeIndex(0))) {
+			return true;
+		}
+		for (int i = 0; i < route.getEdgeCount(); i++) {
+			if (isClosed(arcs, route.getArc(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
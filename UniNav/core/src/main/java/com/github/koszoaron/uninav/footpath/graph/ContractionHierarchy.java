@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Contraction Hierarchies of a {@link RoutingGraph} for fast shortest path queries.
+ *
+ * The nodes are contracted one by one (see {@link HierarchyBuilder}), adding shortcuts which
+ * keep the distances between the remaining nodes. A query is a bidirectional Dijkstra search
+ * which only goes upwards in the contraction order, so it settles a few hundred nodes even on
+ * large graphs. The shortcuts store the node they skip and the other arcs the arc of the
+ * {@link RoutingGraph} they stand for, so the paths are unpacked to the original arcs.
+ *
+ * The allowed arcs depend on the routing options, so every combination of the staircase,
+ * elevator and outside options has its own hierarchy. They are built when they are first
+ * needed or by {@link #prepareAll()}, and can be saved into a file next to the graph file.
+ *
+ * The queries can run from more threads if every thread uses its own workspaces.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ContractionHierarchy {
+	public static final int MAGIC = 0x48434e55;  /* "UNCH" */
+	public static final int VERSION = 1;
+
+	private static final int PROFILES = 8;
+	private static final int HEADER_SIZE = 4 * 5;
+
+	private final RoutingGraph graph;
+	private final UpwardGraph[] profiles = new UpwardGraph[PROFILES];
+
+	/**
+	 * Creates an empty hierarchy, the profiles are built on demand.
+	 *
+	 * @param graph The graph.
+	 */
+	public ContractionHierarchy(RoutingGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Builds the hierarchy for the given options if it does not exist yet.
+	 *
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 */
+	public void prepare(boolean staircase, boolean elevator, boolean outside) {
+		getProfile(staircase, elevator, outside);
+	}
+
+	/**
+	 * Builds the hierarchies for all combinations of the options.
+	 */
+	public void prepareAll() {
+		for (int p = 0; p < PROFILES; p++) {
+			getProfile((p & 1) != 0, (p & 2) != 0, (p & 4) != 0);
+		}
+	}
+
+	/**
+	 * Creates a workspace for one direction of the queries.
+	 */
+	public SearchWorkspace createWorkspace() {
+		return new SearchWorkspace(graph.getNodeCount());
+	}
+
+	/**
+	 * Searches the shortest path between two nodes.
+	 *
+	 * @param forward The workspace of the search from the source.
+	 * @param backward The workspace of the search from the target.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 * @return The indices of the arcs of the path from the source to the target, or null if the target is not reachable.
+	 */
+	public int[] findPath(SearchWorkspace forward, SearchWorkspace backward, int source, int target, boolean staircase, boolean elevator, boolean outside) {
+		UpwardGraph g = getProfile(staircase, elevator, outside);
+		IndexedMinHeap forwardHeap = forward.getHeap();
+		IndexedMinHeap backwardHeap = backward.getHeap();
+
+		forward.begin();
+		backward.begin();
+		forward.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		forwardHeap.push(source, 0);
+		backward.update(target, 0, SearchWorkspace.NO_NODE, -1);
+		backwardHeap.push(target, 0);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = SearchWorkspace.NO_NODE;
+		while (true) {
+			double forwardMin = forwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : forwardHeap.peekKey();
+			double backwardMin = backwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : backwardHeap.peekKey();
+			if (Math.min(forwardMin, backwardMin) >= best) {
+				break;  /* also stops when both heaps are empty */
+			}
+
+			/* expand the direction with the smaller key */
+			boolean isForward = forwardMin <= backwardMin;
+			SearchWorkspace ws = isForward ? forward : backward;
+			SearchWorkspace other = isForward ? backward : forward;
+			Arcs arcs = isForward ? g.up : g.down;
+
+			int u = ws.getHeap().poll();
+			ws.settle(u);
+			double du = ws.getDistance(u);
+			if (du + other.getDistance(u) < best) {
+				best = du + other.getDistance(u);
+				meeting = u;
+			}
+
+			for (int a = arcs.first[u]; a < arcs.first[u + 1]; a++) {
+				int v = arcs.heads[a];
+				double dv = du + arcs.weights[a];
+				if (dv < ws.getDistance(v)) {
+					ws.update(v, dv, u, a);
+					ws.getHeap().push(v, dv);
+				}
+			}
+		}
+
+		if (meeting == SearchWorkspace.NO_NODE) {
+			return null;
+		}
+
+		/* the upward arcs from the source to the meeting node, then down to the target */
+		IntArray path = new IntArray();
+		IntArray chain = new IntArray();
+		for (int v = meeting; v != source; v = forward.getParent(v)) {
+			chain.add(v);
+		}
+		for (int i = chain.size - 1; i >= 0; i--) {
+			int v = chain.values[i];
+			unpack(g, forward.getParent(v), v, g.up.middles[forward.getParentArc(v)], path);
+		}
+		for (int v = meeting; v != target; v = backward.getParent(v)) {
+			/* the backward search went from the parent up to v, along the original arc v -> parent */
+			unpack(g, v, backward.getParent(v), g.down.middles[backward.getParentArc(v)], path);
+		}
+
+		return path.toArray();
+	}
+
+	/**
+	 * Returns the middle of an arc of the hierarchy which is an arc of the graph: a negative
+	 * number in place of the skipped node.
+	 */
+	static int originalArc(int arc) {
+		return -1 - arc;
+	}
+
+	/**
+	 * Appends the original arcs of an arc, replacing the shortcuts with their two halves.
+	 */
+	private static void unpack(UpwardGraph g, int from, int to, int middle, IntArray path) {
+		IntArray stack = new IntArray();
+		stack.add(from);
+		stack.add(to);
+		stack.add(middle);
+
+		while (stack.size > 0) {
+			int mid = stack.values[--stack.size];
+			int head = stack.values[--stack.size];
+			int tail = stack.values[--stack.size];
+			if (mid < 0) {
+				path.add(-1 - mid);
+				continue;
+			}
+
+			/* the halves are the arcs of the skipped node: tail -> mid is stored as an arc
+			 * from a higher node, mid -> head as an arc to a higher node */
+			stack.add(mid);
+			stack.add(head);
+			stack.add(g.up.middles[g.up.find(mid, head)]);
+			stack.add(tail);
+			stack.add(mid);
+			stack.add(g.down.middles[g.down.find(mid, tail)]);
+		}
+	}
+
+	private UpwardGraph getProfile(boolean staircase, boolean elevator, boolean outside) {
+		int p = (staircase ? 1 : 0) | (elevator ? 2 : 0) | (outside ? 4 : 0);
+
+		synchronized (profiles) {
+			if (profiles[p] == null) {
+				profiles[p] = new HierarchyBuilder(graph, RoutingProfile.of(staircase, elevator, outside)).build();
+			}
+			return profiles[p];
+		}
+	}
+
+	/**
+	 * Writes the prepared hierarchies into a file.
+	 *
+	 * @param file The file to write.
+	 * @throws IOException If the file can not be written.
+	 */
+	public void write(File file) throws IOException {
+		int size = HEADER_SIZE;
+		int mask = 0;
+		synchronized (profiles) {
+			for (int p = 0; p < PROFILES; p++) {
+				if (profiles[p] != null) {
+					mask |= 1 << p;
+					size += profiles[p].up.byteSize() + profiles[p].down.byteSize();
+				}
+			}
+
+			ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+			out.putInt(MAGIC).putInt(VERSION).putInt(graph.getNodeCount()).putInt(graph.getArcCount()).putInt(mask);
+			for (int p = 0; p < PROFILES; p++) {
+				if (profiles[p] != null) {
+					profiles[p].up.write(out);
+					profiles[p].down.write(out);
+				}
+			}
+
+			FileOutputStream fos = new FileOutputStream(file);
+			try {
+				fos.write(out.array());
+			} finally {
+				fos.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the hierarchies saved by {@link #write(File)}.
+	 *
+	 * @param file The file to read.
+	 * @param graph The graph the hierarchies were built for.
+	 * @return The hierarchy, the missing profiles are built on demand.
+	 * @throws IOException If the file can not be read or it does not belong to the graph.
+	 */
+	public static ContractionHierarchy read(File file, RoutingGraph graph) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return read(channel, 0, channel.size(), graph);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the hierarchies from a region of a file, e.g. an uncompressed asset of an APK.
+	 *
+	 * @param channel The channel of the file.
+	 * @param position The position of the hierarchies in the file.
+	 * @param size The size of the hierarchies.
+	 * @param graph The graph the hierarchies were built for.
+	 * @return The hierarchy, the missing profiles are built on demand.
+	 * @throws IOException If the region can not be read or it does not belong to the graph.
+	 */
+	public static ContractionHierarchy read(FileChannel channel, long position, long size, RoutingGraph graph) throws IOException {
+		ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (in.capacity() < HEADER_SIZE || in.getInt() != MAGIC) {
+			throw new IOException("Not a hierarchy file");
+		}
+		if (in.getInt() != VERSION) {
+			throw new IOException("Unsupported hierarchy file version: " + in.getInt(4));
+		}
+		if (in.getInt() != graph.getNodeCount() || in.getInt() != graph.getArcCount()) {
+			throw new IOException("The hierarchy file belongs to another graph");
+		}
+
+		ContractionHierarchy ch = new ContractionHierarchy(graph);
+		int mask = in.getInt();
+		for (int p = 0; p < PROFILES; p++) {
+			if ((mask & (1 << p)) != 0) {
+				Arcs up = Arcs.read(in, graph.getNodeCount());
+				Arcs down = Arcs.read(in, graph.getNodeCount());
+				ch.profiles[p] = new UpwardGraph(up, down);
+			}
+		}
+
+		return ch;
+	}
+
+	/**
+	 * The two search graphs of a profile.
+	 */
+	static class UpwardGraph {
+		final Arcs up;  /* arcs to higher nodes, used from the source */
+		final Arcs down;  /* reversed arcs from higher nodes, used from the target */
+
+		UpwardGraph(Arcs up, Arcs down) {
+			this.up = up;
+			this.down = down;
+		}
+	}
+
+	/**
+	 * Arcs in CSR form, with the skipped middle node of the shortcuts and the original arc of the others.
+	 */
+	static class Arcs {
+		final int[] first;
+		final int[] heads;
+		final double[] weights;
+		final int[] middles;
+
+		Arcs(int[] first, int[] heads, double[] weights, int[] middles) {
+			this.first = first;
+			this.heads = heads;
+			this.weights = weights;
+			this.middles = middles;
+		}
+
+		/**
+		 * Returns the arc of a node to the given head.
+		 */
+		int find(int node, int head) {
+			for (int a = first[node]; a < first[node + 1]; a++) {
+				if (heads[a] == head) {
+					return a;
+				}
+			}
+			throw new IllegalStateException("Missing half of a shortcut: " + node + " - " + head);
+		}
+
+		int byteSize() {
+			return 4 * (first.length + 1) + (4 + 8 + 4) * heads.length;
+		}
+
+		void write(ByteBuffer out) {
+			out.putInt(heads.length);
+			for (int f : first) {
+				out.putInt(f);
+			}
+			for (int h : heads) {
+				out.putInt(h);
+			}
+			for (double w : weights) {
+				out.putDouble(w);
+			}
+			for (int m : middles) {
+				out.putInt(m);
+			}
+		}
+
+		static Arcs read(ByteBuffer in, int nodeCount) {
+			int count = in.getInt();
+			int[] first = new int[nodeCount + 1];
+			int[] heads = new int[count];
+			double[] weights = new double[count];
+			int[] middles = new int[count];
+
+			in.asIntBuffer().get(first);
+			in.position(in.position() + 4 * first.length);
+			in.asIntBuffer().get(heads);
+			in.position(in.position() + 4 * count);
+			in.asDoubleBuffer().get(weights);
+			in.position(in.position() + 8 * count);
+			in.asIntBuffer().get(middles);
+			in.position(in.position() + 4 * count);
+
+			return new Arcs(first, heads, weights, middles);
+		}
+	}
+}
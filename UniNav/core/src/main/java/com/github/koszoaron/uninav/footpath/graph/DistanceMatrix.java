@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Stack;
+
+/**
+ * The shortest distances, and optionally the paths, from a set of source nodes to a set of
+ * target nodes, see {@link Graph#getDistanceMatrix(java.util.List, java.util.List, boolean, boolean, boolean, boolean)}.
+ * The sources and the targets are referred to by their positions in the lists of the query.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class DistanceMatrix {
+	private final NodeIndex nodeIndex;
+	private final int sourceCount;
+	private final int targetCount;
+	private final double[] distances;  /* by source and target */
+	private final int[][] paths;  /* node indices by source and target, null if the paths were not requested */
+
+	DistanceMatrix(NodeIndex nodeIndex, int sourceCount, int targetCount, boolean withPaths) {
+		this.nodeIndex = nodeIndex;
+		this.sourceCount = sourceCount;
+		this.targetCount = targetCount;
+		this.distances = new double[sourceCount * targetCount];
+		this.paths = withPaths ? new int[sourceCount * targetCount][] : null;
+	}
+
+	void set(int source, int target, double distance, int[] path) {
+		distances[source * targetCount + target] = distance;
+		if (paths != null) {
+			paths[source * targetCount + target] = path;
+		}
+	}
+
+	public int getSourceCount() {
+		return sourceCount;
+	}
+
+	public int getTargetCount() {
+		return targetCount;
+	}
+
+	public boolean hasPaths() {
+		return paths != null;
+	}
+
+	/**
+	 * Returns the length of the shortest path between a source and a target.
+	 *
+	 * @param source The position of the source in the list of the sources.
+	 * @param target The position of the target in the list of the targets.
+	 * @return The length or {@link Double#POSITIVE_INFINITY} if the target is not reachable.
+	 */
+	public double getDistance(int source, int target) {
+		return distances[source * targetCount + target];
+	}
+
+	/**
+	 * Returns the closest target of a source, e.g. the nearest exit.
+	 *
+	 * @param source The position of the source in the list of the sources.
+	 * @return The position of the target, or -1 if no target is reachable.
+	 */
+	public int getNearest(int source) {
+		int nearest = -1;
+		double min = Double.POSITIVE_INFINITY;
+		for (int t = 0; t < targetCount; t++) {
+			if (distances[source * targetCount + t] < min) {
+				min = distances[source * targetCount + t];
+				nearest = t;
+			}
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Creates a stack of nodes with the target at the bottom and the source at the top, like
+	 * {@link Graph#getShortestPath(String, String, boolean, boolean, boolean)}.
+	 *
+	 * @param source The position of the source in the list of the sources.
+	 * @param target The position of the target in the list of the targets.
+	 * @return The path, empty if the source is the target, or null if the target is not reachable.
+	 * @throws IllegalStateException If the paths were not requested.
+	 */
+	public Stack<GraphNode> getPath(int source, int target) {
+		if (paths == null) {
+			throw new IllegalStateException("The paths were not computed");
+		}
+
+		int[] path = paths[source * targetCount + target];
+		if (path == null) {
+			return null;
+		}
+
+		Stack<GraphNode> s = new Stack<>();
+		if (path.length > 1) {
+			for (int i = path.length - 1; i >= 0; i--) {
+				s.push(nodeIndex.get(path[i]));
+			}
+		}
+		return s;
+	}
+}
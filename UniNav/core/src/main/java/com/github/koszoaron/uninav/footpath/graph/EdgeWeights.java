@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Congestion factors of the edges, e.g. crowded corridors during lecture changeovers. The
+ * searches multiply the length of an arc with the factor of its edge.
+ *
+ * Updates are queued without locks and applied in batches: {@link #apply()} copies the factors,
+ * changes the copy and publishes it, so a search reads one array for its whole duration and
+ * never waits for the updates. While no edge is congested there is no array at all and the
+ * searches use the plain lengths.
+ *
+ * The factors are at least 1, so the estimates of the goal directed searches stay admissible,
+ * and a shortest path without congested edges is still the shortest.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class EdgeWeights {
+	private final int edgeCount;
+	private final int[] edgeEnds;  /* the node indices of the two ends of every edge */
+	private final ConcurrentLinkedQueue<Long> pending = new ConcurrentLinkedQueue<>();  /* edge and factor bits */
+	private volatile float[] factors;  /* by edge, never changed after it is published, null if all are 1 */
+
+	/**
+	 * Creates the factors of a graph, all of them are 1.
+	 *
+	 * @param graph The graph.
+	 * @param edgeCount The number of edges of the graph.
+	 */
+	public EdgeWeights(RoutingGraph graph, int edgeCount) {
+		this.edgeCount = edgeCount;
+
+		edgeEnds = new int[2 * edgeCount];
+		Arrays.fill(edgeEnds, SearchWorkspace.NO_NODE);
+		for (int u = 0; u < graph.getNodeCount(); u++) {
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				edgeEnds[2 * graph.getArcEdge(a)] = u;
+				edgeEnds[2 * graph.getArcEdge(a) + 1] = graph.getArcHead(a);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of an end of an edge.
+	 *
+	 * @param edge The index of the edge.
+	 * @param end 0 or 1.
+	 * @return The index of the node, {@link SearchWorkspace#NO_NODE} if the edge is not in the routing graph.
+	 */
+	public int getEnd(int edge, int end) {
+		return edgeEnds[2 * edge + end];
+	}
+
+	/**
+	 * Returns the current factors for a search.
+	 *
+	 * @return The factors by edge, they must not be modified, or null if no edge is congested.
+	 */
+	public float[] getFactors() {
+		return factors;
+	}
+
+	public float getFactor(int edge) {
+		float[] f = factors;
+		return (f != null) ? f[edge] : 1;
+	}
+
+	/**
+	 * Queues a new factor of an edge, it is used by the searches after the next {@link #apply()}.
+	 * It can be called from any thread.
+	 *
+	 * @param edge The index of the edge in the edge list of the graph.
+	 * @param factor The factor, at least 1.
+	 */
+	public void set(int edge, float factor) {
+		if (edge < 0 || edge >= edgeCount) {
+			throw new IndexOutOfBoundsException("Edge " + edge);
+		}
+		if (!(factor >= 1) || Float.isInfinite(factor)) {
+			throw new IllegalArgumentException("Invalid factor: " + factor);
+		}
+		pending.offer(((long) edge << 32) | (Float.floatToIntBits(factor) & 0xffffffffL));
+	}
+
+	/**
+	 * Publishes the queued factors. Only one batch is applied at a time.
+	 *
+	 * @param increased Receives the edges whose factor increased, may be null.
+	 * @return true if a factor decreased, so any path may have got shorter.
+	 */
+	synchronized boolean apply(IntArray increased) {
+		if (pending.isEmpty()) {
+			return false;
+		}
+
+		float[] old = factors;
+		float[] f = (old != null) ? old.clone() : newFactors();
+		boolean decreased = false;
+		Long update;
+		while ((update = pending.poll()) != null) {
+			int edge = (int) (update >>> 32);
+			float factor = Float.intBitsToFloat((int) (long) update);
+			if (factor > f[edge] && increased != null) {
+				increased.add(edge);
+			}
+			decreased |= factor < f[edge];
+			f[edge] = factor;
+		}
+
+		boolean congested = false;
+		for (float factor : f) {
+			if (factor != 1) {
+				congested = true;
+				break;
+			}
+		}
+		factors = congested ? f : null;
+
+		return decreased;
+	}
+
+	/**
+	 * Publishes the queued factors, like {@link Graph#applyCongestion()} without updating the route cache.
+	 */
+	public void apply() {
+		apply(null);
+	}
+
+	private float[] newFactors() {
+		float[] f = new float[edgeCount];
+		Arrays.fill(f, 1);
+		return f;
+	}
+
+	/**
+	 * Checks if a route uses a congested edge, so it may not be the shortest any more.
+	 *
+	 * @param route The route.
+	 * @return true if an edge of the route has a factor above 1.
+	 */
+	public boolean isCongested(Route route) {
+		float[] f = factors;
+		if (f == null) {
+			return false;
+		}
+
+		for (int i = 0; i < route.getEdgeCount(); i++) {
+			if (f[route.getEdgeIndex(i)] != 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * The nearest exit of every node, the distance to it and the next node towards it, e.g. for
+ * evacuation guidance. After the field is computed every query is an array lookup.
+ *
+ * The field is computed with one Dijkstra search backwards from all the exits at the same time.
+ * The next hops form a forest with the exits at the roots. When an exit is closed or a passage
+ * is blocked, only the nodes below it in the forest lose their distances; they are seeded from
+ * their unaffected neighbours and searched again. When an exit or a passage is opened, the
+ * distances can only decrease, so the search starts from its ends and stops where nothing improves.
+ *
+ * The field copies the closures and the congestion factors of the graph when it is computed, the
+ * updates have to know every change, so the passages closed later are passed to it by
+ * {@link #setBlocked(GraphNode, GraphNode, boolean)}.
+ *
+ * A field must not be updated from more threads at the same time.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ExitField {
+	public static final int NO_EXIT = -1;
+
+	private final RoutingGraph graph;
+	private final NodeIndex nodeIndex;
+	private final int profile;
+	private final int reversedProfile;
+
+	private final int[] exits;  /* node indices */
+	private final boolean[] exitOpen;  /* by position in exits */
+	private final int[] exitAt;  /* position in exits by node, NO_EXIT if the node is not an exit */
+	private final boolean[] blocked;  /* by arc */
+	private final float[] factors;  /* by edge, the congestion when the field was computed, or null */
+
+	private final int[] nearestExits;  /* position in exits by node */
+	private final double[] distances;
+	private final int[] nextHops;
+	private final IndexedMinHeap heap;
+	private final boolean[] affected;  /* cleared after every update */
+	private final IntArray affectedNodes = new IntArray();
+	private int updatedCount;
+
+	/**
+	 * Computes the field.
+	 *
+	 * @param graph The graph.
+	 * @param nodeIndex The index of the nodes of the graph.
+	 * @param exits The indices of the distinct exit nodes, all of them are open.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @param closures The closures whose closed arcs are blocked, or null.
+	 * @param weights The congestion factors of the edges, or null.
+	 */
+	public ExitField(RoutingGraph graph, NodeIndex nodeIndex, int[] exits, int profile, Closures closures, EdgeWeights weights) {
+		this.graph = graph;
+		this.nodeIndex = nodeIndex;
+		this.profile = profile;
+		this.reversedProfile = RoutingProfile.reverse(profile);
+
+		int nodeCount = graph.getNodeCount();
+		this.exits = exits.clone();
+		exitOpen = new boolean[exits.length];
+		exitAt = new int[nodeCount];
+		blocked = new boolean[graph.getArcCount()];
+		if (closures != null) {
+			int[] closed = closures.getClosedArcs();
+			for (int a = 0; a < blocked.length; a++) {
+				blocked[a] = Closures.isClosed(closed, a);
+			}
+		}
+		factors = (weights != null) ? weights.getFactors() : null;
+		nearestExits = new int[nodeCount];
+		distances = new double[nodeCount];
+		nextHops = new int[nodeCount];
+		heap = new IndexedMinHeap(nodeCount);
+		affected = new boolean[nodeCount];
+
+		Arrays.fill(exitAt, NO_EXIT);
+		Arrays.fill(nearestExits, NO_EXIT);
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(nextHops, SearchWorkspace.NO_NODE);
+		for (int i = 0; i < exits.length; i++) {
+			exitOpen[i] = true;
+			exitAt[exits[i]] = i;
+			setExit(exits[i], i);
+		}
+		search();
+	}
+
+	/**
+	 * Returns the number of exits, including the closed ones.
+	 */
+	public int getExitCount() {
+		return exits.length;
+	}
+
+	/**
+	 * Returns the node of the i-th exit.
+	 */
+	public GraphNode getExit(int i) {
+		return nodeIndex.get(exits[i]);
+	}
+
+	public boolean isExitOpen(int i) {
+		return exitOpen[i];
+	}
+
+	/**
+	 * Returns the nearest open exit of a node.
+	 *
+	 * @param node The index of the node.
+	 * @return The position of the exit, or {@link #NO_EXIT} if no exit is reachable.
+	 */
+	public int getNearestExit(int node) {
+		return nearestExits[node];
+	}
+
+	/**
+	 * Returns the distance of a node from its nearest exit with the congestion factors, infinity if no exit is reachable.
+	 */
+	public double getDistance(int node) {
+		return distances[node];
+	}
+
+	/**
+	 * Returns the next node towards the nearest exit.
+	 *
+	 * @param node The index of the node.
+	 * @return The index of the next node, {@link SearchWorkspace#NO_NODE} at an exit or if no exit is reachable.
+	 */
+	public int getNextHop(int node) {
+		return nextHops[node];
+	}
+
+	/**
+	 * Returns the next node towards the nearest exit.
+	 *
+	 * @param node The current position of the walker.
+	 * @return The next node, or null at an exit, if no exit is reachable or the node is not in the graph.
+	 */
+	public GraphNode getNextHop(GraphNode node) {
+		int u = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+		if (u == NodeIndex.NOT_FOUND || nextHops[u] == SearchWorkspace.NO_NODE) {
+			return null;
+		}
+		return nodeIndex.get(nextHops[u]);
+	}
+
+	/**
+	 * Returns the number of nodes searched again by the last update, to compare it with the size of the graph.
+	 */
+	public int getUpdatedCount() {
+		return updatedCount;
+	}
+
+	/**
+	 * Closes or opens an exit.
+	 *
+	 * @param i The position of the exit.
+	 */
+	public void setExitOpen(int i, boolean isOpen) {
+		if (exitOpen[i] == isOpen) {
+			return;
+		}
+
+		exitOpen[i] = isOpen;
+		updatedCount = 0;
+		if (isOpen) {
+			if (distances[exits[i]] > 0) {
+				setExit(exits[i], i);
+			}
+			search();
+		} else if (nearestExits[exits[i]] == i) {
+			invalidate(exits[i]);
+		}
+	}
+
+	/**
+	 * Blocks or opens the passage between two neighbouring nodes in both directions.
+	 *
+	 * @param node0 One end of the passage.
+	 * @param node1 The other end.
+	 */
+	public void setBlocked(GraphNode node0, GraphNode node1, boolean isBlocked) {
+		int u = nodeIndex.indexOf(node0);
+		int v = nodeIndex.indexOf(node1);
+		if (u != NodeIndex.NOT_FOUND && v != NodeIndex.NOT_FOUND) {
+			setBlocked(u, v, isBlocked);
+		}
+	}
+
+	/**
+	 * Blocks or opens the arcs between two nodes in both directions.
+	 *
+	 * @param u The index of one end.
+	 * @param v The index of the other end.
+	 */
+	public void setBlocked(int u, int v, boolean isBlocked) {
+		boolean changed = setArcsBlocked(u, v, isBlocked);
+		changed |= setArcsBlocked(v, u, isBlocked);
+		if (!changed) {
+			return;
+		}
+
+		updatedCount = 0;
+		if (isBlocked) {
+			/* only the nodes whose path used the passage are affected */
+			if (nextHops[u] == v) {
+				invalidate(u);
+			} else if (nextHops[v] == u) {
+				invalidate(v);
+			}
+		} else {
+			relaxTowards(u);
+			relaxTowards(v);
+			search();
+		}
+	}
+
+	private boolean setArcsBlocked(int u, int v, boolean isBlocked) {
+		boolean changed = false;
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v && blocked[a] != isBlocked) {
+				blocked[a] = isBlocked;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private void setExit(int node, int exit) {
+		nearestExits[node] = exit;
+		distances[node] = 0;
+		nextHops[node] = SearchWorkspace.NO_NODE;
+		heap.push(node, 0);
+	}
+
+	/**
+	 * Forgets the distances of a node and of the nodes whose path leads through it, then
+	 * searches them again from their neighbours.
+	 */
+	private void invalidate(int root) {
+		affectedNodes.size = 0;
+		affectedNodes.add(root);
+		affected[root] = true;
+		for (int i = 0; i < affectedNodes.size; i++) {
+			int u = affectedNodes.values[i];
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (nextHops[v] == u && !affected[v]) {
+					affected[v] = true;
+					affectedNodes.add(v);
+				}
+			}
+		}
+
+		for (int i = 0; i < affectedNodes.size; i++) {
+			int u = affectedNodes.values[i];
+			nearestExits[u] = NO_EXIT;
+			distances[u] = Double.POSITIVE_INFINITY;
+			nextHops[u] = SearchWorkspace.NO_NODE;
+		}
+		for (int i = 0; i < affectedNodes.size; i++) {
+			int u = affectedNodes.values[i];
+			affected[u] = false;
+			if (exitAt[u] != NO_EXIT && exitOpen[exitAt[u]]) {
+				setExit(u, exitAt[u]);
+			} else {
+				relaxTowards(u);
+			}
+		}
+
+		search();
+	}
+
+	/**
+	 * Returns the length of an arc with its congestion factor.
+	 */
+	private double getLength(int arc) {
+		return (factors != null) ? graph.getArcLength(arc) * factors[graph.getArcEdge(arc)] : graph.getArcLength(arc);
+	}
+
+	/**
+	 * Takes the best path of a node through its neighbours, if it is better than its current one.
+	 */
+	private void relaxTowards(int u) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			int v = graph.getArcHead(a);
+			if (blocked[a] || !graph.isAllowed(a, profile)) {
+				continue;
+			}
+
+			double du = distances[v] + getLength(a);
+			if (du < distances[u]) {
+				nearestExits[u] = nearestExits[v];
+				distances[u] = du;
+				nextHops[u] = v;
+				heap.push(u, du);
+			}
+		}
+	}
+
+	/**
+	 * Propagates the distances of the nodes in the heap backwards over the arcs.
+	 */
+	private void search() {
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			updatedCount++;
+
+			double du = distances[u];
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (blocked[a] || !graph.isAllowed(a, reversedProfile)) {
+					continue;
+				}
+
+				double dv = du + getLength(a);
+				if (dv < distances[v]) {
+					nearestExits[v] = nearestExits[u];
+					distances[v] = dv;
+					nextHops[v] = u;
+					heap.push(v, dv);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,1533 @@
+/**
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.github.koszoaron.uninav.pojo.Location;
+
+/**
+ * Graph representation of an XML map.
+ * 
+ * This class is used to create a graph from XML files stored in the directory
+ * res/xml. It has no Android dependencies, the overlays for the map are created
+ * by the app from the wall geometry returned by getWalls().
+ * Data from multiple files/layers can be joined into a single map/graph
+ * with the function mergeNodes(). After graph creation use functions implemented
+ * in this class to find routes, nodes, etc. 
+ * 
+ * @author Paul Smith
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class Graph {
+	
+	private static final String OSM = "osm";
+	private static final String DOOR = "door";
+	private static final String ELEVATOR = "elevator";
+	private static final String HIGHWAY = "highway";
+	private static final String FOOTWAY = "footway";
+	private static final String ID = "id";
+	private static final String INDOOR = "indoor";
+	private static final String K = "k";
+	private static final String LAT = "lat";
+	private static final String LON = "lon";
+	private static final String LEVEL = "level";
+	private static final String MERGE_ID = "merge_id";
+	private static final String NAME = "name";
+	private static final String ND = "nd";
+	private static final String NODE = "node";
+	private static final String REF = "ref";
+	private static final String STEP_COUNT = "step_count";
+	private static final String STEPS = "steps";
+	private static final String TAG = "tag";
+	private static final String WAY = "way";
+	private static final String YES = "yes";
+	
+	private static final String WIFI = "wifi";
+	private static final String IR = "ir";
+	private static final String BT = "bt";
+	private static final String ROOM = "room";
+	private static final String WALL = "wall";
+	
+	private static final int ROUTE_CACHE_SIZE = 256;  /* paths kept by the route cache */
+	
+	private List<GraphNode> nodes;  /* read only views of a loaded graph file */
+	private List<GraphEdge> edges;
+	
+	private List<Location[]> wallPaths;  /* the geometry of the walls, level stored as elevation */
+	
+	private NodeIndex nodeIndex;  /* dense indices of the nodes by their IDs, built by mergeNodes() */
+	private NameIndex nameIndex;  /* prefix and typo tolerant search of the names */
+	
+	private PathFinder pathFinder;  /* shortest paths over the int indexed copy of the graph */
+	private SearchWorkspace workspace;  /* reused by the searches, guarded by itself */
+	private SearchWorkspace backwardWorkspace;  /* second direction of the bidirectional searches, guarded by workspace */
+	private ContractionHierarchy hierarchy;  /* the profiles are built on demand */
+	private PortalOverlay portalOverlay;  /* the profiles are built on demand */
+	private ChainGraph chainGraph;  /* the degree-2 chains contracted to super-edges */
+	private AlternativeRouteFinder alternativeFinder;  /* guarded by workspace */
+	private Closures closures;  /* passages and nodes closed at runtime, guarded by workspace */
+	private EdgeWeights edgeWeights;  /* congestion factors, updated without locks */
+	private volatile RoomTable roomTable;  /* precomputed paths between the rooms, null if not loaded */
+	private volatile SearchMode searchMode = SearchMode.DIJKSTRA;
+	private final RouteCache routeCache = new RouteCache(ROUTE_CACHE_SIZE);  /* invalidated by buildRouting() */
+	private volatile GraphSnapshot snapshot;  /* replaced by buildRouting() */
+	private volatile SearchStatistics lastStatistics;
+	
+	public Graph() {
+		nodes = new LinkedList<>();
+		edges = new LinkedList<>();
+		wallPaths = new LinkedList<>();
+	}
+	
+	/**
+	 * Adds the footways and walls of an OSM XML file to the graph.
+	 * 
+	 * @param parser The parser of the file, on Android an XmlResourceParser of res/xml can be passed.
+	 * @return true if the file contained OSM data with footways to add.
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	public boolean addToGraphFromXmlPullParser(XmlPullParser parser) throws XmlPullParserException, IOException {
+		if (parser == null) {
+			return false;
+		}
+		
+		boolean res = false;
+		boolean isOsmData = false;  /* flag to wait for osm data */
+		GraphNode tempNode = new GraphNode();  /* temporary node to be added to all nodes in file */
+		GraphNode nullNode = new GraphNode();  /* 'NULL' node to point to for dereferencing */
+		GraphWay tempWay = new GraphWay();  /* temporary way to be added to all nodes in file */
+		GraphWay nullWay = new GraphWay();  /* 'NULL' node to point to for dereferencing */
+		NodeIndex allNodes = new NodeIndex();  /* store all nodes found in file, indexed by ID (first occurrence wins) */
+		LinkedList<GraphWay> allWays = new LinkedList<>();  /* store all ways found in file */
+		LinkedList<GraphWay> remainingWays = new LinkedList<>();
+		LinkedList<GraphWay> wallWays = new LinkedList<>();
+
+		parser.next();
+		int eventType = parser.getEventType();
+		
+		while (eventType != XmlPullParser.END_DOCUMENT) {
+			switch (eventType) {
+				case XmlPullParser.START_DOCUMENT:
+					break;
+				case XmlPullParser.START_TAG:
+					if (!isOsmData) {
+						if (parser.getName().equals(OSM)) {
+							isOsmData = true;
+							// TODO: Test for correct version? (v0.6)
+						}
+					} else {
+						int attributeCount = parser.getAttributeCount();
+						
+						if (parser.getName().equals(NODE)) {
+							tempNode = new GraphNode();
+							
+							for (int i = 0; i < attributeCount; i++) {
+								if (parser.getAttributeName(i).equals(ID)) {
+									tempNode.setId(parseLong(parser.getAttributeValue(i), 0));
+								} else if (parser.getAttributeName(i).equals(LAT)) {
+									tempNode.setLat(Double.parseDouble(parser.getAttributeValue(i)));
+								} else if (parser.getAttributeName(i).equals(LON)) {
+									tempNode.setLon(Double.parseDouble(parser.getAttributeValue(i)));
+								}
+							}							
+						} else if (parser.getName().equals(TAG)) { 
+							if (tempNode != nullNode) {
+								for (int i = 0; i < attributeCount; i++) {
+									if (parser.getAttributeName(i).equals(K)) {
+										if (parser.getAttributeValue(i).equals(INDOOR)) {
+											String v = parser.getAttributeValue(i + 1);
+											
+											tempNode.setIndoors(v.equals(YES));
+											if (v.equals(DOOR)) {
+												tempNode.setIndoors(true);  /* this is a door (which is always inDOORS) ;) */
+											}
+										} else if (parser.getAttributeValue(i).equals(NAME)) {
+											tempNode.setName(parser.getAttributeValue(i + 1));
+										} else if (parser.getAttributeValue(i).equals(MERGE_ID)) {
+											tempNode.setMergeId(parser.getAttributeValue(i + 1));
+										} else if (parser.getAttributeValue(i).equals(STEP_COUNT)) {
+											tempNode.setSteps(parseInt(parser.getAttributeValue(i + 1), Integer.MAX_VALUE));
+										} else if (parser.getAttributeValue(i).equals(LEVEL)) {
+											float f = Float.parseFloat(parser.getAttributeValue(i + 1));
+											tempNode.setLevel(f);
+										} 
+									}
+								}
+							} else {  /* way */
+								for (int i = 0; i < attributeCount; i++) {
+									if (parser.getAttributeName(i).equals(K)) {
+										if (parser.getAttributeValue(i).equals(STEP_COUNT)) {
+											tempWay.setSteps(parseInt(parser.getAttributeValue(i + 1), Integer.MAX_VALUE));
+										} else if (parser.getAttributeValue(i).equals(LEVEL)) {
+											float f = Float.parseFloat(parser.getAttributeValue(i + 1));
+											tempWay.setLevel(f);
+										} else if (parser.getAttributeValue(i).equals(INDOOR)) {
+											String v = parser.getAttributeValue(i + 1);
+											
+											if (v.equals(YES)) {
+												tempWay.setIndoor(true);
+											} else if (v.equals(ROOM) || v.equals(WALL)) {
+												tempWay.setIndoor(true);
+												tempWay.setWall(true);
+											} else {
+												tempWay.setIndoor(false);
+											}
+										} else if (parser.getAttributeValue(i).equals(HIGHWAY)) {
+											String v = parser.getAttributeValue(i + 1);
+											if (v.equals(STEPS)){
+												if (tempWay.getSteps() == 0) { 	/* no steps configured before
+												 								 * so set to undefined (but present),
+																				 * otherwise might be set later */
+													tempWay.setSteps(-1);
+												}
+											}
+											if (v.equals(ELEVATOR)) {
+												tempWay.setSteps(-2);
+											}
+											if (v.equals(FOOTWAY)) {
+												tempWay.setFootway(true);
+											}
+										}
+									}
+								}
+							}
+							
+						} else if (parser.getName().equals(WAY)) {
+							tempWay = new GraphWay();
+							
+							for (int i = 0; i < attributeCount; i++) {
+								if (parser.getAttributeName(i).equals(ID)) {
+									tempWay.setId(parseLong(parser.getAttributeValue(i), 0));
+								}
+							}	
+						} else if (parser.getName().equals(ND)) {
+							for (int i = 0; i < attributeCount; i++) {
+								if (parser.getAttributeName(i).equals(REF)) {
+									//int ref = Integer.parseInt(parser.getAttributeValue(i));
+									long ref = Long.parseLong(parser.getAttributeValue(i));
+									tempWay.addRef(ref);
+								}
+							}
+						}
+					}
+					break;
+				case XmlPullParser.END_TAG:
+					if (isOsmData) {
+						if (parser.getName().equals(OSM)) {
+							res = true;
+						} else if (parser.getName().equals(NODE)) {
+							allNodes.add(tempNode);
+							tempNode = nullNode;		
+						} else if (parser.getName().equals(TAG)) { 
+							/* nothing */
+						} else if (parser.getName().equals(WAY)) {
+							allWays.add(tempWay);
+							tempWay = nullWay;
+						} else if (parser.getName().equals(ND)) {
+							/* nothing */
+						}
+					}
+					break;
+				default:
+			}
+			
+			eventType = parser.next();			
+		}
+		
+		for (GraphWay way : allWays) {  /* find ways which are indoors at some point */
+			if (way.isWall()) {  /* walls shall be added to a separate list */
+				wallWays.add(way);
+			} else if (way.isIndoor()) {  /* whole path is indoors, keep it */
+				if (way.isFootway()) {
+					remainingWays.add(way);
+				}
+			} else if (way.isFootway()) {  /* check for path with a node from this file */
+				for (int i = 0; i < way.getRefCount(); i++) {
+					if (allNodes.indexOf(way.getRef(i)) != NodeIndex.NOT_FOUND) {
+						remainingWays.add(way);
+						break;
+					}
+				}
+			}
+		}
+
+		if (remainingWays.size() == 0) {
+			/* nothing to be added to the graph */
+			return false;
+		}
+
+		for (GraphWay way : wallWays) {
+			List<Location> points = new ArrayList<>(way.getRefCount());
+			for (int i = 0; i < way.getRefCount(); i++) {
+				GraphNode n = allNodes.getNode(way.getRef(i));
+				if (n != null) {
+					points.add(new Location(n.getLat(), n.getLon(), n.getLevel()));
+				}
+			}
+			wallPaths.add(points.toArray(new Location[points.size()]));
+		}
+
+		boolean[] inGraph = new boolean[allNodes.size()];  /* nodes of this file already added to the graph */
+		for (GraphWay way : remainingWays) {
+			float level = way.getLevel();
+			boolean indoor = way.isIndoor();
+			int firstPos = NodeIndex.NOT_FOUND;
+
+			for (int i = 0; i < way.getRefCount(); i++) {
+				int nextPos = allNodes.indexOf(way.getRef(i));
+				if (nextPos == NodeIndex.NOT_FOUND) {  /* the node is not in this file, the way is broken there */
+					if (firstPos != NodeIndex.NOT_FOUND && !inGraph[firstPos]) {
+						nodes.add(allNodes.get(firstPos));  /* add the last node of the piece if it's not present */
+						inGraph[firstPos] = true;
+					}
+					firstPos = NodeIndex.NOT_FOUND;
+					continue;
+				}
+
+				if (firstPos != NodeIndex.NOT_FOUND) {
+					GraphNode firstNode = allNodes.get(firstPos);
+					GraphNode nextNode = allNodes.get(nextPos);
+					double len = getDistance(firstNode.getLat(), firstNode.getLon(), nextNode.getLat(), nextNode.getLon());  /* get length between P1 and P2 */
+					double compDegree = getInitialBearing(firstNode.getLat(), firstNode.getLon(), nextNode.getLat(), nextNode.getLon());  /* get initial bearing between P1 and P2 */
+					GraphEdge tempEdge = new GraphEdge(firstNode, nextNode, len, compDegree, level, indoor);
+
+					if (way.getSteps() > 0) {  /* make the edge a staircase if the steps count was set correctly */
+						tempEdge.setStairs(true);
+						tempEdge.setElevator(false);
+						tempEdge.setSteps(way.getSteps());
+					} else if (way.getSteps() == -1) {  /* make the edge a staircase if the steps count was set to -1 (undefined steps) */
+						tempEdge.setStairs(true);
+						tempEdge.setElevator(false);
+						tempEdge.setSteps(-1); 
+					} else if (way.getSteps() == -2) {  /* make the edge an elevator if the steps count was set to -2 */
+						tempEdge.setStairs(false);
+						tempEdge.setElevator(true);
+						tempEdge.setSteps(-2);
+					} else if (way.getSteps() == 0) {
+						tempEdge.setStairs(false);
+						tempEdge.setElevator(false);
+						tempEdge.setSteps(0);
+					}
+
+					edges.add(tempEdge);  /* add the edge to the graph */
+					if (!inGraph[firstPos]) {
+						nodes.add(firstNode);  /* add the node to the graph if it's not present */
+						inGraph[firstPos] = true;
+					}
+				}
+				firstPos = nextPos;
+			}
+
+			if (firstPos != NodeIndex.NOT_FOUND && !inGraph[firstPos]) {
+				nodes.add(allNodes.get(firstPos));  /* add the last node to the graph if it's not present */
+				inGraph[firstPos] = true;
+			}
+		}
+		
+		return res;
+	}
+	
+	// use this to add edges for stairs to flags, this should be called once
+	/**
+	 * Merges the nodes having the same merge ID (e.g. the ends of stairs on different layers)
+	 * and builds the lookup structures of the graph.
+	 * 
+	 * The first node of every merge ID is kept, the edges of the other nodes of the group are
+	 * moved to it. The groups are found with a hash map and the edges are updated in a single
+	 * pass, so the running time is linear in the size of the graph.
+	 */
+	public void mergeNodes() {
+		HashMap<String, Integer> groups = new HashMap<>();  /* merge ID -> index of the node kept for the group */
+		LongIntHashMap mergedIds = new LongIntHashMap();  /* ID of a merged node -> index of its root */
+		
+		nodeIndex = new NodeIndex(nodes);
+		
+		/* find the root of every merge ID, the nodes are compared by their IDs */
+		for (int i = 0; i < nodeIndex.size(); i++) {
+			GraphNode node = nodeIndex.get(i);
+			String mergeId = node.getMergeId();
+			if (mergeId == null) {
+				continue;
+			}
+			
+			Integer group = groups.get(mergeId);
+			if (group == null) {
+				groups.put(mergeId, i);
+			} else if (!nodeIndex.get(group).equals(node)) {
+				mergedIds.putIfAbsent(node.getId(), group);
+				/* node was merged/removed, do not check */
+				node.setMergeId(null);
+			}
+		}
+		
+		/* update all references pointing to merged nodes to their roots */
+		if (mergedIds.size() > 0) {
+			for (GraphEdge edge : edges) {
+				int root0 = mergedIds.get(edge.getNode0().getId(), -1);
+				if (root0 != -1) {
+					edge.setNode0(nodeIndex.get(root0));
+				}
+				int root1 = mergedIds.get(edge.getNode1().getId(), -1);
+				if (root1 != -1) {
+					edge.setNode1(nodeIndex.get(root1));
+				}
+			}
+		}
+		
+		/* create array for binary search */
+		nameIndex = new NameIndex(nodeIndex, sortNodesByName());
+
+		/* add edges to node, faster look up for neighbors
+		 * the lists are rebuilt, so calling this again after adding more layers is safe */
+		for (GraphNode node : nodes) {
+			node.getLocEdges().clear();
+		}
+		for (GraphEdge edge : edges) {
+			GraphNode n0 = edge.getNode0();
+			GraphNode n1 = edge.getNode1();
+			n0.getLocEdges().add(edge);
+			if (n1 != n0) {  /* a loop is added only once */
+				n1.getLocEdges().add(edge);
+			}
+		}
+		
+		buildRouting(new RoutingGraph(nodeIndex, edges));
+	}
+
+	/**
+	 * Replaces the contents of the graph with a graph file created by {@link GraphFile#write(Graph, File)}.
+	 * 
+	 * The file holds an already merged graph, so there is no need to call mergeNodes() afterwards.
+	 * 
+	 * @param file The compiled graph file.
+	 * @throws IOException If the file can not be read or its version is not supported.
+	 */
+	public void loadCompiledGraph(File file) throws IOException {
+		loadCompiledGraph(GraphFile.map(file));
+	}
+	
+	/**
+	 * Replaces the contents of the graph with an already mapped graph file.
+	 * 
+	 * Nothing is copied: the routing graph and the name index use the sections of the file, the
+	 * node and edge objects are created when the API returns them. The node, edge and wall lists
+	 * of the graph become read only views of the file.
+	 * 
+	 * @param gf The graph file.
+	 */
+	public void loadCompiledGraph(GraphFile gf) {
+		nodes = gf.getNodes();
+		edges = gf.getEdges();
+		wallPaths = gf.getWalls();
+		
+		nodeIndex = gf.createNodeIndex();
+		nameIndex = gf.createNameIndex(nodeIndex);
+		
+		buildRouting(gf.createRoutingGraph());
+	}
+	
+	/**
+	 * Creates the routing structures of a new graph.
+	 * @param routingGraph the routing graph of the node index
+	 */
+	private void buildRouting(RoutingGraph routingGraph) {
+		pathFinder = new PathFinder(routingGraph);
+		workspace = pathFinder.createWorkspace();
+		backwardWorkspace = pathFinder.createWorkspace();
+		closures = new Closures(pathFinder.getGraph());
+		pathFinder.setClosures(closures);
+		edgeWeights = new EdgeWeights(pathFinder.getGraph(), routingGraph.getEdgeCount());
+		pathFinder.setEdgeWeights(edgeWeights);
+		alternativeFinder = new AlternativeRouteFinder(pathFinder.getGraph(), nodeIndex, closures, edgeWeights);
+		hierarchy = new ContractionHierarchy(pathFinder.getGraph());
+		portalOverlay = new PortalOverlay(pathFinder.getGraph());
+		chainGraph = new ChainGraph(pathFinder.getGraph());
+		roomTable = null;
+		routeCache.invalidate();  /* the cached paths are indices of the old graph */
+		snapshot = new GraphSnapshot(pathFinder.getGraph(), nodeIndex, nameIndex, closures, edgeWeights);
+	}
+	
+	/**
+	 * Returns the immutable routing view of the current graph, which can be queried from more
+	 * threads without locks. Rebuilding the graph (mergeNodes() or loading a compiled graph)
+	 * replaces the snapshot, the old one stays valid for its users.
+	 * @return the snapshot, or null before mergeNodes() or loading a compiled graph
+	 */
+	public GraphSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the contraction hierarchy used by {@link SearchMode#CONTRACTION_HIERARCHY}, e.g. to prepare
+	 * or save it. A new graph (mergeNodes() or loading a compiled graph) gets an empty hierarchy.
+	 * @return the hierarchy, or null before mergeNodes() or loading a compiled graph
+	 */
+	public ContractionHierarchy getContractionHierarchy() {
+		return hierarchy;
+	}
+	
+	/**
+	 * Returns the portal overlay used by {@link SearchMode#PORTAL_OVERLAY}, e.g. to prepare it.
+	 * @return the overlay, or null before mergeNodes() or loading a compiled graph
+	 */
+	public PortalOverlay getPortalOverlay() {
+		return portalOverlay;
+	}
+	
+	/**
+	 * Returns the contracted graph used by {@link SearchMode#CHAIN_CONTRACTION}, e.g. to check how many nodes it has.
+	 * @return the contracted graph, or null before mergeNodes() or loading a compiled graph
+	 */
+	public ChainGraph getChainGraph() {
+		return chainGraph;
+	}
+	
+	/**
+	 * Computes the shortest distances from every source to every target, e.g. to find the nearest
+	 * exit. There is one search per source, which stops when all the targets are settled.
+	 * @param sources the start nodes
+	 * @param targets the destination nodes
+	 * @param staircase
+	 * @param elevator
+	 * @param outside
+	 * @param withPaths whether to keep the paths too
+	 * @return the matrix, the nodes not in the graph are unreachable
+	 */
+	public DistanceMatrix getDistanceMatrix(List<GraphNode> sources, List<GraphNode> targets, boolean staircase, boolean elevator, boolean outside, boolean withPaths) {
+		return getDistanceMatrix(sources, targets, RoutingProfile.of(staircase, elevator, outside), withPaths);
+	}
+	
+	/**
+	 * Computes the shortest distances from every source to every target with a routing profile.
+	 * @param sources the start nodes
+	 * @param targets the destination nodes
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @param withPaths whether to keep the paths too
+	 * @return the matrix, the nodes not in the graph are unreachable
+	 */
+	public DistanceMatrix getDistanceMatrix(List<GraphNode> sources, List<GraphNode> targets, int profile, boolean withPaths) {
+		DistanceMatrix matrix = new DistanceMatrix(nodeIndex, sources.size(), targets.size(), withPaths);
+		
+		int[] targetIndices = new int[targets.size()];
+		int found = 0;
+		for (int j = 0; j < targetIndices.length; j++) {
+			GraphNode node = targets.get(j);
+			targetIndices[j] = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+			if (targetIndices[j] != NodeIndex.NOT_FOUND) {
+				found++;
+			}
+		}
+		int[] searchTargets = new int[found];
+		for (int j = 0, k = 0; j < targetIndices.length; j++) {
+			if (targetIndices[j] != NodeIndex.NOT_FOUND) {
+				searchTargets[k++] = targetIndices[j];
+			}
+		}
+		
+		for (int i = 0; i < sources.size(); i++) {
+			GraphNode node = sources.get(i);
+			int source = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+			
+			synchronized (workspace) {
+				if (source != NodeIndex.NOT_FOUND) {
+					pathFinder.findPaths(workspace, source, searchTargets, profile);
+				}
+				for (int j = 0; j < targetIndices.length; j++) {
+					int target = targetIndices[j];
+					if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND || !workspace.isSettled(target)) {
+						matrix.set(i, j, Double.POSITIVE_INFINITY, null);
+					} else {
+						matrix.set(i, j, workspace.getDistance(target), withPaths ? workspace.getPath(target) : null);
+					}
+				}
+			}
+		}
+		
+		return matrix;
+	}
+	
+	/**
+	 * Computes the paths between all the named nodes, getShortestPath() uses them when both ends are rooms.
+	 * @param threads the number of searches running in parallel
+	 * @return the table, e.g. to save it
+	 */
+	public RoomTable computeRoomTable(int threads) {
+		boolean[] isRoom = new boolean[nodeIndex.size()];
+		int count = 0;
+		for (int i = 0; i < nameIndex.size(); i++) {
+			int index = nameIndex.getNodeIndex(i);
+			if (!isRoom[index]) {
+				isRoom[index] = true;
+				count++;
+			}
+		}
+		
+		int[] rooms = new int[count];
+		for (int i = 0, r = 0; i < isRoom.length; i++) {
+			if (isRoom[i]) {
+				rooms[r++] = i;
+			}
+		}
+		
+		setRoomTable(RoomTable.compute(pathFinder.getGraph(), rooms, threads));
+		return roomTable;
+	}
+	
+	/**
+	 * Loads the room table saved by {@link RoomTable#write(File)} for this graph.
+	 * @param file the room table file
+	 * @throws IOException if the file can not be read or belongs to another graph
+	 */
+	public void loadRoomTable(File file) throws IOException {
+		setRoomTable(RoomTable.read(file, pathFinder.getGraph()));
+	}
+	
+	/**
+	 * Loads the room table from a region of a file, e.g. an uncompressed asset of an APK.
+	 * @param channel the channel of the file
+	 * @param position the position of the table in the file
+	 * @param size the size of the table
+	 * @throws IOException if the region can not be read or belongs to another graph
+	 */
+	public void loadRoomTable(FileChannel channel, long position, long size) throws IOException {
+		setRoomTable(RoomTable.read(channel, position, size, pathFinder.getGraph()));
+	}
+	
+	/**
+	 * Returns the precomputed paths between the rooms.
+	 * @return the table, or null if it was not computed or loaded for the current graph
+	 */
+	public RoomTable getRoomTable() {
+		return roomTable;
+	}
+	
+	private void setRoomTable(RoomTable table) {
+		roomTable = table;
+		routeCache.invalidate();  /* the paths of the table are preferred */
+	}
+	
+	/**
+	 * Returns the cache of the paths returned by getShortestPath(), e.g. to resize it or to read
+	 * its hit and miss counters. It is emptied when the graph changes.
+	 * @return the cache
+	 */
+	public RouteCache getRouteCache() {
+		return routeCache;
+	}
+	
+	/**
+	 * Loads the contraction hierarchy saved by {@link ContractionHierarchy#write(File)} for this graph.
+	 * @param file the hierarchy file
+	 * @throws IOException if the file can not be read or it belongs to another graph
+	 */
+	public void loadContractionHierarchy(File file) throws IOException {
+		hierarchy = ContractionHierarchy.read(file, pathFinder.getGraph());
+	}
+	
+	/**
+	 * Loads the contraction hierarchy from a region of a file, e.g. an uncompressed asset of an APK.
+	 * @param channel the channel of the file
+	 * @param position the position of the hierarchy in the file
+	 * @param size the size of the hierarchy
+	 * @throws IOException if the region can not be read or it belongs to another graph
+	 */
+	public void loadContractionHierarchy(FileChannel channel, long position, long size) throws IOException {
+		hierarchy = ContractionHierarchy.read(channel, position, size, pathFinder.getGraph());
+	}
+
+	public Stack<GraphNode> getShortestPath(String from, String to, boolean staircase, boolean elevator, boolean outside) {
+		return getShortestPath(getNodeFromName(from), getNodeFromName(to), RoutingProfile.of(staircase, elevator, outside));
+	}
+	
+	public Stack<GraphNode> getShortestPath(long from, String to, boolean staircase, boolean elevator, boolean outside) {
+		return getShortestPath(getNode(from), getNodeFromName(to), RoutingProfile.of(staircase, elevator, outside));
+	}
+	
+	/**
+	 * Creates a stack of nodes with the destination at the bottom and the start at the top.
+	 * @param from the name of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the path, empty if the start is the destination, or null if the destination is not reachable
+	 */
+	public Stack<GraphNode> getShortestPath(String from, String to, int profile) {
+		return getShortestPath(getNodeFromName(from), getNodeFromName(to), profile);
+	}
+	
+	/**
+	 * Creates a stack of nodes with the destination at the bottom and the start at the top.
+	 * @param from the OSM ID of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the path, empty if the start is the destination, or null if the destination is not reachable
+	 */
+	public Stack<GraphNode> getShortestPath(long from, String to, int profile) {
+		return getShortestPath(getNode(from), getNodeFromName(to), profile);
+	}
+	
+	/**
+	 * Searches the shortest path like getShortestPath() and returns it with its edges, bearings and distances.
+	 * @param from the name of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the route, or null if the destination is not reachable
+	 */
+	public Route getRoute(String from, String to, int profile) {
+		return getRoute(getNodeFromName(from), getNodeFromName(to), profile);
+	}
+	
+	/**
+	 * Searches the shortest path like getShortestPath() and returns it with its edges, bearings and distances.
+	 * @param from the OSM ID of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the route, or null if the destination is not reachable
+	 */
+	public Route getRoute(long from, String to, int profile) {
+		return getRoute(getNode(from), getNodeFromName(to), profile);
+	}
+	
+	/**
+	 * Creates a router to a destination which repairs its path when the walker leaves the route
+	 * or passages get blocked, instead of searching again. It starts from the current closures and congestion
+	 * factors, but it is not updated by their later changes or by later changes of the graph.
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the router, or null if there is no node with the name
+	 */
+	public IncrementalRouter createIncrementalRouter(String to, int profile) {
+		GraphNode node = getNodeFromName(to);
+		int target = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+		if (target == NodeIndex.NOT_FOUND) {
+			return null;
+		}
+		
+		return new IncrementalRouter(pathFinder.getGraph(), nodeIndex, target, profile, closures, edgeWeights);
+	}
+	
+	/**
+	 * Searches the shortest path and its alternatives, which are not much longer, do not share
+	 * much with each other and have no detours, see {@link AlternativeRouteFinder}.
+	 * @param from the name of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @param k the largest number of routes to return
+	 * @param budgetMillis the time allowed for the search, the shortest path is returned even if it runs out
+	 * @return the routes ordered by their length, empty if the destination is not reachable
+	 */
+	public List<Route> getAlternativeRoutes(String from, String to, int profile, int k, long budgetMillis) {
+		GraphNode fromNode = getNodeFromName(from);
+		GraphNode toNode = getNodeFromName(to);
+		int source = (fromNode != null) ? nodeIndex.indexOf(fromNode) : NodeIndex.NOT_FOUND;
+		int target = (toNode != null) ? nodeIndex.indexOf(toNode) : NodeIndex.NOT_FOUND;
+		if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND) {
+			return new ArrayList<>();
+		}
+		
+		synchronized (workspace) {
+			return alternativeFinder.findRoutes(workspace, backwardWorkspace, source, target, profile, k, budgetMillis * 1000000L);
+		}
+	}
+	
+	/**
+	 * Returns the AlternativeRouteFinder of the graph, e.g. to change its limits.
+	 * Its settings must not be changed during a search.
+	 */
+	public AlternativeRouteFinder getAlternativeRouteFinder() {
+		return alternativeFinder;
+	}
+	
+	/**
+	 * Computes the nodes reachable from a node within a distance. For a time limit pass the
+	 * time multiplied by the walking speed.
+	 * @param from the name of the start node
+	 * @param maxDistance the largest distance in metres
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the reachable nodes and the edges leaving them, or null if there is no node with the name
+	 */
+	public Isochrone getReachable(String from, double maxDistance, int profile) {
+		GraphNode node = getNodeFromName(from);
+		int source = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+		if (source == NodeIndex.NOT_FOUND) {
+			return null;
+		}
+		
+		Isochrone result = new Isochrone(nodeIndex);
+		synchronized (workspace) {
+			pathFinder.findReachable(workspace, source, maxDistance, profile, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the reachable nodes of every named node in one batch, e.g. for an accessibility audit.
+	 * @param maxDistance the largest distance in metres
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the results in the order of getRoomsList()
+	 */
+	public Isochrone[] getReachableFromRooms(double maxDistance, int profile) {
+		Isochrone[] results = new Isochrone[nameIndex.size()];
+		synchronized (workspace) {
+			for (int i = 0; i < results.length; i++) {
+				results[i] = new Isochrone(nodeIndex);
+				pathFinder.findReachable(workspace, nameIndex.getNodeIndex(i), maxDistance, profile, results[i]);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Returns the doors to the outside: the indoor nodes which have an edge to an outdoor node.
+	 * The maps have no separate tag for the exits.
+	 * @return the exit nodes in the order of their indices
+	 */
+	public List<GraphNode> getExits() {
+		RoutingGraph graph = pathFinder.getGraph();
+		List<GraphNode> exits = new ArrayList<>();
+		for (int u = 0; u < graph.getNodeCount(); u++) {
+			if (!graph.isIndoor(u)) {
+				continue;
+			}
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				if (!graph.isIndoor(graph.getArcHead(a))) {
+					exits.add(nodeIndex.get(u));
+					break;
+				}
+			}
+		}
+		return exits;
+	}
+	
+	/**
+	 * Computes the nearest exit, the distance to it and the next node towards it for every node.
+	 * The field starts from the current closures and congestion factors. It is updated when exits are closed or
+	 * passages are blocked through it, but not by later closures or changes of the graph.
+	 * @param exits the exit nodes, e.g. getExits(); duplicates and nodes not in the graph are skipped
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the field, the exits are numbered in the order of the list without the skipped nodes
+	 */
+	public ExitField createExitField(List<GraphNode> exits, int profile) {
+		boolean[] isExit = new boolean[nodeIndex.size()];
+		int[] indices = new int[exits.size()];
+		int count = 0;
+		for (GraphNode node : exits) {
+			int index = nodeIndex.indexOf(node);
+			if (index != NodeIndex.NOT_FOUND && !isExit[index]) {
+				isExit[index] = true;
+				indices[count++] = index;
+			}
+		}
+		
+		return new ExitField(pathFinder.getGraph(), nodeIndex, Arrays.copyOf(indices, count), profile, closures, edgeWeights);
+	}
+	
+	/**
+	 * Creates a router which answers large batches of requests on the threads of an executor.
+	 * Its searches use the current closures and congestion factors, but it is not updated by later changes of the graph.
+	 * @param executor the executor which runs the searches, e.g. Executors.newFixedThreadPool() with a thread per core
+	 * @param parallelism the number of searches running at the same time, e.g. the number of threads
+	 * @return the router
+	 */
+	public BatchRouter createBatchRouter(ExecutorService executor, int parallelism) {
+		return new BatchRouter(pathFinder.getGraph(), nodeIndex, closures, edgeWeights, executor, parallelism);
+	}
+	
+	/**
+	 * Closes or opens the passage between two neighbouring nodes in both directions, e.g. a corridor
+	 * being cleaned or a locked fire door. Closing removes only the cached paths crossing the
+	 * passage, opening clears the route cache. It does not block the searches and can be called from
+	 * any thread. The closures apply to the snapshot and the batch routers at once; the incremental
+	 * routers and the exit fields copy them when they are created. They are reset when the graph is rebuilt.
+	 * @param node0 one end of the passage
+	 * @param node1 the other end
+	 * @param isClosed
+	 * @return true if the closures changed
+	 */
+	public boolean setPassageClosed(GraphNode node0, GraphNode node1, boolean isClosed) {
+		int u = (node0 != null) ? nodeIndex.indexOf(node0) : NodeIndex.NOT_FOUND;
+		int v = (node1 != null) ? nodeIndex.indexOf(node1) : NodeIndex.NOT_FOUND;
+		if (u == NodeIndex.NOT_FOUND || v == NodeIndex.NOT_FOUND) {
+			return false;
+		}
+		
+		if (!closures.setPassageClosed(u, v, isClosed)) {
+			return false;
+		}
+		if (isClosed) {
+			routeCache.invalidatePassage(u, v);
+		} else {
+			routeCache.invalidate();  /* any path may get shorter */
+		}
+		return true;
+	}
+	
+	/**
+	 * Closes or opens a node with all its passages, e.g. an elevator out of order, like setPassageClosed().
+	 * @param node the node
+	 * @param isClosed
+	 * @return true if the closures changed
+	 */
+	public boolean setNodeClosed(GraphNode node, boolean isClosed) {
+		int u = (node != null) ? nodeIndex.indexOf(node) : NodeIndex.NOT_FOUND;
+		if (u == NodeIndex.NOT_FOUND) {
+			return false;
+		}
+		
+		if (!closures.setNodeClosed(u, isClosed)) {
+			return false;
+		}
+		if (isClosed) {
+			routeCache.invalidateNode(u);
+		} else {
+			routeCache.invalidate();
+		}
+		return true;
+	}
+	
+	/**
+	 * Opens all the closed passages and nodes.
+	 */
+	public void clearClosures() {
+		closures.clear();
+		routeCache.invalidate();
+	}
+	
+	/**
+	 * Returns the congestion factors of the edges, e.g. to set them by edge index.
+	 * @return the factors, or null before mergeNodes() or loading a compiled graph
+	 */
+	public EdgeWeights getEdgeWeights() {
+		return edgeWeights;
+	}
+	
+	/**
+	 * Queues the congestion factor of the passage between two neighbouring nodes, the searches
+	 * multiply its length with the factor after the next applyCongestion(). It does not block
+	 * the searches and can be called from any thread. Like the closures, the factors are reset
+	 * when the graph is rebuilt; they apply to the snapshot and the batch routers at once, the
+	 * incremental routers and the exit fields copy them when they are created.
+	 * @param node0 one end of the passage
+	 * @param node1 the other end
+	 * @param factor the factor, at least 1 (1 is a free passage)
+	 * @return false if the nodes are not neighbours
+	 */
+	public boolean setCongestion(GraphNode node0, GraphNode node1, float factor) {
+		RoutingGraph graph = pathFinder.getGraph();
+		int u = (node0 != null) ? nodeIndex.indexOf(node0) : NodeIndex.NOT_FOUND;
+		int v = (node1 != null) ? nodeIndex.indexOf(node1) : NodeIndex.NOT_FOUND;
+		if (u == NodeIndex.NOT_FOUND || v == NodeIndex.NOT_FOUND) {
+			return false;
+		}
+		
+		boolean found = false;
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v) {
+				edgeWeights.set(graph.getArcEdge(a), factor);
+				found = true;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Applies the queued congestion factors in one batch. Only the cached paths using more
+	 * congested edges are removed, unless a factor decreased.
+	 */
+	public void applyCongestion() {
+		IntArray increased = new IntArray();
+		if (edgeWeights.apply(increased)) {
+			routeCache.invalidate();  /* any path may get shorter */
+			return;
+		}
+		
+		for (int i = 0; i < increased.size; i++) {
+			int u = edgeWeights.getEnd(increased.values[i], 0);
+			int v = edgeWeights.getEnd(increased.values[i], 1);
+			if (u != SearchWorkspace.NO_NODE) {
+				routeCache.invalidatePassage(u, v);
+			}
+		}
+	}
+	
+	/**
+	 * Reads congestion factors from a feed, e.g. a file or a socket, until its end. Every line
+	 * holds the OSM IDs of two neighbouring nodes and the factor of the passage between them,
+	 * separated by white space; empty lines, lines starting with # and invalid lines are skipped.
+	 * @param reader the feed
+	 * @param batchSize the number of lines applied in one batch
+	 * @return the number of factors set
+	 * @throws IOException if the feed can not be read
+	 */
+	public int readCongestion(BufferedReader reader, int batchSize) throws IOException {
+		int count = 0;
+		int batch = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length != 3 || fields[0].startsWith("#")) {
+				continue;
+			}
+			
+			float factor;
+			try {
+				factor = Float.parseFloat(fields[2]);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			if (factor >= 1 && !Float.isInfinite(factor)
+					&& setCongestion(getNode(parseLong(fields[0], -1)), getNode(parseLong(fields[1], -1)), factor)) {
+				count++;
+				if (++batch == batchSize) {
+					applyCongestion();
+					batch = 0;
+				}
+			}
+		}
+		applyCongestion();
+		
+		return count;
+	}
+	
+	/**
+	 * Returns the node with the given OSM ID, this can be used after mergeNodes()
+	 * @param id
+	 * @return the node or null if there is no node with the ID
+	 */
+	public GraphNode getNode(long id) {
+		return nodeIndex.getNode(id);
+	}
+	
+	/**
+	 * returns the node with the given name, binary search
+	 * @param name
+	 * @return
+	 */
+	public GraphNode getNodeFromName(String name) {
+		return nameIndex.getNode(name);
+	}
+
+	/**
+	 * Returns the index of the names, which can search them by prefix or with typos.
+	 * @return the index, or null before mergeNodes() or loading a compiled graph
+	 */
+	public NameIndex getNameIndex() {
+		return nameIndex;
+	}
+
+	/**
+	 * return all names of nodes != null in a String array
+	 * @return
+	 */
+	public String[] getRoomList() {
+		return getRoomsList().toArray(new String[nameIndex.size()]);
+	}
+	
+	/**
+	 * Returns all names in ascending order as a read only list, the names are not copied.
+	 * @return
+	 */
+	public List<String> getRoomsList() {
+		return nameIndex.getNames();
+	}
+
+	/**
+	 * returns the edge containing nodes a and b
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public GraphEdge getEdge(GraphNode a, GraphNode b) {
+		GraphEdge res = null;
+		
+		for (GraphEdge edge : a.getLocEdges()) { 
+			if (edge.getNode0().equals(a) && edge.getNode1().equals(b)) {
+				res = edge;
+			} else if (edge.getNode1().equals(a) && edge.getNode0().equals(b)) {
+				res = edge;
+			}
+		}
+		
+		return res;
+	}
+	
+	/**
+	 * Returns the geometry of the walls, the level of a point is stored as its elevation.
+	 * @param level the level (currently all walls are returned)
+	 * @return
+	 */
+	public List<Location[]> getWalls(float level) {
+		List<Location[]> res = new LinkedList<>();
+		
+		for (Location[] w : wallPaths) {
+			res.add(w);
+		}
+		
+		return res;
+	}
+	
+	/**
+	 * Returns the distance between two points given in latitude/longitude
+	 * @param lat1 latitude of first point
+	 * @param lon1 longitude of first point
+	 * @param lat2 latitude of second point
+	 * @param lon2 longitude of second point
+	 * @return the distance in meters
+	 */
+	public double getDistance(double lat1, double lon1, double lat2, double lon2) {
+		/* source: http://www.movable-type.co.uk/scripts/latlong.html */
+		double dLon = lon2 - lon1;
+		double dLat = lat2 - lat1;
+		
+		lat1 = Math.toRadians(lat1);
+		lat2 = Math.toRadians(lat2);
+		dLon = Math.toRadians(dLon);
+		dLat = Math.toRadians(dLat);
+		
+		double r = 6378137;
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + 
+					Math.cos(lat1) * Math.cos(lat2) *
+					Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		
+		return c * r;
+	}
+	
+	public double getInitialBearing(double lat1, double lon1, double lat2, double lon2) {	
+		/* source: http://www.movable-type.co.uk/scripts/latlong.html */
+		double dLon = lon2 - lon1;
+
+		lat1 = Math.toRadians(lat1);
+		lat2 = Math.toRadians(lat2);
+		dLon = Math.toRadians(dLon);
+		
+		double y = Math.sin(dLon) * Math.cos(lat2);
+		double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLon);
+		double b = Math.atan2(y, x);
+		b = Math.toDegrees(b);
+		
+		return ((b < 0) ? b + 360.0 : b);
+	}
+	
+	/**
+	 * Returns the closest node to a position at the given level, this can be used after mergeNodes()
+	 * @param pos the position 
+	 * @param level the level
+	 * @param indoor set to true if indoor nodes should be included
+	 * @param maxMeters limit of distance to a node
+	 * @return the closest GraphNode
+	 */
+	public GraphNode getClosestNodeToLatLonPos(Location pos, float level, boolean indoor, int maxMeters) {
+		double minDistance = Double.MAX_VALUE;
+		double tempDistance = Double.MAX_VALUE;
+		int minDistNode = NodeIndex.NOT_FOUND;
+		
+		/* the coordinates are read from the index, the node objects of a loaded graph are not created */
+		for (int i = 0; i < nodeIndex.size(); i++) {
+			/* first: the node has to be at the same level
+			 * second: if indoors then take all nodes
+			 * third: if not indoors then check if the node is not indoors */
+			if (nodeIndex.getLevel(i) == level && (indoor || (nodeIndex.isIndoors(i) == indoor))) {
+				tempDistance = getDistance(pos, i);
+				if (tempDistance < minDistance) {
+					minDistance = tempDistance;
+					minDistNode = i;
+				}
+			}
+		}
+		
+		if (minDistance < maxMeters) {
+			return nodeIndex.get(minDistNode);
+		} else { 
+			return null; 
+		}
+	}
+	
+	public double getClosestDistanceToNode(Location pos, float level, boolean indoor) {
+		double minDistance = Double.MAX_VALUE;
+		double tempDistance = Double.MAX_VALUE;
+		
+		for (int i = 0; i < nodeIndex.size(); i++) {
+			/* first: the node has to be at the same level
+			 * second: if indoors then take all nodes
+			 * third: if not indoors then check if the node is not indoors */
+			if (nodeIndex.getLevel(i) == level && (indoor || (nodeIndex.isIndoors(i) != indoor))) {
+				tempDistance = getDistance(pos, i);
+				if (tempDistance < minDistance) {
+					minDistance = tempDistance;
+				}
+			}
+		}
+		
+		return minDistance;
+	}
+	
+	/**
+	 * Sets the algorithm used by getShortestPath(), both find paths of the same length.
+	 * @param searchMode
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+	
+	public SearchMode getSearchMode() {
+		return searchMode;
+	}
+	
+	/**
+	 * Returns the number of settled nodes and the running time of the last getShortestPath() call.
+	 * @return the statistics or null if there was no search yet
+	 */
+	public SearchStatistics getLastSearchStatistics() {
+		return lastStatistics;
+	}
+	
+	/**
+	 * Creates a stack of nodes with the destination at the bottom and the start at the top.
+	 * If the start is the destination, the stack is empty.
+	 * @param from
+	 * @param to
+	 * @param profile
+	 * @return the path or null if the destination is not reachable
+	 */
+	private Stack<GraphNode> getShortestPath(GraphNode from, GraphNode to, int profile) {
+		Route route = getRoute(from, to, profile);
+		
+		return (route != null) ? route.toStack() : null;
+	}
+	
+	/** 
+	 * Searches the shortest path using the search mode of the graph.
+	 * Repeated queries are answered from the route cache and the paths between rooms from the room
+	 * table if it is loaded, these do not update the search statistics.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param profile
+	 * @return the route made of the arcs the search took, or null if the destination is not reachable
+	 */
+	private Route getRoute(GraphNode from, GraphNode to, int profile) {
+		if (from == null || to == null) {
+			return null;
+		}
+		
+		int source = nodeIndex.indexOf(from);
+		int target = nodeIndex.indexOf(to);
+		if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND) {
+			return null;
+		}
+		
+		long key = RouteCache.key(source, target, profile);
+		Route route = routeCache.get(key);
+		if (route == null) {
+			int version = routeCache.getVersion();
+			RoomTable table = roomTable;
+			if (table != null && table.isRoom(source) && table.isRoom(target) && RoutingProfile.isStandard(profile)) {
+				int[] arcs = table.getPath(source, target, RoutingProfile.allowsStairs(profile), RoutingProfile.allowsElevator(profile), RoutingProfile.allowsOutside(profile));
+				route = (arcs != null) ? Route.create(pathFinder.getGraph(), nodeIndex, source, arcs, null) : null;
+				if (route != null && (closures.crosses(route) || edgeWeights.isCongested(route))) {
+					route = findPath(source, target, profile);  /* the other paths of the table are still the shortest */
+				}
+			} else {
+				route = findPath(source, target, profile);
+			}
+			routeCache.put(key, (route != null) ? route : RouteCache.NO_PATH, version);
+		} else if (route == RouteCache.NO_PATH) {
+			route = null;
+		}
+		return route;
+	}
+	
+	/**
+	 * Searches the shortest path with the search mode of the graph and records its statistics.
+	 * @param source the index of the start node
+	 * @param target the index of the destination node
+	 * @param profile
+	 * @return the route made of the arcs the search took, or null if the destination is not reachable
+	 */
+	private Route findPath(int source, int target, int profile) {
+		boolean staircase = RoutingProfile.allowsStairs(profile);
+		boolean elevator = RoutingProfile.allowsElevator(profile);
+		boolean outside = RoutingProfile.allowsOutside(profile);
+		
+		synchronized (workspace) {
+			SearchMode mode = searchMode;
+			
+			if (!RoutingProfile.isStandard(profile) && (mode == SearchMode.CONTRACTION_HIERARCHY || mode == SearchMode.PORTAL_OVERLAY)) {
+				mode = SearchMode.BIDIRECTIONAL_ASTAR;  /* they are built for the standard profiles only */
+			}
+			if (mode == SearchMode.CONTRACTION_HIERARCHY) {
+				hierarchy.prepare(staircase, elevator, outside);  /* not part of the query time */
+			} else if (mode == SearchMode.PORTAL_OVERLAY) {
+				portalOverlay.prepare(staircase, elevator, outside);
+			}
+			
+			long start = System.nanoTime();
+			int[] arcs;
+			int settled;
+			boolean precomputed = false;  /* whether the search ignores the closures and the congestion */
+			if (mode == SearchMode.DIJKSTRA || mode == SearchMode.ASTAR) {
+				boolean found = (mode == SearchMode.ASTAR)
+						? pathFinder.findPathAStar(workspace, source, target, profile)
+						: pathFinder.findPath(workspace, source, target, profile);
+				arcs = found ? workspace.getPathArcs(target) : null;
+				settled = workspace.getSettledCount();
+			} else if (mode == SearchMode.PORTAL_OVERLAY) {
+				arcs = portalOverlay.findPath(workspace, backwardWorkspace, source, target, staircase, elevator, outside);
+				settled = workspace.getSettledCount();  /* the unpacking is not counted */
+				precomputed = true;
+			} else if (mode == SearchMode.CHAIN_CONTRACTION) {
+				arcs = chainGraph.findPath(workspace, source, target, profile);
+				settled = workspace.getSettledCount();
+				precomputed = true;
+			} else {
+				precomputed = (mode == SearchMode.CONTRACTION_HIERARCHY);
+				arcs = precomputed
+						? hierarchy.findPath(workspace, backwardWorkspace, source, target, staircase, elevator, outside)
+						: pathFinder.findPathBidirectional(workspace, backwardWorkspace, source, target, profile, mode == SearchMode.BIDIRECTIONAL_ASTAR);
+				settled = workspace.getSettledCount() + backwardWorkspace.getSettledCount();
+			}
+			float[] factors = edgeWeights.getFactors();
+			Route route = (arcs != null) ? Route.create(pathFinder.getGraph(), nodeIndex, source, arcs, factors) : null;
+			if (precomputed && route != null && (closures.crosses(route) || edgeWeights.isCongested(route))) {
+				/* the hierarchy, the overlay and the chains do not know the closures and the congestion, search again */
+				mode = SearchMode.BIDIRECTIONAL_ASTAR;
+				arcs = pathFinder.findPathBidirectional(workspace, backwardWorkspace, source, target, profile, true);
+				route = (arcs != null) ? Route.create(pathFinder.getGraph(), nodeIndex, source, arcs, factors) : null;
+				settled += workspace.getSettledCount() + backwardWorkspace.getSettledCount();
+			}
+			lastStatistics = new SearchStatistics(mode, route != null, settled, System.nanoTime() - start);
+			
+			return route;
+		}
+	}
+
+	/**
+	 * Parses a long integer attribute value (OSM IDs do not fit into 32 bits).
+	 * @param value the attribute value
+	 * @param defaultValue the value to return if the attribute is not an integer
+	 * @return
+	 */
+	private long parseLong(String value, long defaultValue) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Parses an integer attribute value.
+	 * @param value the attribute value
+	 * @param defaultValue the value to return if the attribute is not an integer
+	 * @return
+	 */
+	private int parseInt(String value, int defaultValue) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns the distance between a position and a node
+	 * @param pos0 first position
+	 * @param node1 index of the second node
+	 * @return the distance in meters
+	 */
+	private double getDistance(Location pos0, int node1) {
+		return getDistance(pos0.getLatitude(), pos0.getLongitude(), nodeIndex.getLat(node1), nodeIndex.getLon(node1));
+	}
+
+	/**
+	 * creates an array containing the indices of the nodes with a name, sorted by the names in ascending order
+	 * @return
+	 */
+	private int[] sortNodesByName() {
+		List<Integer> named = new ArrayList<>();
+		
+		for (int i = 0; i < nodeIndex.size(); i++) {
+			if (nodeIndex.getName(i) != null) {
+				named.add(i);
+			}
+		}
+		
+		/* sort by name, the sort is stable so equal names keep the order of the nodes */
+		Integer[] order = named.toArray(new Integer[named.size()]);
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return nodeIndex.getName(a).compareTo(nodeIndex.getName(b));
+			}
+		});
+		
+		int[] res = new int[order.length];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = order[i];
+		}
+		
+		return res;
+	}
+	
+	/* accessors used by GraphFile to write a merged graph */
+	
+	List<GraphNode> getNodes() {
+		return nodes;
+	}
+	
+	List<GraphEdge> getEdges() {
+		return edges;
+	}
+	
+	List<Location[]> getWallPaths() {
+		return wallPaths;
+	}
+	
+	NodeIndex getNodeIndex() {
+		return nodeIndex;
+	}
+	
+	RoutingGraph getRoutingGraph() {
+		return pathFinder.getGraph();
+	}
+
+	/**
+	 * A class to represent a way in the map/graph.
+	 *
+	 * @author Paul Smith
+	 * @author Aron Koszo <koszoaron@gmail.com>
+	 */
+	public class GraphWay {
+
+		/** All nodes on this path (ref0 -> ref1 -> ref2  -> ...) */
+		private long[] refs;
+		private int refCount;
+		private long id;
+
+		/* >0 := number correct steps given
+         *  0 := no steps
+         * -1 := undefined number of steps
+         * -2 := elevator */
+		private int numSteps = 0;
+
+		private float level;  /* Float.MAX_VALUE == undefined */
+		private boolean isIndoor;
+		private boolean footway = false;
+		private boolean wall = false;
+
+		/**
+		 * Constructor to create an empty way.
+		 */
+		public GraphWay() {
+			this.refs = new long[8];
+			this.refCount = 0;
+			this.id = 0;
+			this.level = Float.MAX_VALUE;
+		}
+
+		public int getRefCount() {
+			return refCount;
+		}
+
+		public long getRef(int i) {
+			return refs[i];
+		}
+
+		public void addRef(long ref) {
+			if (refCount == refs.length) {
+				refs = Arrays.copyOf(refs, refCount * 2);
+			}
+			this.refs[refCount++] = ref;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public float getLevel() {
+			return level;
+		}
+
+		public void setLevel(float level) {
+			this.level = level;
+		}
+
+		public int getSteps() {
+			return numSteps;
+		}
+
+		public void setSteps(int numSteps) {
+			this.numSteps = numSteps;
+		}
+
+		public boolean isIndoor() {
+			return isIndoor;
+		}
+
+		public void setIndoor(boolean isIndoor) {
+			this.isIndoor = isIndoor;
+		}
+
+		public boolean isFootway() {
+			return this.footway;
+		}
+
+		public void setFootway(boolean footway) {
+			this.footway = footway;
+		}
+
+		public boolean isWall() {
+			return this.wall;
+		}
+
+		public void setWall(boolean wall) {
+			this.wall = wall;
+		}
+
+		public String toString(){
+			String ret = "\nWay(" + this.id +"): ";
+			ret += "\nRefs:";
+			for (int i = 0; i < refCount; i++) {
+				ret += "\n    " + refs[i];
+			}
+
+			return ret;
+		}
+	}
+
+}
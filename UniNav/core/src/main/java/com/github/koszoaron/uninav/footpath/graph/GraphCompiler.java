@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Command line tool to compile OSM XML maps into a binary graph file (see {@link GraphFile}).
+ *
+ * Usage: GraphCompiler &lt;output file&gt; &lt;map file&gt; [&lt;map file&gt; ...]<br>
+ * All map files are added to the same graph, which is merged before writing it. The contraction
+ * hierarchies and the room tables of all routing options are written next to the graph file (see
+ * {@link #getHierarchyFile(File)} and {@link #getRoomTableFile(File)}).
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class GraphCompiler {
+
+	/**
+	 * Private constructor.
+	 */
+	private GraphCompiler() {}
+
+	public static void main(String[] args) throws IOException, XmlPullParserException {
+		if (args.length < 2) {
+			System.err.println("Usage: GraphCompiler <output file> <map file> [<map file> ...]");
+			System.exit(1);
+		}
+
+		File[] maps = new File[args.length - 1];
+		for (int i = 1; i < args.length; i++) {
+			maps[i - 1] = new File(args[i]);
+		}
+
+		Graph graph = compile(new File(args[0]), maps);
+		System.out.println("Compiled " + args[0] + ": " + graph.getNodes().size() + " nodes, " + graph.getEdges().size() + " edges");
+	}
+
+	/**
+	 * Returns the file of the contraction hierarchies belonging to a graph file: the extension
+	 * of the graph file is replaced with ".ch", e.g. ir1.graph -&gt; ir1.ch.
+	 *
+	 * @param graphFile The graph file.
+	 * @return The hierarchy file.
+	 */
+	public static File getHierarchyFile(File graphFile) {
+		return replaceExtension(graphFile, ".ch");
+	}
+
+	/**
+	 * Returns the file of the room tables belonging to a graph file: the extension of the graph
+	 * file is replaced with ".rt", e.g. ir1.graph -&gt; ir1.rt.
+	 *
+	 * @param graphFile The graph file.
+	 * @return The room table file.
+	 */
+	public static File getRoomTableFile(File graphFile) {
+		return replaceExtension(graphFile, ".rt");
+	}
+
+	private static File replaceExtension(File file, String extension) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+
+		return new File(file.getParentFile(), ((dot > 0) ? name.substring(0, dot) : name) + extension);
+	}
+
+	/**
+	 * Loads and merges the given maps and writes the graph, its contraction hierarchies and room tables into files.
+	 *
+	 * @param output The graph file to write.
+	 * @param maps The OSM XML files of the layers.
+	 * @return The merged graph.
+	 * @throws IOException If a file can not be read or written.
+	 * @throws XmlPullParserException If a map file is not valid XML.
+	 */
+	public static Graph compile(File output, File... maps) throws IOException, XmlPullParserException {
+		XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+		Graph graph = new Graph();
+
+		for (File map : maps) {
+			InputStream in = new FileInputStream(map);
+			try {
+				XmlPullParser parser = factory.newPullParser();
+				parser.setInput(in, "UTF-8");
+				graph.addToGraphFromXmlPullParser(parser);
+			} finally {
+				in.close();
+			}
+		}
+		graph.mergeNodes();
+
+		File dir = output.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create " + dir);
+		}
+		GraphFile.write(graph, output);
+
+		ContractionHierarchy hierarchy = graph.getContractionHierarchy();
+		hierarchy.prepareAll();
+		hierarchy.write(getHierarchyFile(output));
+
+		graph.computeRoomTable(Runtime.getRuntime().availableProcessors()).write(getRoomTableFile(output));
+
+		return graph;
+	}
+}
@@ -0,0 +1,769 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.koszoaron.uninav.pojo.Location;
+
+/**
+ * Binary file format of a merged graph.
+ *
+ * The file starts with a header holding the element counts and the offsets of the sections.
+ * Every section is a little endian array aligned to 8 bytes, so the file can be memory mapped:
+ * <ul>
+ * <li>nodes: ID, latitude, longitude, level, steps, flags, name and merge ID (string offsets)</li>
+ * <li>edges: the two node indices, length, bearing, level, steps and flags</li>
+ * <li>adjacency in CSR form: the first arc of every node and the edge of every arc</li>
+ * <li>the node indices sorted by ID and by name</li>
+ * <li>wall geometry: the first point of every wall and the point coordinates</li>
+ * <li>the arrays of the {@link NameIndex}: the normalized names and the trigram posting lists</li>
+ * <li>the arrays of the {@link RoutingGraph}: its arcs, their attributes and bearings, the projected
+ * coordinates of the nodes and the scales of the estimate</li>
+ * <li>the string table: length prefixed UTF-8 strings</li>
+ * </ul>
+ *
+ * Nothing is copied when the file is loaded: the routing graph and the name index read the
+ * mapped sections, the node flags, levels and edge lengths are shared with them. The node and edge
+ * objects of the navigation API are created on demand and kept, a node fills its edge list on the
+ * first access. The {@link NodeIndex} of the file finds the IDs by a binary search.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class GraphFile {
+	public static final int MAGIC = 0x56474e55;  /* "UNGV" */
+	public static final int VERSION = 6;
+
+	public static final int NODE_INDOOR = 1;
+
+	public static final int EDGE_STAIRS = 1;
+	public static final int EDGE_ELEVATOR = 2;
+	public static final int EDGE_INDOOR = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int NO_STRING = -1;
+
+	private static final int NODE_ID = 0;
+	private static final int NODE_LAT = 1;
+	private static final int NODE_LON = 2;
+	private static final int NODE_LEVEL = 3;
+	private static final int NODE_STEPS = 4;
+	private static final int NODE_FLAGS = 5;
+	private static final int NODE_NAME = 6;
+	private static final int NODE_MERGE_ID = 7;
+	private static final int EDGE_NODE0 = 8;
+	private static final int EDGE_NODE1 = 9;
+	private static final int EDGE_LENGTH = 10;
+	private static final int EDGE_BEARING = 11;
+	private static final int EDGE_LEVEL = 12;
+	private static final int EDGE_STEPS = 13;
+	private static final int EDGE_FLAGS = 14;
+	private static final int FIRST_ARC = 15;
+	private static final int ARC_EDGE = 16;
+	private static final int ID_ORDER = 17;
+	private static final int NAME_ORDER = 18;
+	private static final int WALL_FIRST_POINT = 19;
+	private static final int WALL_LAT = 20;
+	private static final int WALL_LON = 21;
+	private static final int WALL_LEVEL = 22;
+	private static final int NAME_KEY = 23;
+	private static final int NAME_KEY_NODE = 24;
+	private static final int NAME_GRAM = 25;
+	private static final int NAME_FIRST_POSTING = 26;
+	private static final int NAME_POSTING = 27;
+	private static final int ROUTING_FIRST_ARC = 28;
+	private static final int ROUTING_ARC_HEAD = 29;
+	private static final int ROUTING_ARC_EDGE = 30;
+	private static final int NODE_X = 31;
+	private static final int NODE_Y = 32;
+	private static final int ROUTING_SCALES = 33;
+	private static final int ROUTING_ARC_ATTRIBUTES = 34;
+	private static final int ROUTING_ARC_BEARING = 35;
+	private static final int STRINGS = 36;
+	private static final int SECTIONS = 37;
+
+	/* magic, version, 10 counts, section offsets */
+	private static final int COUNTS = 10;
+	private static final int HEADER_SIZE = 4 * (2 + COUNTS + SECTIONS);
+
+	private final ByteBuffer buffer;
+	private final int nodeCount;
+	private final int edgeCount;
+	private final int arcCount;
+	private final int namedCount;
+	private final int wallCount;
+	private final int wallPointCount;
+	private final int gramCount;
+	private final int postingCount;
+	private final int routingArcCount;
+
+	/* the objects created so far */
+	private final AtomicReferenceArray<GraphNode> nodes;
+	private final AtomicReferenceArray<GraphEdge> edges;
+
+	private final LongBuffer nodeId;
+	private final DoubleBuffer nodeLat;
+	private final DoubleBuffer nodeLon;
+	private final FloatBuffer nodeLevel;
+	private final IntBuffer nodeSteps;
+	private final IntBuffer nodeFlags;
+	private final IntBuffer nodeName;
+	private final IntBuffer nodeMergeId;
+	private final IntBuffer edgeNode0;
+	private final IntBuffer edgeNode1;
+	private final DoubleBuffer edgeLength;
+	private final DoubleBuffer edgeBearing;
+	private final FloatBuffer edgeLevel;
+	private final IntBuffer edgeSteps;
+	private final IntBuffer edgeFlags;
+	private final IntBuffer firstArc;
+	private final IntBuffer arcEdge;
+	private final IntBuffer idOrder;
+	private final IntBuffer nameOrder;
+	private final IntBuffer wallFirstPoint;
+	private final DoubleBuffer wallLat;
+	private final DoubleBuffer wallLon;
+	private final DoubleBuffer wallLevel;
+	private final IntBuffer nameKey;
+	private final IntBuffer nameKeyNode;
+	private final LongBuffer nameGram;
+	private final IntBuffer nameFirstPosting;
+	private final IntBuffer namePosting;
+	private final IntBuffer routingFirstArc;
+	private final IntBuffer routingArcHead;
+	private final IntBuffer routingArcEdge;
+	private final DoubleBuffer nodeX;
+	private final DoubleBuffer nodeY;
+	private final DoubleBuffer routingScales;
+	private final ByteBuffer routingArcAttributes;
+	private final DoubleBuffer routingArcBearing;
+	private final ByteBuffer strings;
+
+	private GraphFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a graph file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported graph file version: " + buffer.getInt(4));
+		}
+
+		nodeCount = buffer.getInt(8);
+		edgeCount = buffer.getInt(12);
+		arcCount = buffer.getInt(16);
+		namedCount = buffer.getInt(20);
+		wallCount = buffer.getInt(24);
+		wallPointCount = buffer.getInt(28);
+		gramCount = buffer.getInt(36);
+		postingCount = buffer.getInt(40);
+		routingArcCount = buffer.getInt(44);
+
+		nodeId = section(NODE_ID, 8 * nodeCount).asLongBuffer();
+		nodeLat = section(NODE_LAT, 8 * nodeCount).asDoubleBuffer();
+		nodeLon = section(NODE_LON, 8 * nodeCount).asDoubleBuffer();
+		nodeLevel = section(NODE_LEVEL, 4 * nodeCount).asFloatBuffer();
+		nodeSteps = section(NODE_STEPS, 4 * nodeCount).asIntBuffer();
+		nodeFlags = section(NODE_FLAGS, 4 * nodeCount).asIntBuffer();
+		nodeName = section(NODE_NAME, 4 * nodeCount).asIntBuffer();
+		nodeMergeId = section(NODE_MERGE_ID, 4 * nodeCount).asIntBuffer();
+		edgeNode0 = section(EDGE_NODE0, 4 * edgeCount).asIntBuffer();
+		edgeNode1 = section(EDGE_NODE1, 4 * edgeCount).asIntBuffer();
+		edgeLength = section(EDGE_LENGTH, 8 * edgeCount).asDoubleBuffer();
+		edgeBearing = section(EDGE_BEARING, 8 * edgeCount).asDoubleBuffer();
+		edgeLevel = section(EDGE_LEVEL, 4 * edgeCount).asFloatBuffer();
+		edgeSteps = section(EDGE_STEPS, 4 * edgeCount).asIntBuffer();
+		edgeFlags = section(EDGE_FLAGS, 4 * edgeCount).asIntBuffer();
+		firstArc = section(FIRST_ARC, 4 * (nodeCount + 1)).asIntBuffer();
+		arcEdge = section(ARC_EDGE, 4 * arcCount).asIntBuffer();
+		idOrder = section(ID_ORDER, 4 * nodeCount).asIntBuffer();
+		nameOrder = section(NAME_ORDER, 4 * namedCount).asIntBuffer();
+		wallFirstPoint = section(WALL_FIRST_POINT, 4 * (wallCount + 1)).asIntBuffer();
+		wallLat = section(WALL_LAT, 8 * wallPointCount).asDoubleBuffer();
+		wallLon = section(WALL_LON, 8 * wallPointCount).asDoubleBuffer();
+		wallLevel = section(WALL_LEVEL, 8 * wallPointCount).asDoubleBuffer();
+		nameKey = section(NAME_KEY, 4 * namedCount).asIntBuffer();
+		nameKeyNode = section(NAME_KEY_NODE, 4 * namedCount).asIntBuffer();
+		nameGram = section(NAME_GRAM, 8 * gramCount).asLongBuffer();
+		nameFirstPosting = section(NAME_FIRST_POSTING, 4 * (gramCount + 1)).asIntBuffer();
+		namePosting = section(NAME_POSTING, 4 * postingCount).asIntBuffer();
+		routingFirstArc = section(ROUTING_FIRST_ARC, 4 * (nodeCount + 1)).asIntBuffer();
+		routingArcHead = section(ROUTING_ARC_HEAD, 4 * routingArcCount).asIntBuffer();
+		routingArcEdge = section(ROUTING_ARC_EDGE, 4 * routingArcCount).asIntBuffer();
+		nodeX = section(NODE_X, 8 * nodeCount).asDoubleBuffer();
+		nodeY = section(NODE_Y, 8 * nodeCount).asDoubleBuffer();
+		routingScales = section(ROUTING_SCALES, 8 * 2).asDoubleBuffer();
+		routingArcAttributes = section(ROUTING_ARC_ATTRIBUTES, routingArcCount);
+		routingArcBearing = section(ROUTING_ARC_BEARING, 8 * routingArcCount).asDoubleBuffer();
+		strings = section(STRINGS, buffer.getInt(32));
+
+		nodes = new AtomicReferenceArray<>(nodeCount);
+		edges = new AtomicReferenceArray<>(edgeCount);
+	}
+
+	/**
+	 * Memory maps a graph file.
+	 *
+	 * @param file The file to map.
+	 * @return The mapped graph file.
+	 * @throws IOException If the file can not be read or it is not a graph file of the supported version.
+	 */
+	public static GraphFile map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return map(channel, 0, channel.size());
+		} finally {
+			raf.close();  /* the mapping stays valid after closing the channel */
+		}
+	}
+
+	/**
+	 * Memory maps a graph stored in a region of a file, e.g. an uncompressed asset of an APK.
+	 *
+	 * @param channel The channel of the file.
+	 * @param position The position of the graph in the file.
+	 * @param size The size of the graph.
+	 * @return The mapped graph file.
+	 * @throws IOException If the region can not be read or it is not a graph file of the supported version.
+	 */
+	public static GraphFile map(FileChannel channel, long position, long size) throws IOException {
+		return new GraphFile(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+	}
+
+	/**
+	 * Writes a merged graph into a file.
+	 *
+	 * @param graph The graph, mergeNodes() must have been called already.
+	 * @param file The file to write.
+	 * @throws IOException If the file can not be written.
+	 */
+	public static void write(Graph graph, File file) throws IOException {
+		List<GraphNode> nodes = graph.getNodes();
+		List<GraphEdge> edges = graph.getEdges();
+		List<Location[]> walls = graph.getWallPaths();
+		NameIndex nameIndex = graph.getNameIndex();
+
+		if (graph.getNodeIndex() == null || nameIndex == null) {
+			throw new IllegalStateException("The graph must be merged before writing it");
+		}
+		RoutingGraph routing = graph.getRoutingGraph();
+		List<String> keys = nameIndex.getKeys();
+		IntBuffer firstPostings = nameIndex.getFirstPostings();
+		IntBuffer postings = nameIndex.getPostings();
+		int gramCount = firstPostings.capacity() - 1;
+
+		/* dense indices of the nodes and edges */
+		IdentityHashMap<GraphNode, Integer> nodePositions = new IdentityHashMap<>(nodes.size());
+		for (GraphNode node : nodes) {
+			nodePositions.put(node, nodePositions.size());
+		}
+		IdentityHashMap<GraphEdge, Integer> edgePositions = new IdentityHashMap<>(edges.size());
+		for (GraphEdge edge : edges) {
+			edgePositions.put(edge, edgePositions.size());
+		}
+
+		/* string table */
+		ByteBuffer stringTable = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+		int[] nameOffsets = new int[nodes.size()];
+		int[] mergeIdOffsets = new int[nodes.size()];
+		int arcCount = 0;
+		int wallPointCount = 0;
+		int n = 0;
+		for (GraphNode node : nodes) {
+			stringTable = ensureCapacity(stringTable, stringSize(node.getName()) + stringSize(node.getMergeId()));
+			nameOffsets[n] = putString(stringTable, node.getName());
+			mergeIdOffsets[n] = putString(stringTable, node.getMergeId());
+			arcCount += node.getLocEdges().size();
+			n++;
+		}
+		for (Location[] wall : walls) {
+			wallPointCount += wall.length;
+		}
+		int[] keyOffsets = new int[keys.size()];
+		for (int k = 0; k < keyOffsets.length; k++) {
+			stringTable = ensureCapacity(stringTable, stringSize(keys.get(k)));
+			keyOffsets[k] = putString(stringTable, keys.get(k));
+		}
+
+		int[] sizes = new int[SECTIONS];
+		sizes[NODE_ID] = sizes[NODE_LAT] = sizes[NODE_LON] = 8 * nodes.size();
+		sizes[NODE_LEVEL] = sizes[NODE_STEPS] = sizes[NODE_FLAGS] = sizes[NODE_NAME] = sizes[NODE_MERGE_ID] = 4 * nodes.size();
+		sizes[EDGE_NODE0] = sizes[EDGE_NODE1] = 4 * edges.size();
+		sizes[EDGE_LENGTH] = sizes[EDGE_BEARING] = 8 * edges.size();
+		sizes[EDGE_LEVEL] = sizes[EDGE_STEPS] = sizes[EDGE_FLAGS] = 4 * edges.size();
+		sizes[FIRST_ARC] = 4 * (nodes.size() + 1);
+		sizes[ARC_EDGE] = 4 * arcCount;
+		sizes[ID_ORDER] = 4 * nodes.size();
+		sizes[NAME_ORDER] = 4 * nameIndex.size();
+		sizes[WALL_FIRST_POINT] = 4 * (walls.size() + 1);
+		sizes[WALL_LAT] = sizes[WALL_LON] = sizes[WALL_LEVEL] = 8 * wallPointCount;
+		sizes[NAME_KEY] = sizes[NAME_KEY_NODE] = 4 * keys.size();
+		sizes[NAME_GRAM] = 8 * gramCount;
+		sizes[NAME_FIRST_POSTING] = 4 * (gramCount + 1);
+		sizes[NAME_POSTING] = 4 * postings.capacity();
+		sizes[ROUTING_FIRST_ARC] = 4 * (nodes.size() + 1);
+		sizes[ROUTING_ARC_HEAD] = sizes[ROUTING_ARC_EDGE] = 4 * routing.getArcCount();
+		sizes[NODE_X] = sizes[NODE_Y] = 8 * nodes.size();
+		sizes[ROUTING_SCALES] = 8 * 2;
+		sizes[ROUTING_ARC_ATTRIBUTES] = routing.getArcCount();
+		sizes[ROUTING_ARC_BEARING] = 8 * routing.getArcCount();
+		sizes[STRINGS] = stringTable.position();
+
+		int[] offsets = new int[SECTIONS];
+		int size = align(HEADER_SIZE);
+		for (int s = 0; s < SECTIONS; s++) {
+			offsets[s] = size;
+			size = align(size + sizes[s]);
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(VERSION);
+		out.putInt(nodes.size()).putInt(edges.size()).putInt(arcCount).putInt(nameIndex.size());
+		out.putInt(walls.size()).putInt(wallPointCount).putInt(sizes[STRINGS]);
+		out.putInt(gramCount).putInt(postings.capacity()).putInt(routing.getArcCount());
+		for (int s = 0; s < SECTIONS; s++) {
+			out.putInt(offsets[s]);
+		}
+
+		n = 0;
+		int arc = 0;
+		for (GraphNode node : nodes) {
+			out.putLong(offsets[NODE_ID] + 8 * n, node.getId());
+			out.putDouble(offsets[NODE_LAT] + 8 * n, node.getLat());
+			out.putDouble(offsets[NODE_LON] + 8 * n, node.getLon());
+			out.putFloat(offsets[NODE_LEVEL] + 4 * n, node.getLevel());
+			out.putInt(offsets[NODE_STEPS] + 4 * n, node.getSteps());
+			out.putInt(offsets[NODE_FLAGS] + 4 * n, node.isIndoors() ? NODE_INDOOR : 0);
+			out.putInt(offsets[NODE_NAME] + 4 * n, nameOffsets[n]);
+			out.putInt(offsets[NODE_MERGE_ID] + 4 * n, mergeIdOffsets[n]);
+
+			out.putInt(offsets[FIRST_ARC] + 4 * n, arc);
+			for (GraphEdge edge : node.getLocEdges()) {
+				out.putInt(offsets[ARC_EDGE] + 4 * arc, edgePositions.get(edge));
+				arc++;
+			}
+			n++;
+		}
+		out.putInt(offsets[FIRST_ARC] + 4 * n, arc);
+
+		int e = 0;
+		for (GraphEdge edge : edges) {
+			Integer node0 = nodePositions.get(edge.getNode0());
+			Integer node1 = nodePositions.get(edge.getNode1());
+			if (node0 == null || node1 == null) {
+				throw new IllegalStateException("Edge pointing to a node outside of the graph: " + edge);
+			}
+
+			int flags = (edge.isStairs() ? EDGE_STAIRS : 0) | (edge.isElevator() ? EDGE_ELEVATOR : 0) | (edge.isIndoor() ? EDGE_INDOOR : 0);
+			out.putInt(offsets[EDGE_NODE0] + 4 * e, node0);
+			out.putInt(offsets[EDGE_NODE1] + 4 * e, node1);
+			out.putDouble(offsets[EDGE_LENGTH] + 8 * e, edge.getLength());
+			out.putDouble(offsets[EDGE_BEARING] + 8 * e, edge.getCompDir());
+			out.putFloat(offsets[EDGE_LEVEL] + 4 * e, edge.getLevel());
+			out.putInt(offsets[EDGE_STEPS] + 4 * e, edge.getSteps());
+			out.putInt(offsets[EDGE_FLAGS] + 4 * e, flags);
+			e++;
+		}
+
+		/* the indices of the node index are the positions in the node list */
+		Integer[] byId = new Integer[nodes.size()];
+		final long[] ids = new long[nodes.size()];
+		n = 0;
+		for (GraphNode node : nodes) {
+			byId[n] = n;
+			ids[n++] = node.getId();
+		}
+		Arrays.sort(byId, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return (ids[a] != ids[b]) ? Long.compare(ids[a], ids[b]) : a.compareTo(b);
+			}
+		});
+		for (int i = 0; i < byId.length; i++) {
+			out.putInt(offsets[ID_ORDER] + 4 * i, byId[i]);
+		}
+		for (int i = 0; i < nameIndex.size(); i++) {
+			out.putInt(offsets[NAME_ORDER] + 4 * i, nameIndex.getNodeIndex(i));
+		}
+
+		int w = 0;
+		int p = 0;
+		for (Location[] wall : walls) {
+			out.putInt(offsets[WALL_FIRST_POINT] + 4 * w, p);
+			for (Location point : wall) {
+				out.putDouble(offsets[WALL_LAT] + 8 * p, point.getLatitude());
+				out.putDouble(offsets[WALL_LON] + 8 * p, point.getLongitude());
+				out.putDouble(offsets[WALL_LEVEL] + 8 * p, point.getElevation());
+				p++;
+			}
+			w++;
+		}
+		out.putInt(offsets[WALL_FIRST_POINT] + 4 * w, p);
+
+		/* the nodes of the routing graph have the same indices, they come from the node index */
+		for (int i = 0; i <= routing.getNodeCount(); i++) {
+			out.putInt(offsets[ROUTING_FIRST_ARC] + 4 * i, routing.getFirstArc(i));
+		}
+		for (int i = 0; i < routing.getNodeCount(); i++) {
+			out.putDouble(offsets[NODE_X] + 8 * i, routing.getX(i));
+			out.putDouble(offsets[NODE_Y] + 8 * i, routing.getY(i));
+		}
+		for (int a = 0; a < routing.getArcCount(); a++) {
+			out.putInt(offsets[ROUTING_ARC_HEAD] + 4 * a, routing.getArcHead(a));
+			out.putInt(offsets[ROUTING_ARC_EDGE] + 4 * a, routing.getArcEdge(a));
+			out.putDouble(offsets[ROUTING_ARC_BEARING] + 8 * a, routing.getArcBearing(a));
+			out.put(offsets[ROUTING_ARC_ATTRIBUTES] + a, (byte)routing.getArcAttributes(a));
+		}
+		out.putDouble(offsets[ROUTING_SCALES], routing.getDistanceScale());
+		out.putDouble(offsets[ROUTING_SCALES] + 8, routing.getLevelCost());
+
+		IntBuffer keyNodes = nameIndex.getKeyNodes();
+		LongBuffer grams = nameIndex.getGrams();
+		for (int k = 0; k < keyOffsets.length; k++) {
+			out.putInt(offsets[NAME_KEY] + 4 * k, keyOffsets[k]);
+			out.putInt(offsets[NAME_KEY_NODE] + 4 * k, keyNodes.get(k));
+		}
+		for (int g = 0; g < gramCount; g++) {
+			out.putLong(offsets[NAME_GRAM] + 8 * g, grams.get(g));
+		}
+		for (int g = 0; g <= gramCount; g++) {
+			out.putInt(offsets[NAME_FIRST_POSTING] + 4 * g, firstPostings.get(g));
+		}
+		for (int i = 0; i < postings.capacity(); i++) {
+			out.putInt(offsets[NAME_POSTING] + 4 * i, postings.get(i));
+		}
+
+		out.position(offsets[STRINGS]);
+		out.put(stringTable.array(), 0, sizes[STRINGS]);
+
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(out.array());
+		} finally {
+			fos.close();
+		}
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getNamedCount() {
+		return namedCount;
+	}
+
+	public int getWallCount() {
+		return wallCount;
+	}
+
+	/**
+	 * Returns the node with the given index, it is created on the first call.
+	 */
+	public GraphNode getNode(int i) {
+		GraphNode node = nodes.get(i);
+		if (node == null) {
+			nodes.compareAndSet(i, null, new FileNode(i));
+			node = nodes.get(i);  /* another thread may have created it first */
+		}
+
+		return node;
+	}
+
+	/**
+	 * Returns the edge with the given index, it is created on the first call.
+	 */
+	public GraphEdge getEdge(int e) {
+		GraphEdge edge = edges.get(e);
+		if (edge == null) {
+			int flags = edgeFlags.get(e);
+			edge = new GraphEdge(getNode(edgeNode0.get(e)), getNode(edgeNode1.get(e)), edgeLength.get(e),
+					edgeBearing.get(e), edgeLevel.get(e), (flags & EDGE_INDOOR) != 0);
+			edge.setStairs((flags & EDGE_STAIRS) != 0);
+			edge.setElevator((flags & EDGE_ELEVATOR) != 0);
+			edge.setSteps(edgeSteps.get(e));
+
+			edges.compareAndSet(e, null, edge);
+			edge = edges.get(e);
+		}
+
+		return edge;
+	}
+
+	/**
+	 * Creates the points of the given wall, the level is stored as the elevation.
+	 */
+	public Location[] getWall(int w) {
+		int first = wallFirstPoint.get(w);
+		Location[] points = new Location[wallFirstPoint.get(w + 1) - first];
+
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new Location(wallLat.get(first + i), wallLon.get(first + i), wallLevel.get(first + i));
+		}
+
+		return points;
+	}
+
+	/**
+	 * Returns the nodes as a read only list, see {@link #getNode(int)}.
+	 */
+	public List<GraphNode> getNodes() {
+		return new AbstractList<GraphNode>() {
+			@Override
+			public GraphNode get(int i) {
+				return getNode(i);
+			}
+
+			@Override
+			public int size() {
+				return nodeCount;
+			}
+		};
+	}
+
+	/**
+	 * Returns the edges as a read only list, see {@link #getEdge(int)}.
+	 */
+	public List<GraphEdge> getEdges() {
+		return new AbstractList<GraphEdge>() {
+			@Override
+			public GraphEdge get(int e) {
+				return getEdge(e);
+			}
+
+			@Override
+			public int size() {
+				return edgeCount;
+			}
+		};
+	}
+
+	/**
+	 * Returns the walls as a read only list, the points are created on every access.
+	 */
+	public List<Location[]> getWalls() {
+		return new AbstractList<Location[]>() {
+			@Override
+			public Location[] get(int w) {
+				return getWall(w);
+			}
+
+			@Override
+			public int size() {
+				return wallCount;
+			}
+		};
+	}
+
+	/* node attributes read without creating the node objects, used by NodeIndex */
+
+	double getLat(int i) {
+		return nodeLat.get(i);
+	}
+
+	double getLon(int i) {
+		return nodeLon.get(i);
+	}
+
+	float getLevel(int i) {
+		return nodeLevel.get(i);
+	}
+
+	boolean isIndoors(int i) {
+		return (nodeFlags.get(i) & NODE_INDOOR) != 0;
+	}
+
+	String getName(int i) {
+		return getString(nodeName.get(i));
+	}
+
+	/**
+	 * Returns the index of the first node with the given ID (binary search).
+	 *
+	 * @param id The OSM ID of the node.
+	 * @return The index or {@link NodeIndex#NOT_FOUND}.
+	 */
+	int indexOf(long id) {
+		int u = 0;
+		int o = nodeCount;
+		while (u < o) {
+			int m = (u + o) >>> 1;
+			if (nodeId.get(idOrder.get(m)) < id) {
+				u = m + 1;
+			} else {
+				o = m;
+			}
+		}
+
+		return (u < nodeCount && nodeId.get(idOrder.get(u)) == id) ? idOrder.get(u) : NodeIndex.NOT_FOUND;
+	}
+
+	/**
+	 * Creates the index of the nodes of the file, the nodes are created on demand.
+	 */
+	public NodeIndex createNodeIndex() {
+		return new NodeIndex(this);
+	}
+
+	/**
+	 * Creates the routing graph on the stored sections. The node indices are the indices of the file.
+	 */
+	public RoutingGraph createRoutingGraph() {
+		return new RoutingGraph(nodeCount, nodeFlags, nodeX, nodeY, nodeLevel, routingScales.get(0), routingScales.get(1),
+				routingFirstArc, routingArcHead, routingArcEdge, routingArcAttributes, routingArcBearing,
+				edgeLength, edgeLevel, edgeSteps);
+	}
+
+	/**
+	 * Creates the name index on the stored sections.
+	 *
+	 * @param nodeIndex The index of the nodes of the file, see {@link #createNodeIndex()}.
+	 */
+	public NameIndex createNameIndex(NodeIndex nodeIndex) {
+		List<String> keys = new AbstractList<String>() {
+			@Override
+			public String get(int k) {
+				return getString(nameKey.get(k));
+			}
+
+			@Override
+			public int size() {
+				return namedCount;
+			}
+		};
+
+		return new NameIndex(nodeIndex, nameOrder, keys, nameKeyNode, nameGram, nameFirstPosting, namePosting);
+	}
+
+	/**
+	 * A node of the file, its edge list is filled on the first access.
+	 */
+	private class FileNode extends GraphNode {
+		private final int index;
+		private boolean hasEdges;
+
+		public FileNode(int i) {
+			index = i;
+			setId(nodeId.get(i));
+			setLat(nodeLat.get(i));
+			setLon(nodeLon.get(i));
+			setLevel(nodeLevel.get(i));
+			setSteps(nodeSteps.get(i));
+			setIndoors((nodeFlags.get(i) & NODE_INDOOR) != 0);
+			setName(getString(nodeName.get(i)));
+			setMergeId(getString(nodeMergeId.get(i)));
+		}
+
+		@Override
+		public synchronized LinkedList<GraphEdge> getLocEdges() {
+			LinkedList<GraphEdge> locEdges = super.getLocEdges();
+			if (!hasEdges) {
+				/* in the order of the original edge lists */
+				hasEdges = true;
+				for (int a = firstArc.get(index); a < firstArc.get(index + 1); a++) {
+					locEdges.add(getEdge(arcEdge.get(a)));
+				}
+			}
+
+			return locEdges;
+		}
+	}
+
+	private ByteBuffer section(int s, int size) throws IOException {
+		int offset = buffer.getInt(4 * (2 + COUNTS + s));
+		if (offset < HEADER_SIZE || offset + size > buffer.capacity()) {
+			throw new IOException("Corrupt graph file");
+		}
+
+		ByteBuffer b = buffer.duplicate();
+		b.position(offset);
+		b.limit(offset + size);
+
+		return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private String getString(int offset) {
+		if (offset == NO_STRING) {
+			return null;
+		}
+
+		int length = strings.getInt(offset);
+		byte[] bytes = new byte[length];
+		ByteBuffer b = strings.duplicate();
+		b.position(offset + 4);
+		b.get(bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	private static int stringSize(String s) {
+		return (s == null) ? 0 : 4 + s.getBytes(UTF8).length;
+	}
+
+	private static int putString(ByteBuffer table, String s) {
+		if (s == null) {
+			return NO_STRING;
+		}
+
+		int offset = table.position();
+		byte[] bytes = s.getBytes(UTF8);
+		table.putInt(bytes.length);
+		table.put(bytes);
+
+		return offset;
+	}
+
+	private static ByteBuffer ensureCapacity(ByteBuffer b, int needed) {
+		if (b.remaining() >= needed) {
+			return b;
+		}
+
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * b.capacity(), b.position() + needed)).order(ByteOrder.LITTLE_ENDIAN);
+		larger.put(b.array(), 0, b.position());
+
+		return larger;
+	}
+
+	private static int align(int offset) {
+		return (offset + 7) & ~7;
+	}
+}
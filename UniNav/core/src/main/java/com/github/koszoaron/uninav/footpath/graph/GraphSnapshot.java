@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.List;
+
+/**
+ * Immutable routing view of a merged graph, see {@link Graph#getSnapshot()}.
+ *
+ * A snapshot holds only structures which are not changed after they are built: the
+ * {@link RoutingGraph}, the node and name indices. Any number of threads can query it at the
+ * same time without locks, every query borrows a workspace from the pool of the snapshot.
+ * When the graph is rebuilt, it publishes a new snapshot; the queries still running on the old
+ * one finish on the old graph.
+ *
+ * The closures and the congestion factors are shared with the graph, they publish a new copy on
+ * every change, so a query uses the ones published when it starts.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public final class GraphSnapshot {
+	private static final int MAX_IDLE_WORKSPACES = 16;
+
+	private final NodeIndex nodeIndex;
+	private final NameIndex nameIndex;
+	private final PathFinder pathFinder;
+	private final WorkspacePool workspaces;
+
+	GraphSnapshot(RoutingGraph graph, NodeIndex nodeIndex, NameIndex nameIndex, Closures closures, EdgeWeights weights) {
+		this.nodeIndex = nodeIndex;
+		this.nameIndex = nameIndex;
+		this.pathFinder = new PathFinder(graph);
+		pathFinder.setClosures(closures);
+		pathFinder.setEdgeWeights(weights);
+		this.workspaces = new WorkspacePool(graph.getNodeCount(), MAX_IDLE_WORKSPACES);
+	}
+
+	public RoutingGraph getGraph() {
+		return pathFinder.getGraph();
+	}
+
+	public WorkspacePool getWorkspacePool() {
+		return workspaces;
+	}
+
+	/**
+	 * Returns the node with the given OSM ID.
+	 * @return the node or null if there is no node with the ID
+	 */
+	public GraphNode getNode(long id) {
+		return nodeIndex.getNode(id);
+	}
+
+	/**
+	 * Returns the node with exactly the given name.
+	 * @return the node or null if there is no node with the name
+	 */
+	public GraphNode getNodeFromName(String name) {
+		return nameIndex.getNode(name);
+	}
+
+	/**
+	 * Returns all names in ascending order as a read only list.
+	 */
+	public List<String> getRoomsList() {
+		return nameIndex.getNames();
+	}
+
+	/**
+	 * Searches the shortest path with A*.
+	 * @param from the name of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the route, or null if a node is not found or the destination is not reachable
+	 */
+	public Route getRoute(String from, String to, int profile) {
+		return getRoute(getNodeFromName(from), getNodeFromName(to), profile);
+	}
+
+	/**
+	 * Searches the shortest path with A*.
+	 * @param from the OSM ID of the start node
+	 * @param to the name of the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the route, or null if a node is not found or the destination is not reachable
+	 */
+	public Route getRoute(long from, String to, int profile) {
+		return getRoute(getNode(from), getNodeFromName(to), profile);
+	}
+
+	/**
+	 * Searches the shortest path with A*.
+	 * @param from the start node
+	 * @param to the destination node
+	 * @param profile the routing profile, e.g. {@link RoutingProfile#WHEELCHAIR}
+	 * @return the route, or null if a node is not found or the destination is not reachable
+	 */
+	public Route getRoute(GraphNode from, GraphNode to, int profile) {
+		int source = (from != null) ? nodeIndex.indexOf(from) : NodeIndex.NOT_FOUND;
+		int target = (to != null) ? nodeIndex.indexOf(to) : NodeIndex.NOT_FOUND;
+		if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND) {
+			return null;
+		}
+
+		SearchWorkspace ws = workspaces.borrow();
+		try {
+			if (!pathFinder.findPathAStar(ws, source, target, profile)) {
+				return null;
+			}
+			return Route.create(pathFinder.getGraph(), nodeIndex, source, ws.getPathArcs(target), pathFinder.getFactors());
+		} finally {
+			workspaces.release(ws);
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * Contracts the nodes of a {@link RoutingGraph} for one combination of the routing options,
+ * see {@link ContractionHierarchy}.
+ *
+ * Only the arcs allowed by the options are used, so the graph is directed (indoors an arc must
+ * lead to an indoor node). The nodes are contracted in the order of their edge difference (the
+ * number of shortcuts needed minus the number of arcs removed) plus the number of their already
+ * contracted neighbours, the priorities are updated lazily and for the neighbours of every
+ * contracted node. A shortcut u-w is added for the contracted node v if a local Dijkstra search
+ * (the witness search) does not find a path from u to w avoiding v which is at most as long.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+class HierarchyBuilder {
+	/** The witness search gives up after this many nodes, at worst adding an unneeded shortcut. */
+	private static final int WITNESS_SETTLE_LIMIT = 300;
+
+	private final int nodeCount;
+	private final ArcList[] out;  /* arcs between the nodes not contracted yet */
+	private final ArcList[] in;
+	private final ArcList[] up;  /* arcs to higher nodes, frozen when the node is contracted */
+	private final ArcList[] down;  /* arcs from higher nodes */
+	private final boolean[] contracted;
+	private final int[] contractedNeighbours;
+	private final int[] neighbourMarks;
+	private int neighbourStamp;
+
+	private final SearchWorkspace witness;
+	private final int[] targetMarks;  /* the out-neighbours of the contracted node are marked with the stamp */
+	private int targetStamp;
+	private final IndexedMinHeap queue;
+
+	/**
+	 * Copies the allowed arcs of the graph.
+	 *
+	 * @param graph The graph.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 */
+	public HierarchyBuilder(RoutingGraph graph, int profile) {
+		nodeCount = graph.getNodeCount();
+		out = new ArcList[nodeCount];
+		in = new ArcList[nodeCount];
+		up = new ArcList[nodeCount];
+		down = new ArcList[nodeCount];
+		contracted = new boolean[nodeCount];
+		contractedNeighbours = new int[nodeCount];
+		neighbourMarks = new int[nodeCount];
+		witness = new SearchWorkspace(nodeCount);
+		targetMarks = new int[nodeCount];
+		queue = new IndexedMinHeap(nodeCount);
+
+		for (int v = 0; v < nodeCount; v++) {
+			out[v] = new ArcList();
+			in[v] = new ArcList();
+		}
+		for (int u = 0; u < nodeCount; u++) {
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				if (graph.isAllowed(a, profile)) {
+					int v = graph.getArcHead(a);
+					out[u].add(v, graph.getArcLength(a), ContractionHierarchy.originalArc(a));
+					in[v].add(u, graph.getArcLength(a), ContractionHierarchy.originalArc(a));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Contracts all nodes and creates the upward search graphs.
+	 */
+	public ContractionHierarchy.UpwardGraph build() {
+		for (int v = 0; v < nodeCount; v++) {
+			queue.push(v, priority(v));
+		}
+
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+
+			/* lazy update: contract only if the node is still the best one */
+			double p = priority(v);
+			if (!queue.isEmpty() && p > queue.peekKey()) {
+				queue.push(v, p);
+				continue;
+			}
+
+			contract(v, false);
+
+			/* most neighbours are in both lists, update them once */
+			neighbourStamp++;
+			updateNeighbours(up[v]);
+			updateNeighbours(down[v]);
+		}
+
+		return new ContractionHierarchy.UpwardGraph(toCsr(up), toCsr(down));
+	}
+
+	private void updateNeighbours(ArcList arcs) {
+		for (int i = 0; i < arcs.size; i++) {
+			int w = arcs.nodes[i];
+			if (neighbourMarks[w] != neighbourStamp) {
+				neighbourMarks[w] = neighbourStamp;
+				contractedNeighbours[w]++;
+				queue.update(w, priority(w));
+			}
+		}
+	}
+
+	private double priority(int v) {
+		int shortcuts = contract(v, true);
+
+		return shortcuts - out[v].size - in[v].size + contractedNeighbours[v];
+	}
+
+	/**
+	 * Contracts a node or counts the shortcuts it would need.
+	 *
+	 * @param v The node.
+	 * @param simulate If true, the graph is not changed.
+	 * @return The number of shortcuts.
+	 */
+	private int contract(int v, boolean simulate) {
+		ArcList vIn = in[v];
+		ArcList vOut = out[v];
+		int shortcuts = 0;
+
+		if (!simulate) {
+			contracted[v] = true;
+			up[v] = vOut;
+			down[v] = vIn;
+			for (int i = 0; i < vOut.size; i++) {
+				in[vOut.nodes[i]].remove(v);
+			}
+			for (int i = 0; i < vIn.size; i++) {
+				out[vIn.nodes[i]].remove(v);
+			}
+		}
+
+		double maxOut = 0;
+		targetStamp++;
+		for (int j = 0; j < vOut.size; j++) {
+			maxOut = Math.max(maxOut, vOut.weights[j]);
+			targetMarks[vOut.nodes[j]] = targetStamp;
+		}
+
+		for (int i = 0; i < vIn.size; i++) {
+			int u = vIn.nodes[i];
+			witnessSearch(u, v, vIn.weights[i] + maxOut, vOut.size);
+
+			for (int j = 0; j < vOut.size; j++) {
+				int w = vOut.nodes[j];
+				double length = vIn.weights[i] + vOut.weights[j];
+				if (w == u || witness.getDistance(w) <= length) {
+					continue;
+				}
+
+				shortcuts++;
+				if (!simulate) {
+					out[u].add(w, length, v);
+					in[w].add(u, length, v);
+				}
+			}
+		}
+
+		return shortcuts;
+	}
+
+	/**
+	 * Dijkstra from u over the nodes not contracted yet, avoiding v, up to the given distance
+	 * or until all marked targets are settled.
+	 */
+	private void witnessSearch(int u, int v, double maxDistance, int targets) {
+		IndexedMinHeap heap = witness.getHeap();
+
+		witness.begin();
+		witness.update(u, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(u, 0);
+
+		while (!heap.isEmpty() && witness.getSettledCount() < WITNESS_SETTLE_LIMIT) {
+			int x = heap.poll();
+			witness.settle(x);
+			double dx = witness.getDistance(x);
+			if (dx > maxDistance) {
+				break;
+			}
+			if (targetMarks[x] == targetStamp && --targets == 0) {
+				break;
+			}
+
+			ArcList arcs = out[x];
+			for (int i = 0; i < arcs.size; i++) {
+				int y = arcs.nodes[i];
+				double dy = dx + arcs.weights[i];
+				if (y != v && !contracted[y] && dy < witness.getDistance(y)) {
+					witness.update(y, dy, x, -1);
+					heap.push(y, dy);
+				}
+			}
+		}
+	}
+
+	private ContractionHierarchy.Arcs toCsr(ArcList[] lists) {
+		int[] first = new int[nodeCount + 1];
+		for (int v = 0; v < nodeCount; v++) {
+			first[v + 1] = first[v] + lists[v].size;
+		}
+
+		int[] heads = new int[first[nodeCount]];
+		double[] weights = new double[first[nodeCount]];
+		int[] middles = new int[first[nodeCount]];
+		for (int v = 0; v < nodeCount; v++) {
+			ArcList list = lists[v];
+			System.arraycopy(list.nodes, 0, heads, first[v], list.size);
+			System.arraycopy(list.weights, 0, weights, first[v], list.size);
+			System.arraycopy(list.middles, 0, middles, first[v], list.size);
+		}
+
+		return new ContractionHierarchy.Arcs(first, heads, weights, middles);
+	}
+
+	/**
+	 * Growable list of the arcs of a node, at most one arc per neighbour (the shortest one).
+	 */
+	private static class ArcList {
+		int[] nodes = new int[4];
+		double[] weights = new double[4];
+		int[] middles = new int[4];
+		int size = 0;
+
+		void add(int node, double weight, int middle) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					if (weight < weights[i]) {
+						weights[i] = weight;
+						middles[i] = middle;
+					}
+					return;
+				}
+			}
+
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+				middles = Arrays.copyOf(middles, 2 * size);
+			}
+			nodes[size] = node;
+			weights[size] = weight;
+			middles[size] = middle;
+			size++;
+		}
+
+		void remove(int node) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					size--;
+					nodes[i] = nodes[size];
+					weights[i] = weights[size];
+					middles[i] = middles[size];
+					return;
+				}
+			}
+		}
+	}
+}
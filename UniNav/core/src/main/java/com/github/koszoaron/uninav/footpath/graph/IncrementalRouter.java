@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * Shortest paths to a fixed destination which are repaired instead of recomputed when the
+ * walker leaves the route or passages get blocked (D* Lite, Koenig and Likhachev).
+ *
+ * The search runs backwards from the destination towards the walker with the estimate of
+ * {@link RoutingGraph#estimate(int, int)}, and keeps its state between the queries. When the
+ * start moves, the keys in the queue are corrected by the distance it moved instead of
+ * rebuilding the queue; when a passage is blocked or opened, only the nodes whose distance
+ * depended on it are processed again. A reroute near the old route settles a few nodes.
+ *
+ * The router copies the closures and the congestion factors of the graph when it is created, the
+ * repairs have to know every change, so the passages closed later are passed to it by
+ * {@link #setBlocked(GraphNode, GraphNode, boolean)}.
+ *
+ * A router belongs to one walker, it must not be used from more threads at the same time.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class IncrementalRouter {
+	/** The cost of the zero length arcs (e.g. between nodes at the same position), D* Lite needs positive costs. */
+	private static final double MIN_COST = 1e-6;
+
+	private final RoutingGraph graph;
+	private final NodeIndex nodeIndex;
+	private final int target;
+	private final int profile;
+	private final int reversedProfile;
+
+	private final double[] g;  /* distance to the target, as of the last expansion */
+	private final double[] rhs;  /* one step lookahead of g, the node is consistent if they are equal */
+	private final boolean[] blocked;  /* by arc */
+	private final float[] factors;  /* by edge, the congestion when the router was created, or null */
+	private final IndexedMinHeap queue;  /* the inconsistent nodes */
+	private int start = SearchWorkspace.NO_NODE;
+	private double keyModifier;  /* sum of the estimates between the successive starts */
+	private int expandedCount;
+
+	/**
+	 * Creates a router to a destination, the first query searches like A*.
+	 *
+	 * @param graph The graph.
+	 * @param nodeIndex The index of the nodes of the graph.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @param closures The closures whose closed arcs are blocked, or null.
+	 * @param weights The congestion factors of the edges, or null.
+	 */
+	public IncrementalRouter(RoutingGraph graph, NodeIndex nodeIndex, int target, int profile, Closures closures, EdgeWeights weights) {
+		this.graph = graph;
+		this.nodeIndex = nodeIndex;
+		this.target = target;
+		this.profile = profile;
+		this.reversedProfile = RoutingProfile.reverse(profile);
+
+		int nodeCount = graph.getNodeCount();
+		g = new double[nodeCount];
+		rhs = new double[nodeCount];
+		Arrays.fill(g, Double.POSITIVE_INFINITY);
+		Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+		blocked = new boolean[graph.getArcCount()];
+		if (closures != null) {
+			int[] closed = closures.getClosedArcs();
+			for (int a = 0; a < blocked.length; a++) {
+				blocked[a] = Closures.isClosed(closed, a);
+			}
+		}
+		factors = (weights != null) ? weights.getFactors() : null;
+		queue = new IndexedMinHeap(nodeCount);
+	}
+
+	public GraphNode getDestination() {
+		return nodeIndex.get(target);
+	}
+
+	/**
+	 * Returns the number of nodes expanded by the last query, to compare it with a full search.
+	 */
+	public int getExpandedCount() {
+		return expandedCount;
+	}
+
+	/**
+	 * Creates a stack of nodes with the destination at the bottom and the start at the top, like
+	 * {@link Graph#getShortestPath(String, String, int)}.
+	 *
+	 * @param from The current position of the walker.
+	 * @return The path, empty if the start is the destination, or null if the destination is not reachable.
+	 */
+	public Stack<GraphNode> getShortestPath(GraphNode from) {
+		int source = (from != null) ? nodeIndex.indexOf(from) : NodeIndex.NOT_FOUND;
+		if (source == NodeIndex.NOT_FOUND) {
+			return null;
+		}
+
+		int[] path = findPath(source);
+		if (path == null) {
+			return null;
+		}
+
+		Stack<GraphNode> s = new Stack<>();
+		if (source != target) {
+			for (int i = path.length - 1; i >= 0; i--) {
+				s.push(nodeIndex.get(path[i]));
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Blocks or opens the passage between two neighbouring nodes in both directions.
+	 *
+	 * @param node0 One end of the passage.
+	 * @param node1 The other end.
+	 */
+	public void setBlocked(GraphNode node0, GraphNode node1, boolean isBlocked) {
+		int u = nodeIndex.indexOf(node0);
+		int v = nodeIndex.indexOf(node1);
+		if (u != NodeIndex.NOT_FOUND && v != NodeIndex.NOT_FOUND) {
+			setBlocked(u, v, isBlocked);
+		}
+	}
+
+	/**
+	 * Blocks or opens the arcs between two nodes in both directions.
+	 *
+	 * @param u The index of one end.
+	 * @param v The index of the other end.
+	 */
+	public void setBlocked(int u, int v, boolean isBlocked) {
+		boolean changed = setArcsBlocked(u, v, isBlocked);
+		changed |= setArcsBlocked(v, u, isBlocked);
+		if (!changed || start == SearchWorkspace.NO_NODE) {
+			return;
+		}
+
+		/* only the lookahead of the tails depends on the arcs */
+		updateLookahead(u);
+		updateLookahead(v);
+	}
+
+	private boolean setArcsBlocked(int u, int v, boolean isBlocked) {
+		boolean changed = false;
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v && blocked[a] != isBlocked) {
+				blocked[a] = isBlocked;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the shortest path from a node to the destination, repairing the search state.
+	 *
+	 * @param source The index of the current position of the walker.
+	 * @return The indices of the nodes of the path from the source to the destination, or null if it is not reachable.
+	 */
+	public int[] findPath(int source) {
+		expandedCount = 0;
+		if (start == SearchWorkspace.NO_NODE) {
+			start = source;
+			rhs[target] = 0;
+			queue.update(target, graph.estimate(source, target), 0);
+		} else if (source != start) {
+			/* the keys in the queue are too large by at most the estimate between the two starts */
+			keyModifier += graph.estimate(start, source);
+			start = source;
+		}
+
+		computeShortestPath();
+		if (rhs[start] == Double.POSITIVE_INFINITY) {  /* the start itself may be left inconsistent */
+			return null;
+		}
+
+		/* follow the best successors, the costs are positive so g decreases strictly and there are no cycles */
+		IntArray path = new IntArray();
+		path.add(start);
+		for (int u = start; u != target; ) {
+			int next = SearchWorkspace.NO_NODE;
+			double best = Double.POSITIVE_INFINITY;
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				double d = cost(a, profile) + g[graph.getArcHead(a)];
+				if (d < best) {
+					best = d;
+					next = graph.getArcHead(a);
+				}
+			}
+			if (next == SearchWorkspace.NO_NODE || (u != start && g[next] >= g[u])) {
+				throw new IllegalStateException("Inconsistent search state at node " + u);
+			}
+			path.add(next);
+			u = next;
+		}
+
+		return path.toArray();
+	}
+
+	private void computeShortestPath() {
+		while (!queue.isEmpty()) {
+			int u = queue.peek();
+			double k1 = queue.peekKey();
+			double k2 = queue.getSecondaryKey(u);
+			double startK2 = Math.min(g[start], rhs[start]);
+			double startK1 = startK2 + keyModifier;
+			boolean startConsistent = rhs[start] <= g[start];
+			if (startConsistent && (k1 > startK1 || (k1 == startK1 && k2 >= startK2))) {
+				break;
+			}
+			expandedCount++;
+
+			double newK2 = Math.min(g[u], rhs[u]);
+			double newK1 = newK2 + graph.estimate(start, u) + keyModifier;
+			if (k1 < newK1 || (k1 == newK1 && k2 < newK2)) {
+				queue.update(u, newK1, newK2);  /* the key was too small because the start moved */
+			} else if (g[u] > rhs[u]) {
+				g[u] = rhs[u];
+				queue.remove(u);
+				for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+					int p = graph.getArcHead(a);
+					double d = cost(a, reversedProfile) + g[u];
+					if (p != target && d < rhs[p]) {
+						rhs[p] = d;
+						updateVertex(p);
+					}
+				}
+			} else {
+				double old = g[u];
+				g[u] = Double.POSITIVE_INFINITY;
+				for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+					int p = graph.getArcHead(a);
+					if (p != target && rhs[p] == cost(a, reversedProfile) + old) {
+						updateLookahead(p);
+					}
+				}
+				updateLookahead(u);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the lookahead of a node from its successors.
+	 */
+	private void updateLookahead(int u) {
+		if (u != target) {
+			double best = Double.POSITIVE_INFINITY;
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				best = Math.min(best, cost(a, profile) + g[graph.getArcHead(a)]);
+			}
+			rhs[u] = best;
+		}
+		updateVertex(u);
+	}
+
+	private void updateVertex(int u) {
+		if (g[u] != rhs[u]) {
+			double k2 = Math.min(g[u], rhs[u]);
+			queue.update(u, k2 + graph.estimate(start, u) + keyModifier, k2);
+		} else {
+			queue.remove(u);
+		}
+	}
+
+	/**
+	 * Returns the length of an arc with its congestion factor, at least {@link #MIN_COST}, infinite if it is blocked or not allowed.
+	 */
+	private double cost(int arc, int profile) {
+		if (blocked[arc] || !graph.isAllowed(arc, profile)) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double length = graph.getArcLength(arc);
+		return Math.max(MIN_COST, (factors != null) ? length * factors[graph.getArcEdge(arc)] : length);
+	}
+}
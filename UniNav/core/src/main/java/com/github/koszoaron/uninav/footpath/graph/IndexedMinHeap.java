@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * Binary min-heap of node indices with double keys, which supports decreasing the key of a node.
+ *
+ * The position of every node in the heap is stored, so a node is found in O(1) and moved in
+ * O(log n). Nodes with equal keys are ordered by their index, so the order of the searches does
+ * not depend on the order of the insertions. Incremental searches can also give a secondary key,
+ * which decides between equal keys before the index.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class IndexedMinHeap {
+	private final int[] heap;
+	private final double[] keys;  /* key of a node, by node index */
+	private final int[] positions;  /* position of a node in the heap + 1, 0 if it is not in the heap */
+	private double[] secondaryKeys;  /* created by the first update with a secondary key */
+	private int size;
+
+	/**
+	 * Creates an empty heap.
+	 *
+	 * @param capacity The number of nodes, the indices must be smaller than this.
+	 */
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new double[capacity];
+		positions = new int[capacity];
+		size = 0;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int node) {
+		return positions[node] != 0;
+	}
+
+	/**
+	 * Returns the key of a node in the heap.
+	 */
+	public double getKey(int node) {
+		return keys[node];
+	}
+
+	/**
+	 * Returns the node with the smallest key without removing it, the heap must not be empty.
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Returns the smallest key in the heap, the heap must not be empty.
+	 */
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Inserts a node or decreases its key if it is already in the heap.
+	 *
+	 * @param node The index of the node.
+	 * @param key The new key, ignored if it is not smaller than the current one.
+	 */
+	public void push(int node, double key) {
+		int pos = positions[node] - 1;
+		if (pos < 0) {
+			pos = size++;
+			heap[pos] = node;
+		} else if (key >= keys[node]) {
+			return;
+		}
+		keys[node] = key;
+		siftUp(pos);
+	}
+
+	/**
+	 * Inserts a node or changes its key if it is already in the heap, the key may also increase.
+	 *
+	 * @param node The index of the node.
+	 * @param key The new key.
+	 */
+	public void update(int node, double key) {
+		if (positions[node] == 0) {
+			push(node, key);
+			return;
+		}
+		keys[node] = key;
+		siftUp(positions[node] - 1);
+		siftDown(positions[node] - 1);
+	}
+
+	/**
+	 * Inserts a node or changes its keys if it is already in the heap. The nodes are ordered by
+	 * the key, then by the secondary key.
+	 *
+	 * @param node The index of the node.
+	 * @param key The new key.
+	 * @param secondaryKey The new secondary key.
+	 */
+	public void update(int node, double key, double secondaryKey) {
+		if (secondaryKeys == null) {
+			secondaryKeys = new double[keys.length];
+		}
+		secondaryKeys[node] = secondaryKey;
+		update(node, key);
+	}
+
+	public double getSecondaryKey(int node) {
+		return (secondaryKeys != null) ? secondaryKeys[node] : 0;
+	}
+
+	/**
+	 * Removes a node from the heap if it is in it.
+	 *
+	 * @param node The index of the node.
+	 */
+	public void remove(int node) {
+		int pos = positions[node] - 1;
+		if (pos < 0) {
+			return;
+		}
+		positions[node] = 0;
+
+		size--;
+		if (pos < size) {
+			int last = heap[size];
+			heap[pos] = last;
+			siftUp(pos);
+			siftDown(positions[last] - 1);
+		}
+	}
+
+	/**
+	 * Removes the node with the smallest key.
+	 *
+	 * @return The index of the node.
+	 */
+	public int poll() {
+		int min = heap[0];
+		positions[min] = 0;
+
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			siftDown(0);
+		}
+
+		return min;
+	}
+
+	/**
+	 * Removes all nodes, in time proportional to the size of the heap.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = 0;
+		}
+		size = 0;
+	}
+
+	private boolean less(int a, int b) {
+		if (keys[a] != keys[b]) {
+			return keys[a] < keys[b];
+		}
+		if (secondaryKeys != null && secondaryKeys[a] != secondaryKeys[b]) {
+			return secondaryKeys[a] < secondaryKeys[b];
+		}
+		return a < b;
+	}
+
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!less(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			positions[heap[pos]] = pos + 1;
+			pos = parent;
+		}
+		heap[pos] = node;
+		positions[node] = pos + 1;
+	}
+
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && less(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			positions[heap[pos]] = pos + 1;
+			pos = child;
+		}
+		heap[pos] = node;
+		positions[node] = pos + 1;
+	}
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * Growable int array, used to collect the nodes of paths.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+class IntArray {
+	int[] values = new int[16];
+	int size = 0;
+
+	void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		values[size++] = value;
+	}
+
+	void reverse() {
+		for (int l = 0, r = size - 1; l < r; l++, r--) {
+			int tmp = values[l];
+			values[l] = values[r];
+			values[r] = tmp;
+		}
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * The nodes reachable from a node within a distance, and the edges leaving them, see
+ * {@link PathFinder#findReachable(SearchWorkspace, int, double, int, Isochrone)}.
+ *
+ * The results are kept in primitive arrays which grow as needed, so an instance can be reused
+ * by more queries without allocation. The nodes are stored in the order of their distances.
+ * A boundary edge leads from a reachable node to a node which is not reachable, its remaining
+ * distance is the part of the edge which can still be walked.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class Isochrone {
+	private final NodeIndex nodeIndex;
+	private int source = SearchWorkspace.NO_NODE;
+	private double maxDistance;
+
+	private int nodeCount;
+	private int[] nodes = new int[16];
+	private double[] distances = new double[16];
+
+	private int boundaryCount;
+	private int[] boundaryTails = new int[16];
+	private int[] boundaryHeads = new int[16];
+	private int[] boundaryEdges = new int[16];  /* indices of the RoutingGraph */
+	private double[] boundaryRemaining = new double[16];
+
+	/**
+	 * Creates an empty result.
+	 *
+	 * @param nodeIndex The index of the nodes of the graph.
+	 */
+	public Isochrone(NodeIndex nodeIndex) {
+		this.nodeIndex = nodeIndex;
+	}
+
+	void reset(int source, double maxDistance) {
+		this.source = source;
+		this.maxDistance = maxDistance;
+		nodeCount = 0;
+		boundaryCount = 0;
+	}
+
+	void addNode(int node, double distance) {
+		if (nodeCount == nodes.length) {
+			nodes = Arrays.copyOf(nodes, 2 * nodeCount);
+			distances = Arrays.copyOf(distances, 2 * nodeCount);
+		}
+		nodes[nodeCount] = node;
+		distances[nodeCount] = distance;
+		nodeCount++;
+	}
+
+	void addBoundary(int tail, int head, int edge, double remaining) {
+		if (boundaryCount == boundaryTails.length) {
+			boundaryTails = Arrays.copyOf(boundaryTails, 2 * boundaryCount);
+			boundaryHeads = Arrays.copyOf(boundaryHeads, 2 * boundaryCount);
+			boundaryEdges = Arrays.copyOf(boundaryEdges, 2 * boundaryCount);
+			boundaryRemaining = Arrays.copyOf(boundaryRemaining, 2 * boundaryCount);
+		}
+		boundaryTails[boundaryCount] = tail;
+		boundaryHeads[boundaryCount] = head;
+		boundaryEdges[boundaryCount] = edge;
+		boundaryRemaining[boundaryCount] = remaining;
+		boundaryCount++;
+	}
+
+	/**
+	 * Returns the index of the start node of the query.
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	public double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Returns the number of reachable nodes, including the source.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the index of the i-th reachable node, the source is the 0-th.
+	 */
+	public int getNodeIndex(int i) {
+		return nodes[i];
+	}
+
+	public GraphNode getNode(int i) {
+		return nodeIndex.get(nodes[i]);
+	}
+
+	/**
+	 * Returns the distance of the i-th reachable node from the source, not decreasing with i.
+	 */
+	public double getDistance(int i) {
+		return distances[i];
+	}
+
+	/**
+	 * Returns the number of edges leaving the reachable nodes.
+	 */
+	public int getBoundaryCount() {
+		return boundaryCount;
+	}
+
+	/**
+	 * Returns the index of the reachable end of the i-th boundary edge.
+	 */
+	public int getBoundaryTail(int i) {
+		return boundaryTails[i];
+	}
+
+	/**
+	 * Returns the index of the unreachable end of the i-th boundary edge.
+	 */
+	public int getBoundaryHead(int i) {
+		return boundaryHeads[i];
+	}
+
+	/**
+	 * Returns the index of the i-th boundary edge in the edge list of the graph.
+	 */
+	public int getBoundaryEdge(int i) {
+		return boundaryEdges[i];
+	}
+
+	/**
+	 * Returns the part of the i-th boundary edge which is still within the distance, measured from its tail.
+	 * It is in metres, on a congested edge it is the remaining distance divided by the congestion factor.
+	 */
+	public double getBoundaryRemaining(int i) {
+		return boundaryRemaining[i];
+	}
+}
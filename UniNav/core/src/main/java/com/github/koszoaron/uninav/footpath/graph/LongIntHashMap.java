@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive long keys to primitive int values.
+ *
+ * Used to look up nodes by their (64 bit) OSM ID without boxing the keys.
+ * The key 0 is stored outside of the table, because it marks the free slots.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class LongIntHashMap {
+	private static final long FREE_KEY = 0;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	private int threshold;
+
+	private boolean hasFreeKey = false;
+	private int freeValue;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public LongIntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty map which can hold the given number of keys without resizing.
+	 *
+	 * @param expectedSize The expected number of keys.
+	 */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Returns the value stored for the given key.
+	 *
+	 * @param key The key to look up.
+	 * @param defaultValue The value to return if the key is not present.
+	 * @return The value of the key or defaultValue.
+	 */
+	public int get(long key, int defaultValue) {
+		if (key == FREE_KEY) {
+			return hasFreeKey ? freeValue : defaultValue;
+		}
+
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+
+		return defaultValue;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey;
+		}
+
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Stores the value for the given key, replacing the previous one.
+	 *
+	 * @param key The key.
+	 * @param value The value.
+	 */
+	public void put(long key, int value) {
+		insert(key, value, true);
+	}
+
+	/**
+	 * Stores the value for the given key only if the key is not present yet.
+	 *
+	 * @param key The key.
+	 * @param value The value.
+	 * @return true if the value was stored.
+	 */
+	public boolean putIfAbsent(long key, int value) {
+		return insert(key, value, false);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	private boolean insert(long key, int value, boolean replace) {
+		if (key == FREE_KEY) {
+			if (hasFreeKey && !replace) {
+				return false;
+			}
+			if (!hasFreeKey) {
+				size++;
+			}
+			hasFreeKey = true;
+			freeValue = value;
+
+			return true;
+		}
+
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				if (replace) {
+					values[i] = value;
+				}
+				return replace;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size >= threshold) {
+			rehash(keys.length << 1);
+		}
+
+		return true;
+	}
+
+	private int slot(long key) {
+		/* Fibonacci hashing spreads the (often sequential) OSM IDs over the table */
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE_KEY) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != FREE_KEY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,621 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.text.Normalizer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Search index of the named nodes (rooms) of a graph.
+ *
+ * The names are normalized (lower case, without accents and repeated spaces) and kept in a
+ * sorted array, so a prefix is a continuous range of it which can be paged through without
+ * copying. For typo tolerant search every name is split into trigrams; the names sharing
+ * enough trigrams with the query are ranked by their edit distance to the query.
+ *
+ * The index is immutable, so it can be searched from more threads. Its arrays are buffers, the
+ * index of a graph file reads them from the mapped sections, see {@link GraphFile#createNameIndex(NodeIndex)}.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class NameIndex {
+	private static final char PADDING = ' ';
+
+	private final NodeIndex nodeIndex;
+	private final IntBuffer nameOrder;  /* indices of the named nodes sorted by the original name */
+	private final List<String> keys;  /* normalized names, sorted */
+	private final IntBuffer keyNodes;  /* position of the node of a key in nameOrder */
+
+	/* trigram -> names containing it, in CSR form */
+	private final LongBuffer grams;  /* the trigrams, sorted, their positions are their IDs */
+	private final IntBuffer firstPosting;
+	private final IntBuffer postings;
+
+	/**
+	 * Creates the index.
+	 *
+	 * @param nodeIndex The index of the nodes.
+	 * @param nameOrder The indices of the named nodes sorted by their name.
+	 */
+	public NameIndex(NodeIndex nodeIndex, int[] nameOrder) {
+		this.nodeIndex = nodeIndex;
+		this.nameOrder = IntBuffer.wrap(nameOrder);
+
+		/* sort the normalized keys */
+		final String[] normalized = new String[nameOrder.length];
+		Integer[] order = new Integer[nameOrder.length];
+		for (int i = 0; i < nameOrder.length; i++) {
+			normalized[i] = normalize(nodeIndex.getName(nameOrder[i]));
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return normalized[a].compareTo(normalized[b]);
+			}
+		});
+
+		String[] sortedKeys = new String[nameOrder.length];
+		int[] nodes = new int[nameOrder.length];
+		for (int k = 0; k < sortedKeys.length; k++) {
+			sortedKeys[k] = normalized[order[k]];
+			nodes[k] = order[k];
+		}
+		keys = Arrays.asList(sortedKeys);
+		keyNodes = IntBuffer.wrap(nodes);
+
+		/* first pass: collect the trigrams and count the names containing them */
+		LongIntHashMap gramIds = new LongIntHashMap(4 * sortedKeys.length);
+		long[] gramsById = new long[16];
+		int[] counts = new int[16];
+		int[] lastKey = new int[16];
+		int gramCount = 0;
+		for (int k = 0; k < sortedKeys.length; k++) {
+			String padded = pad(sortedKeys[k]);
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				long gram = gram(padded, i);
+				int id = gramIds.get(gram, -1);
+				if (id == -1) {
+					id = gramCount++;
+					gramIds.put(gram, id);
+					if (id == counts.length) {
+						gramsById = Arrays.copyOf(gramsById, 2 * id);
+						counts = Arrays.copyOf(counts, 2 * id);
+						lastKey = Arrays.copyOf(lastKey, 2 * id);
+					}
+					gramsById[id] = gram;
+					lastKey[id] = -1;
+				}
+				if (lastKey[id] != k) {  /* count a name only once per trigram */
+					lastKey[id] = k;
+					counts[id]++;
+				}
+			}
+		}
+
+		/* the final IDs are the positions in the sorted trigrams, so they can be found by a binary search */
+		long[] sortedGrams = Arrays.copyOf(gramsById, gramCount);
+		Arrays.sort(sortedGrams);
+		int[] rank = new int[gramCount];
+		int[] first = new int[gramCount + 1];
+		for (int id = 0; id < gramCount; id++) {
+			rank[id] = Arrays.binarySearch(sortedGrams, gramsById[id]);
+			first[rank[id] + 1] = counts[id];
+		}
+		for (int g = 0; g < gramCount; g++) {
+			first[g + 1] += first[g];
+		}
+
+		/* second pass: fill the posting lists, the keys are added in ascending order */
+		int[] lists = new int[first[gramCount]];
+		int[] fill = Arrays.copyOf(first, gramCount);
+		Arrays.fill(lastKey, -1);
+		for (int k = 0; k < sortedKeys.length; k++) {
+			String padded = pad(sortedKeys[k]);
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				int id = gramIds.get(gram(padded, i), -1);
+				if (lastKey[id] != k) {
+					lastKey[id] = k;
+					lists[fill[rank[id]]++] = k;
+				}
+			}
+		}
+
+		grams = LongBuffer.wrap(sortedGrams);
+		firstPosting = IntBuffer.wrap(first);
+		postings = IntBuffer.wrap(lists);
+	}
+
+	/**
+	 * Uses an index stored in a graph file, see {@link GraphFile#createNameIndex(NodeIndex)}.
+	 *
+	 * @param nodeIndex The index of the nodes.
+	 * @param nameOrder The indices of the named nodes sorted by their name.
+	 * @param keys The normalized names, sorted.
+	 * @param keyNodes The position of the node of every key in nameOrder.
+	 * @param grams The trigrams, sorted.
+	 * @param firstPosting The first posting of every trigram, and the number of postings at the end.
+	 * @param postings The keys containing the trigrams.
+	 */
+	NameIndex(NodeIndex nodeIndex, IntBuffer nameOrder, List<String> keys, IntBuffer keyNodes, LongBuffer grams,
+			IntBuffer firstPosting, IntBuffer postings) {
+		this.nodeIndex = nodeIndex;
+		this.nameOrder = nameOrder;
+		this.keys = keys;
+		this.keyNodes = keyNodes;
+		this.grams = grams;
+		this.firstPosting = firstPosting;
+		this.postings = postings;
+	}
+
+	/**
+	 * Returns the number of names in the index.
+	 */
+	public int size() {
+		return nameOrder.capacity();
+	}
+
+	/**
+	 * Returns the index of the node with the given position in the original name order.
+	 */
+	int getNodeIndex(int i) {
+		return nameOrder.get(i);
+	}
+
+	/**
+	 * Returns the names in their original order as a read only list, without copying them.
+	 */
+	public List<String> getNames() {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int i) {
+				return nodeIndex.getName(nameOrder.get(i));
+			}
+
+			@Override
+			public int size() {
+				return nameOrder.capacity();
+			}
+		};
+	}
+
+	/**
+	 * Returns the node with exactly the given name (binary search).
+	 *
+	 * @param name The name of the node.
+	 * @return The node or null.
+	 */
+	public GraphNode getNode(String name) {
+		int u = 0;
+		int o = size() - 1;
+
+		while (!(o < u)) {
+			int m = (u + o) >>> 1;
+			int c = name.compareTo(nodeIndex.getName(nameOrder.get(m)));
+			if (c == 0) {
+				return nodeIndex.get(nameOrder.get(m));
+			}
+			if (c < 0) {
+				o = m - 1;
+			} else {
+				u = m + 1;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the number of names starting with the given prefix (ignoring case and accents).
+	 *
+	 * @param prefix The prefix.
+	 */
+	public int countPrefix(String prefix) {
+		String p = normalize(prefix);
+
+		return upperBound(p) - lowerBound(p);
+	}
+
+	/**
+	 * Returns a page of the nodes whose name starts with the given prefix (ignoring case and accents),
+	 * in the order of the normalized names.
+	 *
+	 * @param prefix The prefix.
+	 * @param offset The number of matches to skip.
+	 * @param limit The maximal number of nodes to return.
+	 * @return The nodes of the page.
+	 */
+	public List<GraphNode> findByPrefix(String prefix, int offset, int limit) {
+		String p = normalize(prefix);
+		int from = lowerBound(p) + offset;
+		int to = Math.min(upperBound(p), from + limit);
+		List<GraphNode> res = new ArrayList<>(Math.max(0, to - from));
+
+		for (int k = from; k < to; k++) {
+			res.add(getKeyNode(k));
+		}
+
+		return res;
+	}
+
+	/**
+	 * Returns the best matches for a query which may contain typos.
+	 *
+	 * A name matches if the query is found in it with a few edits (none for 3 characters, 1 for
+	 * queries up to 6 characters, 2 for longer ones). The matches are ranked by the number of edits,
+	 * then names starting with the query come first, then the shorter and alphabetically smaller names.
+	 * Queries shorter than 3 characters are only matched as prefixes.
+	 *
+	 * @param query The text typed by the user.
+	 * @param maxResults The maximal number of nodes to return.
+	 * @return The best matching nodes, the best one first.
+	 */
+	public List<GraphNode> search(String query, int maxResults) {
+		String q = normalize(query);
+		if (q.length() < 3 || maxResults <= 0) {
+			return findByPrefix(q, 0, maxResults);
+		}
+
+		int maxEdits = (q.length() <= 3) ? 0 : (q.length() <= 6) ? 1 : 2;
+
+		/* the distinct trigrams of the query, the inner ones (not touching the padding) first: a name
+		 * containing the query with a few edits contains all of them but at most 3 per edit,
+		 * the trigrams on the borders may be missing, but at least one trigram has to be shared */
+		String padded = pad(q);
+		int gramTotal = padded.length() - 2;
+		long[] queryGrams = new long[gramTotal];
+		int distinct = 0;
+		int inner = 0;
+		for (int n = 0; n < gramTotal; n++) {
+			int i = (n < gramTotal - 2) ? n + 1 : (n == gramTotal - 2) ? 0 : gramTotal - 1;
+			long gram = gram(padded, i);
+			boolean duplicate = false;
+			for (int j = 0; j < distinct && !duplicate; j++) {
+				duplicate = (queryGrams[j] == gram);
+			}
+			if (!duplicate) {
+				queryGrams[distinct++] = gram;
+			}
+			if (n == gramTotal - 3) {
+				inner = distinct;
+			}
+		}
+		int minHits = Math.max(1, inner - 3 * maxEdits);
+
+		int[] hits = new int[keys.size()];
+		int[] candidates = new int[16];
+		int candidateCount = 0;
+		int gramsFound = 0;
+		for (int j = 0; j < distinct; j++) {
+			int id = findGram(queryGrams[j]);
+			if (id == -1) {
+				continue;
+			}
+			gramsFound++;
+
+			for (int p = firstPosting.get(id); p < firstPosting.get(id + 1); p++) {
+				int k = postings.get(p);
+				if (++hits[k] == minHits) {
+					if (candidateCount == candidates.length) {
+						candidates = Arrays.copyOf(candidates, 2 * candidateCount);
+					}
+					candidates[candidateCount++] = k;
+				}
+			}
+		}
+
+		/* order the candidates by the number of shared trigrams (counting sort), the most similar first */
+		int[] first = new int[gramsFound + 2];
+		for (int c = 0; c < candidateCount; c++) {
+			first[gramsFound - hits[candidates[c]] + 1]++;
+		}
+		for (int h = 1; h < first.length; h++) {
+			first[h] += first[h - 1];
+		}
+		int[] ordered = new int[candidateCount];
+		for (int c = 0; c < candidateCount; c++) {
+			ordered[first[gramsFound - hits[candidates[c]]]++] = candidates[c];
+		}
+
+		/* rank the candidates, keeping the best ones in a small sorted array */
+		Matcher matcher = new Matcher(q);
+		int[] best = new int[maxResults];
+		int[] bestScore = new int[maxResults];
+		int bestCount = 0;
+		for (int c = 0; c < candidateCount; c++) {
+			int k = ordered[c];
+
+			/* the missing inner trigrams mean at least this many edits, the rest can not be better */
+			int minEdits = Math.max(0, inner - hits[k] + 2) / 3;
+			if (bestCount == maxResults && (minEdits << 1) > bestScore[bestCount - 1]) {
+				break;
+			}
+
+			String key = keys.get(k);
+			int edits = matcher.distance(key);
+			if (edits > maxEdits) {
+				continue;
+			}
+
+			int score = (edits << 1) | (key.startsWith(q) ? 0 : 1);
+			int pos = bestCount;
+			while (pos > 0 && isBetter(score, k, bestScore[pos - 1], best[pos - 1])) {
+				pos--;
+			}
+			if (pos < maxResults) {
+				int moved = Math.min(bestCount, maxResults - 1) - pos;
+				System.arraycopy(best, pos, best, pos + 1, moved);
+				System.arraycopy(bestScore, pos, bestScore, pos + 1, moved);
+				best[pos] = k;
+				bestScore[pos] = score;
+				bestCount = Math.min(bestCount + 1, maxResults);
+			}
+		}
+
+		List<GraphNode> res = new ArrayList<>(bestCount);
+		for (int i = 0; i < bestCount; i++) {
+			res.add(getKeyNode(best[i]));
+		}
+
+		return res;
+	}
+
+	/* arrays of the index, used by GraphFile to store them */
+
+	List<String> getKeys() {
+		return keys;
+	}
+
+	IntBuffer getKeyNodes() {
+		return keyNodes;
+	}
+
+	LongBuffer getGrams() {
+		return grams;
+	}
+
+	IntBuffer getFirstPostings() {
+		return firstPosting;
+	}
+
+	IntBuffer getPostings() {
+		return postings;
+	}
+
+	/**
+	 * Normalizes a name for searching: lower case, no accents, single spaces.
+	 */
+	static String normalize(String s) {
+		String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		boolean space = true;  /* drops the leading spaces */
+
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				continue;
+			}
+			if (Character.isWhitespace(c)) {
+				if (!space) {
+					sb.append(PADDING);
+				}
+				space = true;
+			} else {
+				sb.append(c);
+				space = false;
+			}
+		}
+		if (space && sb.length() > 0) {
+			sb.setLength(sb.length() - 1);
+		}
+
+		return sb.toString().toLowerCase(Locale.ROOT);
+	}
+
+	private boolean isBetter(int score, int key, int otherScore, int otherKey) {
+		if (score != otherScore) {
+			return score < otherScore;
+		}
+		int length = keys.get(key).length();
+		int otherLength = keys.get(otherKey).length();
+		if (length != otherLength) {
+			return length < otherLength;
+		}
+		return key < otherKey;
+	}
+
+	private GraphNode getKeyNode(int k) {
+		return nodeIndex.get(nameOrder.get(keyNodes.get(k)));
+	}
+
+	/**
+	 * Returns the ID of a trigram (binary search), or -1 if no name contains it.
+	 */
+	private int findGram(long gram) {
+		int u = 0;
+		int o = grams.capacity() - 1;
+		while (!(o < u)) {
+			int m = (u + o) >>> 1;
+			long g = grams.get(m);
+			if (g == gram) {
+				return m;
+			}
+			if (gram < g) {
+				o = m - 1;
+			} else {
+				u = m + 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Computes the edit distance between a pattern and the best matching substring of a text.
+	 *
+	 * Patterns up to 64 characters use the bit-parallel algorithm of Myers, which processes a
+	 * character of the text in a few operations, longer ones use the dynamic programming of Sellers.
+	 */
+	private static class Matcher {
+		private final String pattern;
+		private final long[] asciiMasks = new long[128];
+		private final char[] otherChars;  /* the pattern characters outside ASCII and their masks */
+		private final long[] otherMasks;
+		private int otherCount;
+		private final int[] row;
+
+		public Matcher(String pattern) {
+			this.pattern = pattern;
+			otherChars = new char[pattern.length()];
+			otherMasks = new long[pattern.length()];
+			row = (pattern.length() > 64) ? new int[pattern.length() + 1] : null;
+
+			for (int i = 0; i < Math.min(pattern.length(), 64); i++) {
+				char c = pattern.charAt(i);
+				if (c < 128) {
+					asciiMasks[c] |= 1L << i;
+				} else {
+					int j = 0;
+					while (j < otherCount && otherChars[j] != c) {
+						j++;
+					}
+					if (j == otherCount) {
+						otherChars[otherCount++] = c;
+					}
+					otherMasks[j] |= 1L << i;
+				}
+			}
+		}
+
+		public int distance(String text) {
+			return (row == null) ? myers(text) : sellers(text);
+		}
+
+		private long mask(char c) {
+			if (c < 128) {
+				return asciiMasks[c];
+			}
+			for (int j = 0; j < otherCount; j++) {
+				if (otherChars[j] == c) {
+					return otherMasks[j];
+				}
+			}
+			return 0;
+		}
+
+		private int myers(String text) {
+			int m = pattern.length();
+			long last = 1L << (m - 1);
+			long pv = -1L;
+			long mv = 0;
+			int score = m;
+			int min = m;
+
+			for (int j = 0; j < text.length() && min > 0; j++) {
+				long eq = mask(text.charAt(j));
+				long xv = eq | mv;
+				long xh = (((eq & pv) + pv) ^ pv) | eq;
+				long ph = mv | ~(xh | pv);
+				long mh = pv & xh;
+				if ((ph & last) != 0) {
+					score++;
+				} else if ((mh & last) != 0) {
+					score--;
+				}
+				/* no carry into the first row, a match may start anywhere in the text */
+				ph <<= 1;
+				mh <<= 1;
+				pv = mh | ~(xv | ph);
+				mv = ph & xv;
+				min = Math.min(min, score);
+			}
+
+			return min;
+		}
+
+		private int sellers(String text) {
+			int m = pattern.length();
+			for (int i = 0; i <= m; i++) {
+				row[i] = i;
+			}
+
+			int min = row[m];
+			for (int j = 1; j <= text.length(); j++) {
+				char t = text.charAt(j - 1);
+				int diagonal = 0;
+				row[0] = 0;
+				for (int i = 1; i <= m; i++) {
+					int above = row[i];
+					int cost = (pattern.charAt(i - 1) == t) ? 0 : 1;
+					row[i] = Math.min(Math.min(row[i - 1] + 1, above + 1), diagonal + cost);
+					diagonal = above;
+				}
+				min = Math.min(min, row[m]);
+			}
+
+			return min;
+		}
+	}
+
+	private int lowerBound(String prefix) {
+		int u = 0;
+		int o = keys.size();
+		while (u < o) {
+			int m = (u + o) >>> 1;
+			if (keys.get(m).compareTo(prefix) < 0) {
+				u = m + 1;
+			} else {
+				o = m;
+			}
+		}
+
+		return u;
+	}
+
+	private int upperBound(String prefix) {
+		int u = lowerBound(prefix);
+		int o = keys.size();
+		while (u < o) {
+			int m = (u + o) >>> 1;
+			if (keys.get(m).startsWith(prefix)) {
+				u = m + 1;
+			} else {
+				o = m;
+			}
+		}
+
+		return u;
+	}
+
+	private static String pad(String key) {
+		return PADDING + key + PADDING;
+	}
+
+	private static long gram(String s, int i) {
+		return ((long)s.charAt(i) << 32) | ((long)s.charAt(i + 1) << 16) | s.charAt(i + 2);
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Index of nodes by their 64 bit OSM IDs.
+ *
+ * Every node gets a dense index (0, 1, 2, ...) in the order it was added, which is used to
+ * address the per node arrays of the algorithms. If more nodes have the same ID, the ID
+ * refers to the first one.
+ *
+ * The index of a graph file does not hold the nodes, they are created on demand by the file and
+ * the IDs are found by a binary search in its sections, see {@link GraphFile#createNodeIndex()}.
+ * The coordinates and the names can be read without creating the node objects.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class NodeIndex {
+	public static final int NOT_FOUND = -1;
+
+	private GraphNode[] nodes;
+	private int size;
+	private final LongIntHashMap positions;
+	private final GraphFile file;  /* the source of the nodes, null if they were added */
+
+	/**
+	 * Creates an empty index.
+	 */
+	public NodeIndex() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty index for the given number of nodes.
+	 *
+	 * @param expectedSize The expected number of nodes.
+	 */
+	public NodeIndex(int expectedSize) {
+		nodes = new GraphNode[Math.max(expectedSize, 1)];
+		size = 0;
+		positions = new LongIntHashMap(expectedSize);
+		file = null;
+	}
+
+	/**
+	 * Creates an index of the given nodes, the indices follow the iteration order.
+	 *
+	 * @param nodes The nodes to index.
+	 */
+	public NodeIndex(Collection<GraphNode> nodes) {
+		this(nodes.size());
+		for (GraphNode node : nodes) {
+			add(node);
+		}
+	}
+
+	/**
+	 * Creates the read only index of the nodes of a graph file, the indices are the indices of the file.
+	 */
+	NodeIndex(GraphFile file) {
+		nodes = null;
+		size = file.getNodeCount();
+		positions = null;
+		this.file = file;
+	}
+
+	/**
+	 * Adds a node to the index.
+	 *
+	 * @param node The node to add.
+	 * @return The index of the node.
+	 * @throws UnsupportedOperationException If this is the index of a graph file.
+	 */
+	public int add(GraphNode node) {
+		if (file != null) {
+			throw new UnsupportedOperationException("The index of a graph file is read only");
+		}
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+		}
+		positions.putIfAbsent(node.getId(), size);
+		nodes[size] = node;
+
+		return size++;
+	}
+
+	/**
+	 * Returns the number of nodes in the index.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the node with the given index.
+	 */
+	public GraphNode get(int index) {
+		return (file != null) ? file.getNode(index) : nodes[index];
+	}
+
+	public double getLat(int index) {
+		return (file != null) ? file.getLat(index) : nodes[index].getLat();
+	}
+
+	public double getLon(int index) {
+		return (file != null) ? file.getLon(index) : nodes[index].getLon();
+	}
+
+	public float getLevel(int index) {
+		return (file != null) ? file.getLevel(index) : nodes[index].getLevel();
+	}
+
+	public boolean isIndoors(int index) {
+		return (file != null) ? file.isIndoors(index) : nodes[index].isIndoors();
+	}
+
+	public String getName(int index) {
+		return (file != null) ? file.getName(index) : nodes[index].getName();
+	}
+
+	/**
+	 * Returns the index of the node with the given ID.
+	 *
+	 * @param id The OSM ID of the node.
+	 * @return The index or {@link #NOT_FOUND}.
+	 */
+	public int indexOf(long id) {
+		return (file != null) ? file.indexOf(id) : positions.get(id, NOT_FOUND);
+	}
+
+	/**
+	 * Returns the index of the given node, it is looked up by its ID.
+	 *
+	 * @param node The node.
+	 * @return The index or {@link #NOT_FOUND}.
+	 */
+	public int indexOf(GraphNode node) {
+		return indexOf(node.getId());
+	}
+
+	/**
+	 * Returns the node with the given ID.
+	 *
+	 * @param id The OSM ID of the node.
+	 * @return The node or null if the ID is not in the index.
+	 */
+	public GraphNode getNode(long id) {
+		int index = indexOf(id);
+
+		return (index == NOT_FOUND) ? null : get(index);
+	}
+}
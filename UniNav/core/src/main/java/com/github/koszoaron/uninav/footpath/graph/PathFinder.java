@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * Dijkstra's algorithm and A* over a {@link RoutingGraph} with a binary heap.
+ *
+ * A* orders the nodes by their distance plus the estimate of {@link RoutingGraph#estimate(int, int)},
+ * so it settles mostly the nodes towards the target. The estimate is consistent, so both
+ * modes find paths of the same length.
+ *
+ * The search state is kept in a {@link SearchWorkspace}, so a query only touches the nodes
+ * it reaches and allocates nothing. The path can be read from the parent arcs of the workspace.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class PathFinder {
+	private final RoutingGraph graph;
+	private Closures closures;  /* null if nothing can be closed */
+	private EdgeWeights weights;  /* null if the lengths are not changed */
+
+	/**
+	 * Creates a path finder.
+	 *
+	 * @param graph The graph to search.
+	 */
+	public PathFinder(RoutingGraph graph) {
+		this.graph = graph;
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Sets the closures the searches avoid, a search uses the ones published when it starts.
+	 *
+	 * @param closures The closures of the graph, or null.
+	 */
+	public void setClosures(Closures closures) {
+		this.closures = closures;
+	}
+
+	public Closures getClosures() {
+		return closures;
+	}
+
+	/**
+	 * Sets the congestion factors the searches multiply the lengths with.
+	 *
+	 * @param weights The factors of the graph, or null.
+	 */
+	public void setEdgeWeights(EdgeWeights weights) {
+		this.weights = weights;
+	}
+
+	public EdgeWeights getEdgeWeights() {
+		return weights;
+	}
+
+	/**
+	 * Returns the factors for a search, which uses the same ones until it ends, e.g. to compute
+	 * the cost of its {@link Route}.
+	 *
+	 * @return The factors by edge, or null if no edge is congested.
+	 */
+	public float[] getFactors() {
+		return (weights != null) ? weights.getFactors() : null;
+	}
+
+	/**
+	 * Returns the closed arcs for a search, which uses the same ones until it ends.
+	 */
+	private int[] getClosedArcs() {
+		return (closures != null) ? closures.getClosedArcs() : null;
+	}
+
+	private double getLength(int arc, float[] factors) {
+		return (factors != null) ? graph.getArcLength(arc) * factors[graph.getArcEdge(arc)] : graph.getArcLength(arc);
+	}
+
+	private boolean isOpen(int arc, int profile, int[] closed) {
+		return graph.isAllowed(arc, profile) && (closed == null || !Closures.isClosed(closed, arc));
+	}
+
+	/**
+	 * Creates a workspace matching the size of the graph.
+	 */
+	public SearchWorkspace createWorkspace() {
+		return new SearchWorkspace(graph.getNodeCount());
+	}
+
+	/**
+	 * Searches the shortest path between two nodes. The search stops when the target is settled.
+	 *
+	 * @param ws The workspace to use, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @return true if the target is reachable, the path is stored in the workspace.
+	 */
+	public boolean findPath(SearchWorkspace ws, int source, int target, int profile) {
+		return search(ws, source, target, profile, false);
+	}
+
+	/**
+	 * Searches the shortest path between two nodes with A*. The search stops when the target is settled.
+	 *
+	 * @param ws The workspace to use, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @return true if the target is reachable, the path is stored in the workspace.
+	 */
+	public boolean findPathAStar(SearchWorkspace ws, int source, int target, int profile) {
+		return search(ws, source, target, profile, true);
+	}
+
+	/**
+	 * Computes the shortest paths from a node to every node reachable from it.
+	 *
+	 * @param ws The workspace to use, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 */
+	public void findPaths(SearchWorkspace ws, int source, int profile) {
+		search(ws, source, SearchWorkspace.NO_NODE, profile, false);
+	}
+
+	/**
+	 * Computes the shortest paths from a node to the given targets. The search stops when all
+	 * the targets are settled, so it is cheaper than a search to each of them.
+	 *
+	 * @param ws The workspace to use, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param targets The indices of the destination nodes, they may contain duplicates.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @return The number of distinct targets reached, the paths are stored in the workspace.
+	 */
+	public int findPaths(SearchWorkspace ws, int source, int[] targets, int profile) {
+		IndexedMinHeap heap = ws.getHeap();
+		float[] factors = getFactors();
+		int[] closed = getClosedArcs();
+
+		ws.begin();
+		int remaining = 0;
+		for (int t : targets) {
+			if (ws.markTarget(t)) {
+				remaining++;
+			}
+		}
+		ws.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(source, 0);
+
+		int found = 0;
+		while (!heap.isEmpty() && found < remaining) {
+			int u = heap.poll();
+			ws.settle(u);
+			if (ws.isTarget(u) && ++found == remaining) {
+				break;
+			}
+
+			double du = ws.getDistance(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (ws.isSettled(v) || !isOpen(a, profile, closed)) {
+					continue;
+				}
+
+				double dv = du + getLength(a, factors);
+				if (dv < ws.getDistance(v)) {
+					ws.update(v, dv, u, a);
+					heap.push(v, dv);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Computes the nodes reachable from a node within a distance. The search stops at the first
+	 * node farther than the distance, so it only touches the nodes around the source.
+	 *
+	 * @param ws The workspace to use, its previous contents are discarded.
+	 * @param source The index of the start node.
+	 * @param maxDistance The largest distance in metres.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @param result The result to fill, its previous contents are discarded.
+	 */
+	public void findReachable(SearchWorkspace ws, int source, double maxDistance, int profile, Isochrone result) {
+		IndexedMinHeap heap = ws.getHeap();
+		float[] factors = getFactors();
+		int[] closed = getClosedArcs();
+
+		ws.begin();
+		result.reset(source, maxDistance);
+		ws.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(source, 0);
+
+		while (!heap.isEmpty() && heap.peekKey() <= maxDistance) {
+			int u = heap.poll();
+			ws.settle(u);
+			result.addNode(u, ws.getDistance(u));
+
+			double du = ws.getDistance(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (ws.isSettled(v) || !isOpen(a, profile, closed)) {
+					continue;
+				}
+
+				double dv = du + getLength(a, factors);
+				if (dv < ws.getDistance(v)) {
+					ws.update(v, dv, u, a);
+					heap.push(v, dv);
+				}
+			}
+		}
+
+		/* the heads of the boundary edges are not settled by now, the distance left is a cost,
+		 * it is walked on the congested edge in fewer metres */
+		for (int i = 0; i < result.getNodeCount(); i++) {
+			int u = result.getNodeIndex(i);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (!ws.isSettled(v) && isOpen(a, profile, closed)) {
+					int edge = graph.getArcEdge(a);
+					double remaining = maxDistance - result.getDistance(i);
+					if (factors != null && factors[edge] > 1) {
+						remaining /= factors[edge];
+					}
+					result.addBoundary(u, v, edge, remaining);
+				}
+			}
+		}
+	}
+
+	private boolean search(SearchWorkspace ws, int source, int target, int profile, boolean goalDirected) {
+		IndexedMinHeap heap = ws.getHeap();
+		float[] factors = getFactors();
+		int[] closed = getClosedArcs();
+
+		ws.begin();
+		ws.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(source, goalDirected ? graph.estimate(source, target) : 0);
+
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			ws.settle(u);
+			if (u == target) {
+				return true;
+			}
+
+			double du = ws.getDistance(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (ws.isSettled(v) || !isOpen(a, profile, closed)) {
+					continue;
+				}
+
+				double dv = du + getLength(a, factors);
+				if (dv < ws.getDistance(v)) {
+					ws.update(v, dv, u, a);
+					heap.push(v, goalDirected ? dv + graph.estimate(v, target) : dv);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Searches the shortest path with two searches, one from the source and one backwards from
+	 * the target, which stop when they meet. Without the estimate both are Dijkstra searches.
+	 *
+	 * With the estimate both searches use the average of the estimates towards the target and
+	 * from the source: p(v) = (h(v, target) - h(source, v)) / 2 forwards and -p(v) backwards.
+	 * This keeps the reduced arc lengths of the two searches the same and not negative, so the
+	 * usual stopping rule applies: the searches stop when the sum of their smallest keys reaches
+	 * the length of the best path found.
+	 *
+	 * @param forward The workspace of the search from the source.
+	 * @param backward The workspace of the search from the target.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 * @param goalDirected Whether to use the estimate (A*).
+	 * @return The indices of the arcs of the path from the source to the target, or null if the target is not reachable.
+	 */
+	public int[] findPathBidirectional(SearchWorkspace forward, SearchWorkspace backward, int source, int target,
+			int profile, boolean goalDirected) {
+		IndexedMinHeap forwardHeap = forward.getHeap();
+		IndexedMinHeap backwardHeap = backward.getHeap();
+		float[] factors = getFactors();
+		int[] closed = getClosedArcs();
+		int reversed = RoutingProfile.reverse(profile);
+
+		forward.begin();
+		backward.begin();
+		forward.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		forwardHeap.push(source, potential(source, source, target, goalDirected));
+		backward.update(target, 0, SearchWorkspace.NO_NODE, -1);
+		backwardHeap.push(target, -potential(target, source, target, goalDirected));
+
+		double best = (source == target) ? 0 : Double.POSITIVE_INFINITY;
+		int meeting = (source == target) ? source : SearchWorkspace.NO_NODE;
+		while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+			if (forwardHeap.peekKey() + backwardHeap.peekKey() >= best) {
+				break;
+			}
+
+			/* expand the direction with the smaller key */
+			boolean isForward = forwardHeap.peekKey() <= backwardHeap.peekKey();
+			SearchWorkspace ws = isForward ? forward : backward;
+			SearchWorkspace other = isForward ? backward : forward;
+			double sign = isForward ? 1 : -1;
+
+			int u = ws.getHeap().poll();
+			ws.settle(u);
+			double du = ws.getDistance(u);
+
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (ws.isSettled(v) || !isOpen(a, isForward ? profile : reversed, closed)) {
+					continue;
+				}
+
+				double dv = du + getLength(a, factors);
+				if (dv < ws.getDistance(v)) {
+					ws.update(v, dv, u, a);
+					ws.getHeap().push(v, dv + sign * potential(v, source, target, goalDirected));
+				}
+				if (dv + other.getDistance(v) < best) {
+					best = dv + other.getDistance(v);
+					meeting = v;
+				}
+			}
+		}
+
+		if (meeting == SearchWorkspace.NO_NODE) {
+			return null;
+		}
+
+		/* the forward tree from the source to the meeting node, then the backward tree, whose
+		 * arcs lead towards the meeting node, with the arcs of their edges in the other direction */
+		int forwardLength = 0;
+		for (int v = meeting; v != source; v = forward.getParent(v)) {
+			forwardLength++;
+		}
+		int length = forwardLength;
+		for (int v = meeting; v != target; v = backward.getParent(v)) {
+			length++;
+		}
+
+		int[] arcs = new int[length];
+		int i = forwardLength;
+		for (int v = meeting; v != source; v = forward.getParent(v)) {
+			arcs[--i] = forward.getParentArc(v);
+		}
+		i = forwardLength;
+		for (int v = meeting; v != target; v = backward.getParent(v)) {
+			arcs[i++] = graph.getReverseArc(backward.getParentArc(v));
+		}
+
+		return arcs;
+	}
+
+	private double potential(int v, int source, int target, boolean goalDirected) {
+		return goalDirected ? (graph.estimate(v, target) - graph.estimate(source, v)) / 2 : 0;
+	}
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * Two-level routing for multi-floor buildings: the levels are only connected through a few
+ * portals, the ends of the arcs between different levels (stairs, elevators, merged nodes).
+ *
+ * For every level the distances between its portals are computed in advance by searches which
+ * stay on the level, these are the arcs of the overlay graph. A query is a Dijkstra which uses the
+ * original arcs on the levels of the source and the target, but crosses every other level through
+ * the overlay graph from portal to portal, so the nodes of those levels are never settled. The
+ * overlay arcs of the path are unpacked by a search on their level.
+ *
+ * Like the contraction hierarchies, every combination of the routing options has its own overlay,
+ * built when it is first needed. The queries can run from more threads if every thread uses its
+ * own workspaces.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class PortalOverlay {
+	private static final int PROFILES = 8;
+	private static final int NOT_PORTAL = -1;
+	private static final int OVERLAY_ARC = -2;  /* the parent arc of a node reached through the overlay */
+
+	private final RoutingGraph graph;
+	private final float[] levels;  /* the distinct levels, sorted */
+	private final int[] firstPortal;  /* the portals of level l are firstPortal[l] .. firstPortal[l + 1] - 1 */
+	private final int[] portalNodes;
+	private final int[] portalIds;  /* by node, or NOT_PORTAL */
+	private final OverlayGraph[] profiles = new OverlayGraph[PROFILES];
+
+	/**
+	 * Finds the portals of the graph, the overlays are built on demand.
+	 *
+	 * @param graph The graph.
+	 */
+	public PortalOverlay(RoutingGraph graph) {
+		this.graph = graph;
+		int nodeCount = graph.getNodeCount();
+
+		boolean[] portal = new boolean[nodeCount];
+		float[] allLevels = new float[nodeCount];
+		for (int u = 0; u < nodeCount; u++) {
+			allLevels[u] = graph.getLevel(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				if (graph.getLevel(graph.getArcHead(a)) != graph.getLevel(u)) {
+					portal[u] = true;
+				}
+			}
+		}
+
+		/* distinct levels */
+		Arrays.sort(allLevels);
+		int levelCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			if (levelCount == 0 || allLevels[i] != allLevels[levelCount - 1]) {
+				allLevels[levelCount++] = allLevels[i];
+			}
+		}
+		levels = Arrays.copyOf(allLevels, levelCount);
+
+		/* number the portals level by level */
+		firstPortal = new int[levelCount + 1];
+		for (int u = 0; u < nodeCount; u++) {
+			if (portal[u]) {
+				firstPortal[levelOf(u) + 1]++;
+			}
+		}
+		for (int l = 0; l < levelCount; l++) {
+			firstPortal[l + 1] += firstPortal[l];
+		}
+
+		portalNodes = new int[firstPortal[levelCount]];
+		portalIds = new int[nodeCount];
+		int[] next = Arrays.copyOf(firstPortal, levelCount);
+		for (int u = 0; u < nodeCount; u++) {
+			if (portal[u]) {
+				int id = next[levelOf(u)]++;
+				portalNodes[id] = u;
+				portalIds[u] = id;
+			} else {
+				portalIds[u] = NOT_PORTAL;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of portals on all levels.
+	 */
+	public int getPortalCount() {
+		return portalNodes.length;
+	}
+
+	/**
+	 * Returns the number of distinct levels.
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	/**
+	 * Builds the overlay for the given options if it does not exist yet.
+	 *
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 */
+	public void prepare(boolean staircase, boolean elevator, boolean outside) {
+		getProfile(staircase, elevator, outside);
+	}
+
+	/**
+	 * Creates a workspace for the queries, a query needs two of them.
+	 */
+	public SearchWorkspace createWorkspace() {
+		return new SearchWorkspace(graph.getNodeCount());
+	}
+
+	/**
+	 * Searches the shortest path between two nodes. The levels of the source and the target are
+	 * searched with their original arcs, on every other level only the portals are visited,
+	 * through the distances between them.
+	 *
+	 * @param ws The workspace of the search.
+	 * @param unpack The workspace used for unpacking the distances to paths on the levels.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 * @return The indices of the arcs of the path from the source to the target, or null if the target is not reachable.
+	 */
+	public int[] findPath(SearchWorkspace ws, SearchWorkspace unpack, int source, int target, boolean staircase, boolean elevator, boolean outside) {
+		OverlayGraph g = getProfile(staircase, elevator, outside);
+		int profile = RoutingProfile.of(staircase, elevator, outside);
+		float sourceLevel = graph.getLevel(source);
+		float targetLevel = graph.getLevel(target);
+		IndexedMinHeap heap = ws.getHeap();
+
+		ws.begin();
+		ws.update(source, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(source, 0);
+
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			ws.settle(u);
+			if (u == target) {
+				break;
+			}
+
+			double du = ws.getDistance(u);
+			float level = graph.getLevel(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				/* on the other levels only the arcs leaving the level are used */
+				if (level != sourceLevel && level != targetLevel && graph.getLevel(v) == level) {
+					continue;
+				}
+				if (!ws.isSettled(v) && graph.isAllowed(a, profile)) {
+					relax(ws, u, v, du + graph.getArcLength(a), a);
+				}
+			}
+			if (level != sourceLevel && level != targetLevel) {
+				int p = portalIds[u];
+				for (int a = g.first[p]; a < g.first[p + 1]; a++) {
+					int v = portalNodes[g.heads[a]];
+					if (!ws.isSettled(v)) {
+						relax(ws, u, v, du + g.weights[a], OVERLAY_ARC);
+					}
+				}
+			}
+		}
+
+		if (!ws.isSettled(target)) {
+			return null;
+		}
+
+		/* the arcs from the target back to the source, the overlay arcs are unpacked in reverse */
+		IntArray path = new IntArray();
+		for (int v = target; v != source; v = ws.getParent(v)) {
+			int u = ws.getParent(v);
+			if (ws.getParentArc(v) == OVERLAY_ARC) {
+				levelSearch(unpack, u, v, profile);
+				for (int w = v; w != u; w = unpack.getParent(w)) {
+					path.add(unpack.getParentArc(w));
+				}
+			} else {
+				path.add(ws.getParentArc(v));
+			}
+		}
+
+		int[] nodes = path.toArray();
+		for (int l = 0, r = nodes.length - 1; l < r; l++, r--) {
+			int tmp = nodes[l];
+			nodes[l] = nodes[r];
+			nodes[r] = tmp;
+		}
+		return nodes;
+	}
+
+	private static void relax(SearchWorkspace ws, int u, int v, double dv, int arc) {
+		if (dv < ws.getDistance(v)) {
+			ws.update(v, dv, u, arc);
+			ws.getHeap().push(v, dv);
+		}
+	}
+
+	/**
+	 * Dijkstra which does not leave the level of the start node.
+	 *
+	 * @param ws The workspace.
+	 * @param start The start node.
+	 * @param target The search stops when this node is settled, {@link SearchWorkspace#NO_NODE} to search the whole level.
+	 */
+	private void levelSearch(SearchWorkspace ws, int start, int target, int profile) {
+		IndexedMinHeap heap = ws.getHeap();
+		float level = graph.getLevel(start);
+
+		ws.begin();
+		ws.update(start, 0, SearchWorkspace.NO_NODE, -1);
+		heap.push(start, 0);
+
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			ws.settle(u);
+			if (u == target) {
+				return;
+			}
+
+			double du = ws.getDistance(u);
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				int v = graph.getArcHead(a);
+				if (graph.getLevel(v) != level || ws.isSettled(v) || !graph.isAllowed(a, profile)) {
+					continue;
+				}
+
+				relax(ws, u, v, du + graph.getArcLength(a), a);
+			}
+		}
+	}
+
+	private int levelOf(int node) {
+		return Arrays.binarySearch(levels, graph.getLevel(node));
+	}
+
+	private OverlayGraph getProfile(boolean staircase, boolean elevator, boolean outside) {
+		int p = (staircase ? 1 : 0) | (elevator ? 2 : 0) | (outside ? 4 : 0);
+
+		synchronized (profiles) {
+			if (profiles[p] == null) {
+				profiles[p] = build(staircase, elevator, outside);
+			}
+			return profiles[p];
+		}
+	}
+
+	/**
+	 * Computes the distance tables of the levels for the given options, the rows of the tables
+	 * are the arcs of the overlay graph.
+	 */
+	private OverlayGraph build(boolean staircase, boolean elevator, boolean outside) {
+		SearchWorkspace ws = createWorkspace();
+		int profile = RoutingProfile.of(staircase, elevator, outside);
+		int portalCount = portalNodes.length;
+		IntArray heads = new IntArray();
+		double[] weights = new double[16];
+		int[] first = new int[portalCount + 1];
+
+		for (int l = 0; l < levels.length; l++) {
+			for (int p = firstPortal[l]; p < firstPortal[l + 1]; p++) {
+				first[p] = heads.size;
+
+				levelSearch(ws, portalNodes[p], SearchWorkspace.NO_NODE, profile);
+				for (int q = firstPortal[l]; q < firstPortal[l + 1]; q++) {
+					double d = ws.getDistance(portalNodes[q]);
+					if (q != p && d < Double.POSITIVE_INFINITY) {
+						if (heads.size == weights.length) {
+							weights = Arrays.copyOf(weights, 2 * weights.length);
+						}
+						weights[heads.size] = d;
+						heads.add(q);
+					}
+				}
+			}
+		}
+		first[portalCount] = heads.size;
+
+		return new OverlayGraph(first, heads.toArray(), Arrays.copyOf(weights, heads.size));
+	}
+
+	/**
+	 * The overlay graph of a profile in CSR form.
+	 */
+	private static class OverlayGraph {
+		final int[] first;
+		final int[] heads;
+		final double[] weights;
+
+		OverlayGraph(int[] first, int[] heads, double[] weights) {
+			this.first = first;
+			this.heads = heads;
+			this.weights = weights;
+		}
+	}
+}
@@ -0,0 +1,503 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputed shortest paths between all pairs of named nodes (rooms), so the queries between
+ * rooms need no search at runtime.
+ *
+ * A table has the distances between the rooms and the shortest path tree of every room. The
+ * trees are stored only for the nodes which are on a path between two rooms (the columns of the
+ * table, most dead ends and the nodes outside the walked area are left out): for every room and
+ * column one byte, the position of the arc back to its parent among the arcs of the node, the
+ * reverse of the arc the search reached it through. A path is read by walking the tree of the
+ * source from the target. The trees are the ones Dijkstra's algorithm builds, so the paths are
+ * made of the same arcs as the ones of {@link SearchMode#DIJKSTRA}.
+ *
+ * Every combination of the routing options has a table, the options which give the same paths
+ * (e.g. elevators in a building without elevators) share one. The tables are computed offline
+ * by {@link #compute(RoutingGraph, int[], int)}, searching from more rooms in parallel, and
+ * saved into a file next to the graph file. The file is memory mapped, not copied, so all the
+ * tables together must fit into the 2 GB of a buffer; the sizes are checked before anything
+ * is allocated.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RoomTable {
+	public static final int MAGIC = 0x54524e55;  /* "UNRT" */
+	public static final int VERSION = 1;
+
+	private static final int PROFILES = 8;
+	private static final int HEADER_SIZE = 4 * (6 + PROFILES);
+	private static final int NO_PARENT = 0xff;  /* the slot of the roots and the unreached nodes */
+	private static final int NOT_ROOM = -1;
+
+	private final RoutingGraph graph;
+	private final int[] rooms;  /* the node indices of the rooms */
+	private final int[] roomIds;  /* by node, or NOT_ROOM */
+	private final int[] profiles;  /* the table of every profile */
+	private final ByteBuffer data;  /* the tables one after the other: columns, distances as floats, then the trees */
+	private final int[][] columns;  /* the sorted node indices of the columns of every table */
+	private final int[] distanceOffsets;  /* by table */
+	private final int[] slotOffsets;
+
+	private RoomTable(RoutingGraph graph, int[] rooms, int[] profiles, ByteBuffer data, int[][] columns,
+			int[] distanceOffsets, int[] slotOffsets) {
+		this.graph = graph;
+		this.rooms = rooms;
+		this.profiles = profiles;
+		this.data = data;
+		this.columns = columns;
+		this.distanceOffsets = distanceOffsets;
+		this.slotOffsets = slotOffsets;
+
+		roomIds = new int[graph.getNodeCount()];
+		Arrays.fill(roomIds, NOT_ROOM);
+		for (int r = 0; r < rooms.length; r++) {
+			roomIds[rooms[r]] = r;
+		}
+	}
+
+	/**
+	 * Computes the tables of all routing options.
+	 *
+	 * @param graph The graph.
+	 * @param rooms The indices of the rooms, without duplicates.
+	 * @param threads The number of searches running in parallel.
+	 * @return The tables.
+	 * @throws IllegalArgumentException If a node has more than 255 arcs, or the tables do not fit into 2 GB.
+	 */
+	public static RoomTable compute(RoutingGraph graph, int[] rooms, int threads) {
+		int nodeCount = graph.getNodeCount();
+		for (int u = 0; u < nodeCount; u++) {
+			if (graph.getFirstArc(u + 1) - graph.getFirstArc(u) >= NO_PARENT) {
+				throw new IllegalArgumentException("Node " + u + " has too many arcs for a room table");
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Table> tables = new ArrayList<>();
+		int[] profiles = new int[PROFILES];
+		long size = headerSize(rooms.length);
+		try {
+			for (int p = 0; p < PROFILES; p++) {
+				Table table = computeTable(executor, threads, graph, rooms, size, RoutingProfile.of((p & 1) != 0, (p & 2) != 0, (p & 4) != 0));
+
+				profiles[p] = tables.indexOf(table);
+				if (profiles[p] < 0) {
+					profiles[p] = tables.size();
+					tables.add(table);
+					size += tableSize(rooms.length, table.columns.length);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		ByteBuffer data = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		writeHeader(data, graph, rooms, profiles, tables.size());
+		int[][] columns = new int[tables.size()][];
+		int[] distanceOffsets = new int[tables.size()];
+		int[] slotOffsets = new int[tables.size()];
+		for (int t = 0; t < tables.size(); t++) {
+			Table table = tables.get(t);
+			columns[t] = table.columns;
+			data.putInt(table.columns.length);
+			for (int column : table.columns) {
+				data.putInt(column);
+			}
+			distanceOffsets[t] = data.position();
+			for (float d : table.distances) {
+				data.putFloat(d);
+			}
+			slotOffsets[t] = data.position();
+			data.put(table.slots);
+		}
+
+		return new RoomTable(graph, rooms, profiles, data, columns, distanceOffsets, slotOffsets);
+	}
+
+	/**
+	 * Computes the table of a profile in two rounds of searches shared by the threads: the first
+	 * finds the columns, the second stores the distances and the trees.
+	 *
+	 * @param size The size of the tables computed before, to check that this one still fits.
+	 */
+	private static Table computeTable(ExecutorService executor, int threads, final RoutingGraph graph, final int[] rooms,
+			long size, int profile) {
+		final int nodeCount = graph.getNodeCount();
+		final boolean[] onPath = new boolean[nodeCount];  /* only set to true, read after the searches */
+		search(executor, threads, graph, rooms, profile, new RoomVisitor() {
+			@Override
+			public void visit(int r, SearchWorkspace ws) {
+				for (int room : rooms) {
+					/* the nodes from the room up to the first one already marked in this tree */
+					for (int v = room; v != SearchWorkspace.NO_NODE && ws.isSettled(v) && ws.markTarget(v); v = ws.getParent(v)) {
+						onPath[v] = true;
+					}
+				}
+			}
+		});
+
+		int columnCount = 0;
+		final int[] columnIds = new int[nodeCount];
+		for (int v = 0; v < nodeCount; v++) {
+			columnIds[v] = onPath[v] ? columnCount++ : -1;
+		}
+		checkSize(size + tableSize(rooms.length, columnCount));
+
+		final int[] columns = new int[columnCount];
+		for (int v = 0; v < nodeCount; v++) {
+			if (columnIds[v] >= 0) {
+				columns[columnIds[v]] = v;
+			}
+		}
+		final Table table = new Table(columns, new float[rooms.length * rooms.length], new byte[rooms.length * columnCount]);
+		search(executor, threads, graph, rooms, profile, new RoomVisitor() {
+			@Override
+			public void visit(int r, SearchWorkspace ws) {
+				for (int t = 0; t < rooms.length; t++) {
+					table.distances[r * rooms.length + t] = (float) ws.getDistance(rooms[t]);
+				}
+				for (int c = 0; c < columns.length; c++) {
+					table.slots[r * columns.length + c] = (byte) slotOf(graph, columns[c], ws);
+				}
+			}
+		});
+
+		return table;
+	}
+
+	/**
+	 * Receives the shortest path trees of the rooms, it is called from more threads.
+	 */
+	private interface RoomVisitor {
+		void visit(int r, SearchWorkspace ws);
+	}
+
+	/**
+	 * Searches the shortest path trees of all rooms, the rooms are shared by the threads.
+	 */
+	private static void search(ExecutorService executor, int threads, final RoutingGraph graph, final int[] rooms,
+			final int profile, final RoomVisitor visitor) {
+		final AtomicInteger nextRoom = new AtomicInteger();
+
+		List<Future<?>> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					PathFinder pathFinder = new PathFinder(graph);
+					SearchWorkspace ws = pathFinder.createWorkspace();
+
+					for (int r = nextRoom.getAndIncrement(); r < rooms.length; r = nextRoom.getAndIncrement()) {
+						pathFinder.findPaths(ws, rooms[r], profile);
+						visitor.visit(r, ws);
+					}
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing the room table", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not compute the room table", e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the position of the reverse of the parent arc of a node among the arcs of the node.
+	 */
+	private static int slotOf(RoutingGraph graph, int node, SearchWorkspace ws) {
+		if (ws.getParent(node) == SearchWorkspace.NO_NODE) {
+			return NO_PARENT;
+		}
+
+		int reverse = graph.getReverseArc(ws.getParentArc(node));
+		if (reverse == -1) {
+			throw new IllegalStateException("No arc from " + node + " back to its parent " + ws.getParent(node));
+		}
+		return reverse - graph.getFirstArc(node);
+	}
+
+	/**
+	 * Returns the number of rooms.
+	 */
+	public int getRoomCount() {
+		return rooms.length;
+	}
+
+	/**
+	 * Returns the number of distinct tables, at most one for every combination of the options.
+	 */
+	public int getTableCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Returns the number of nodes whose parents are stored in a table, the nodes on the paths between the rooms.
+	 *
+	 * @param table The index of the table, less than {@link #getTableCount()}.
+	 */
+	public int getColumnCount(int table) {
+		return columns[table].length;
+	}
+
+	/**
+	 * Returns the size of the tables in bytes, the same as the size of the file.
+	 */
+	public int getByteSize() {
+		return data.capacity();
+	}
+
+	/**
+	 * Returns whether the node is one of the rooms of the table.
+	 *
+	 * @param node The index of the node.
+	 */
+	public boolean isRoom(int node) {
+		return roomIds[node] != NOT_ROOM;
+	}
+
+	/**
+	 * Returns the length of the shortest path between two rooms, stored as a float.
+	 *
+	 * @param source The index of the start room node.
+	 * @param target The index of the destination room node.
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 * @return The length or {@link Double#POSITIVE_INFINITY} if the target is not reachable.
+	 */
+	public double getDistance(int source, int target, boolean staircase, boolean elevator, boolean outside) {
+		int table = tableOf(staircase, elevator, outside);
+
+		return data.getFloat(distanceOffsets[table] + 4 * (roomIds[source] * rooms.length + roomIds[target]));
+	}
+
+	/**
+	 * Reads the shortest path between two rooms from the table.
+	 *
+	 * @param source The index of the start room node.
+	 * @param target The index of the destination room node.
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 * @return The indices of the arcs of the path from the source to the target, or null if the target is not reachable.
+	 */
+	public int[] getPath(int source, int target, boolean staircase, boolean elevator, boolean outside) {
+		if (getDistance(source, target, staircase, elevator, outside) == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+
+		int table = tableOf(staircase, elevator, outside);
+		int[] tableColumns = columns[table];
+		int tree = slotOffsets[table] + roomIds[source] * tableColumns.length;
+		IntArray path = new IntArray();
+		for (int v = target; v != source; ) {
+			int column = Arrays.binarySearch(tableColumns, v);  /* every node of the path is a column */
+			int back = graph.getFirstArc(v) + (data.get(tree + column) & 0xff);
+			path.add(graph.getReverseArc(back));
+			v = graph.getArcHead(back);
+		}
+
+		path.reverse();
+		return path.toArray();
+	}
+
+	private int tableOf(boolean staircase, boolean elevator, boolean outside) {
+		return profiles[(staircase ? 1 : 0) | (elevator ? 2 : 0) | (outside ? 4 : 0)];
+	}
+
+	private static long headerSize(int roomCount) {
+		return HEADER_SIZE + 4L * roomCount;
+	}
+
+	/**
+	 * Returns the size of a table: the columns, the distances and the trees.
+	 */
+	private static long tableSize(int roomCount, int columnCount) {
+		return 4 + 4L * columnCount + 4L * roomCount * roomCount + (long) roomCount * columnCount;
+	}
+
+	private static void checkSize(long size) {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The room table would need " + size + " bytes, more than the 2 GB of a buffer");
+		}
+	}
+
+	private static void writeHeader(ByteBuffer out, RoutingGraph graph, int[] rooms, int[] profiles, int tableCount) {
+		out.putInt(MAGIC).putInt(VERSION).putInt(graph.getNodeCount()).putInt(graph.getArcCount());
+		out.putInt(rooms.length).putInt(tableCount);
+		for (int table : profiles) {
+			out.putInt(table);
+		}
+		for (int room : rooms) {
+			out.putInt(room);
+		}
+	}
+
+	/**
+	 * Writes the tables into a file.
+	 *
+	 * @param file The file to write.
+	 * @throws IOException If the file can not be written.
+	 */
+	public void write(File file) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			ByteBuffer out = data.duplicate();
+			out.clear();
+			fos.getChannel().write(out);
+		} finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * Reads the tables saved by {@link #write(File)}.
+	 *
+	 * @param file The file to read.
+	 * @param graph The graph the tables were computed for.
+	 * @return The tables.
+	 * @throws IOException If the file can not be read or it does not belong to the graph.
+	 */
+	public static RoomTable read(File file, RoutingGraph graph) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return read(channel, 0, channel.size(), graph);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the tables from a region of a file, e.g. an uncompressed asset of an APK.
+	 *
+	 * @param channel The channel of the file.
+	 * @param position The position of the tables in the file.
+	 * @param size The size of the tables.
+	 * @param graph The graph the tables were computed for.
+	 * @return The tables.
+	 * @throws IOException If the region can not be read or it does not belong to the graph.
+	 */
+	public static RoomTable read(FileChannel channel, long position, long size, RoutingGraph graph) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("The room table file is larger than 2 GB");
+		}
+		ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (in.capacity() < HEADER_SIZE || in.getInt() != MAGIC) {
+			throw new IOException("Not a room table file");
+		}
+		if (in.getInt() != VERSION) {
+			throw new IOException("Unsupported room table file version: " + in.getInt(4));
+		}
+		if (in.getInt() != graph.getNodeCount() || in.getInt() != graph.getArcCount()) {
+			throw new IOException("The room table file belongs to another graph");
+		}
+
+		int roomCount = in.getInt();
+		int tableCount = in.getInt();
+		int[] profiles = new int[PROFILES];
+		in.asIntBuffer().get(profiles);
+		in.position(in.position() + 4 * PROFILES);
+		if (roomCount < 0 || tableCount < 0 || headerSize(roomCount) > in.capacity()) {
+			throw new IOException("The room table file is truncated");
+		}
+		int[] rooms = new int[roomCount];
+		in.asIntBuffer().get(rooms);
+
+		/* the tables have different sizes, they are found one by one */
+		int[][] columns = new int[tableCount][];
+		int[] distanceOffsets = new int[tableCount];
+		int[] slotOffsets = new int[tableCount];
+		long offset = headerSize(roomCount);
+		for (int t = 0; t < tableCount; t++) {
+			int columnCount = (offset + 4 <= in.capacity()) ? in.getInt((int) offset) : -1;
+			if (columnCount < 0 || offset + tableSize(roomCount, columnCount) > in.capacity()) {
+				throw new IOException("The room table file is truncated");
+			}
+
+			columns[t] = new int[columnCount];
+			in.position((int) offset + 4);
+			in.asIntBuffer().get(columns[t]);
+			distanceOffsets[t] = (int) (offset + 4 + 4L * columnCount);
+			slotOffsets[t] = (int) (distanceOffsets[t] + 4L * roomCount * roomCount);
+			offset += tableSize(roomCount, columnCount);
+		}
+		if (offset != in.capacity()) {
+			throw new IOException("The room table file has an unexpected size");
+		}
+
+		return new RoomTable(graph, rooms, profiles, in, columns, distanceOffsets, slotOffsets);
+	}
+
+	/**
+	 * The table of a profile while it is computed.
+	 */
+	private static class Table {
+		final int[] columns;  /* the nodes on the paths between the rooms */
+		final float[] distances;  /* by source room and target room */
+		final byte[] slots;  /* by source room and column */
+
+		Table(int[] columns, float[] distances, byte[] slots) {
+			this.columns = columns;
+			this.distances = distances;
+			this.slots = slots;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Table)) {
+				return false;
+			}
+			Table t = (Table) o;
+			return Arrays.equals(columns, t.columns) && Arrays.equals(distances, t.distances) && Arrays.equals(slots, t.slots);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(distances);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Stack;
+
+/**
+ * A path of the graph with the data needed to follow it, e.g. the result of
+ * {@link Graph#getRoute(String, String, int)} or one of the alternative routes.
+ *
+ * The route is made of the arcs the search took, so it follows the closures and the congestion
+ * the search saw. The nodes, the arcs, the bearings of the arcs in the direction of the route
+ * and the distances of the nodes from the start are stored in arrays, so reading them needs no
+ * lookups in the graph. Edge i leads from node i to node i + 1.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class Route {
+	private final RoutingGraph graph;
+	private final NodeIndex nodeIndex;
+	private final int[] nodes;
+	private final int[] arcs;
+	private final double[] bearings;  /* by edge */
+	private final double[] distances;  /* from the start, by node */
+	private final double cost;  /* the length with the congestion factors */
+
+	private Route(RoutingGraph graph, NodeIndex nodeIndex, int[] nodes, int[] arcs, double[] bearings, double[] distances, double cost) {
+		this.graph = graph;
+		this.nodeIndex = nodeIndex;
+		this.nodes = nodes;
+		this.arcs = arcs;
+		this.bearings = bearings;
+		this.distances = distances;
+		this.cost = cost;
+	}
+
+	/**
+	 * Creates a route from the arcs of a path, e.g. the parent arcs of a search.
+	 *
+	 * @param graph The graph of the path.
+	 * @param nodeIndex The index of the nodes of the graph.
+	 * @param source The index of the start node.
+	 * @param arcs The indices of the arcs from the start to the destination, empty if the start is the destination.
+	 * @param factors The congestion factors of the edges used by the search, or null, see {@link EdgeWeights#getFactors()}.
+	 * @return The route.
+	 * @throws IllegalArgumentException If an arc does not start at the head of the previous one.
+	 */
+	static Route create(RoutingGraph graph, NodeIndex nodeIndex, int source, int[] arcs, float[] factors) {
+		int[] nodes = new int[arcs.length + 1];
+		double[] bearings = new double[arcs.length];
+		double[] distances = new double[nodes.length];
+		double cost = 0;
+
+		nodes[0] = source;
+		for (int i = 0; i < arcs.length; i++) {
+			int a = arcs[i];
+			if (a < 0 || a >= graph.getArcCount() || !graph.isArcOf(a, nodes[i])) {
+				throw new IllegalArgumentException("Arc " + a + " does not start at node " + nodes[i]);
+			}
+
+			double length = graph.getArcLength(a);
+			nodes[i + 1] = graph.getArcHead(a);
+			bearings[i] = graph.getArcBearing(a);
+			distances[i + 1] = distances[i] + length;
+			cost += (factors != null) ? length * factors[graph.getArcEdge(a)] : length;
+		}
+
+		return new Route(graph, nodeIndex, nodes, arcs, bearings, distances, cost);
+	}
+
+	/**
+	 * Creates a route without nodes, which stands for a missing route, e.g. in the {@link RouteCache}.
+	 */
+	static Route empty() {
+		return new Route(null, null, new int[0], new int[0], new double[0], new double[0], Double.POSITIVE_INFINITY);
+	}
+
+	RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of nodes, including the start and the destination.
+	 */
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the index of the i-th node, the start is the 0-th.
+	 */
+	public int getNodeIndex(int i) {
+		return nodes[i];
+	}
+
+	public GraphNode getNode(int i) {
+		return nodeIndex.get(nodes[i]);
+	}
+
+	/**
+	 * Returns the distance of the i-th node from the start along the route.
+	 */
+	public double getDistance(int i) {
+		return distances[i];
+	}
+
+	public double getLength() {
+		return distances[distances.length - 1];
+	}
+
+	/**
+	 * Returns the length multiplied with the congestion factors the route was searched with,
+	 * the distance the search minimised.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * Returns the number of edges, one less than the number of nodes.
+	 */
+	public int getEdgeCount() {
+		return arcs.length;
+	}
+
+	/**
+	 * Returns the arc of the {@link RoutingGraph} of the i-th edge.
+	 */
+	public int getArc(int i) {
+		return arcs[i];
+	}
+
+	/**
+	 * Returns the index of the i-th edge in the edge list of the graph.
+	 */
+	public int getEdgeIndex(int i) {
+		return graph.getArcEdge(arcs[i]);
+	}
+
+	/**
+	 * Returns the initial bearing of the i-th edge in the direction of the route.
+	 */
+	public double getBearing(int i) {
+		return bearings[i];
+	}
+
+	public double getEdgeLength(int i) {
+		return distances[i + 1] - distances[i];
+	}
+
+	public float getLevel(int i) {
+		return graph.getEdgeLevel(graph.getArcEdge(arcs[i]));
+	}
+
+	public boolean isIndoor(int i) {
+		return (graph.getArcAttributes(arcs[i]) & RoutingProfile.OUTDOOR_EDGE) == 0;
+	}
+
+	public boolean isStairs(int i) {
+		return (graph.getArcAttributes(arcs[i]) & RoutingProfile.STAIRS) != 0;
+	}
+
+	public boolean isElevator(int i) {
+		return (graph.getArcAttributes(arcs[i]) & RoutingProfile.ELEVATOR) != 0;
+	}
+
+	/**
+	 * Returns the number of steps of the i-th edge, see {@link RoutingGraph#getEdgeSteps(int)}.
+	 */
+	public int getSteps(int i) {
+		return graph.getEdgeSteps(graph.getArcEdge(arcs[i]));
+	}
+
+	/**
+	 * Creates a stack of nodes with the destination at the bottom and the start at the top, like
+	 * {@link Graph#getShortestPath(String, String, int)}.
+	 *
+	 * @return The path, empty if the start is the destination.
+	 */
+	public Stack<GraphNode> toStack() {
+		Stack<GraphNode> s = new Stack<>();
+		if (nodes.length > 1) {
+			for (int i = nodes.length - 1; i >= 0; i--) {
+				s.push(nodeIndex.get(nodes[i]));
+			}
+		}
+		return s;
+	}
+}
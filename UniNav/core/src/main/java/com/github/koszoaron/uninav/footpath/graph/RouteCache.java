@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of shortest paths keyed by the two ends and the routing options, the least
+ * recently used path is evicted first. The paths are {@link Route}s of the routing graph, so
+ * the cache has to be invalidated when the graph changes. All methods are thread-safe.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RouteCache {
+	/** Cached result of a query without a path. */
+	public static final Route NO_PATH = Route.empty();
+
+	private final LinkedHashMap<Long, Route> paths;
+	private int capacity;
+	private int version;  /* incremented when paths are removed, results of older searches are not stored */
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity The maximum number of paths, 0 disables the cache.
+	 */
+	public RouteCache(int capacity) {
+		this.capacity = capacity;
+		this.paths = new LinkedHashMap<Long, Route>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Route> eldest) {
+				return size() > RouteCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Creates the key of a query.
+	 *
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 */
+	public static long key(int source, int target, int profile) {
+		return ((long) source << 32) | ((long) target << 5) | profile;
+	}
+
+	/**
+	 * Looks up a path and counts the hit or the miss.
+	 *
+	 * @param key The key of the query.
+	 * @return The route, {@link #NO_PATH} if the destination was not reachable, or null if the query is not cached.
+	 */
+	public synchronized Route get(long key) {
+		Route path = paths.get(key);
+		if (path != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+
+		return path;
+	}
+
+	/**
+	 * Stores the result of a query, unless the cache was invalidated since the given version.
+	 *
+	 * @param key The key of the query.
+	 * @param path The route, or {@link #NO_PATH}.
+	 * @param version The result of {@link #getVersion()} before the search.
+	 */
+	public synchronized void put(long key, Route path, int version) {
+		if (version == this.version && capacity > 0) {
+			paths.put(key, path);
+		}
+	}
+
+	/**
+	 * Returns the current version, it changes when the cache is invalidated.
+	 */
+	public synchronized int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Removes all paths, e.g. because the graph has changed. The counters are kept.
+	 */
+	public synchronized void invalidate() {
+		paths.clear();
+		version++;
+	}
+
+	/**
+	 * Removes the paths which go through a node, e.g. because it was closed.
+	 *
+	 * @param node The index of the node.
+	 * @return The number of paths removed.
+	 */
+	public synchronized int invalidateNode(int node) {
+		int removed = 0;
+		for (Iterator<Route> it = paths.values().iterator(); it.hasNext(); ) {
+			Route path = it.next();
+			for (int i = 0; i < path.getNodeCount(); i++) {
+				if (path.getNodeIndex(i) == node) {
+					it.remove();
+					removed++;
+					break;
+				}
+			}
+		}
+		version++;  /* a search running now may have used the node */
+
+		return removed;
+	}
+
+	/**
+	 * Removes the paths which go between two neighbouring nodes in either direction, e.g.
+	 * because the passage between them was closed.
+	 *
+	 * @param u The index of one node.
+	 * @param v The index of the other node.
+	 * @return The number of paths removed.
+	 */
+	public synchronized int invalidatePassage(int u, int v) {
+		int removed = 0;
+		for (Iterator<Route> it = paths.values().iterator(); it.hasNext(); ) {
+			Route path = it.next();
+			for (int i = 1; i < path.getNodeCount(); i++) {
+				int a = path.getNodeIndex(i - 1);
+				int b = path.getNodeIndex(i);
+				if ((a == u && b == v) || (a == v && b == u)) {
+					it.remove();
+					removed++;
+					break;
+				}
+			}
+		}
+		version++;
+
+		return removed;
+	}
+
+	/**
+	 * Sets the maximum number of paths, the least recently used ones are removed if there are more.
+	 *
+	 * @param capacity The maximum number of paths, 0 disables the cache.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+
+		int excess = paths.size() - capacity;
+		for (Iterator<Long> it = paths.keySet().iterator(); excess > 0; excess--) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return paths.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Sets the hit and miss counters to zero.
+	 */
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+	public synchronized String toString() {
+		return "RouteCache: " + paths.size() + "/" + capacity + " paths, " + hits + " hits, " + misses + " misses";
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * A query of a batch, see {@link BatchRouter}.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RouteRequest {
+	private final GraphNode from;
+	private final GraphNode to;
+	private final int profile;
+
+	/**
+	 * Creates a request.
+	 *
+	 * @param from The start node.
+	 * @param to The destination node.
+	 * @param profile The routing profile, see {@link RoutingProfile}.
+	 */
+	public RouteRequest(GraphNode from, GraphNode to, int profile) {
+		this.from = from;
+		this.to = to;
+		this.profile = profile;
+	}
+
+	public GraphNode getFrom() {
+		return from;
+	}
+
+	public GraphNode getTo() {
+		return to;
+	}
+
+	public int getProfile() {
+		return profile;
+	}
+
+	public String toString() {
+		return from + " -> " + to + " (" + profile + ")";
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+import com.github.koszoaron.uninav.footpath.core.BestFitPositioner;
+
+/**
+ * Merges the successive edges of a {@link Route} which go in about the same direction into
+ * segments, so the walker gets fewer and longer instructions.
+ *
+ * The edges are read in one pass: an edge joins the current segment if its level, indoor,
+ * stairs and elevator attributes match the first edge of the segment and its bearing is within
+ * the tolerance of the bearing of the first edge (see {@link BestFitPositioner#isInRange(double, double, double)}).
+ * The bearing of a merged segment points from its first node to its last, its length is the
+ * length of its edges. The segments are written into arrays which are reused by the next route,
+ * so the getters check the index against the number of segments of the current route.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RouteSimplifier {
+	public static final double DEFAULT_TOLERANCE = 8.0;  /* degrees */
+
+	private Route route;
+	private int segmentCount;
+	private int[] starts = new int[16];  /* position of the first node of the segment in the route */
+	private double[] bearings = new double[16];
+	private double[] lengths = new double[16];
+	private int[] steps = new int[16];
+
+	/**
+	 * Splits a route into segments, replacing the segments of the previous route.
+	 *
+	 * @param route The route.
+	 * @param tolerance The largest difference of the bearings in a segment in degrees.
+	 */
+	public void simplify(Route route, double tolerance) {
+		this.route = route;
+		segmentCount = 0;
+
+		int first = 0;
+		int stepCount = 0;
+		for (int i = 0; i < route.getEdgeCount(); i++) {
+			if (i > first && !isMergeable(route, first, i, tolerance)) {
+				addSegment(first, i, stepCount);
+				first = i;
+			}
+
+			/* -1 means a staircase with an unknown number of steps */
+			if (i == first) {
+				stepCount = route.getSteps(i);
+			} else if (stepCount != -1) {
+				stepCount = (route.getSteps(i) != -1) ? stepCount + route.getSteps(i) : -1;
+			}
+		}
+		if (route.getEdgeCount() > 0) {
+			addSegment(first, route.getEdgeCount(), stepCount);
+		}
+	}
+
+	private static boolean isMergeable(Route route, int first, int i, double tolerance) {
+		return route.getLevel(first) == route.getLevel(i)
+				&& route.isElevator(first) == route.isElevator(i)
+				&& route.isIndoor(first) == route.isIndoor(i)
+				&& route.isStairs(first) == route.isStairs(i)
+				&& BestFitPositioner.isInRange(route.getBearing(first), route.getBearing(i), tolerance);
+	}
+
+	/**
+	 * Adds the segment of the edges first .. end - 1.
+	 */
+	private void addSegment(int first, int end, int stepCount) {
+		if (segmentCount == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * segmentCount);
+			bearings = Arrays.copyOf(bearings, 2 * segmentCount);
+			lengths = Arrays.copyOf(lengths, 2 * segmentCount);
+			steps = Arrays.copyOf(steps, 2 * segmentCount);
+		}
+
+		starts[segmentCount] = first;
+		bearings[segmentCount] = (end == first + 1)
+				? route.getBearing(first)
+				: route.getGraph().getBearing(route.getNodeIndex(first), route.getNodeIndex(end));
+		lengths[segmentCount] = route.getDistance(end) - route.getDistance(first);
+		steps[segmentCount] = stepCount;
+		segmentCount++;
+	}
+
+	/**
+	 * Returns the route of the segments, null before the first route.
+	 */
+	public Route getRoute() {
+		return route;
+	}
+
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	private void checkSegment(int i) {
+		if (i < 0 || i >= segmentCount) {
+			throw new IndexOutOfBoundsException("Segment " + i + " of " + segmentCount);
+		}
+	}
+
+	/**
+	 * Returns the position of the first node of the i-th segment in the route, which is also the
+	 * position of its first edge.
+	 */
+	public int getStart(int i) {
+		checkSegment(i);
+		return starts[i];
+	}
+
+	/**
+	 * Returns the position of the last node of the i-th segment in the route.
+	 */
+	public int getEnd(int i) {
+		checkSegment(i);
+		return (i + 1 < segmentCount) ? starts[i + 1] : route.getEdgeCount();
+	}
+
+	public GraphNode getStartNode(int i) {
+		checkSegment(i);
+		return route.getNode(starts[i]);
+	}
+
+	public GraphNode getEndNode(int i) {
+		return route.getNode(getEnd(i));
+	}
+
+	public double getBearing(int i) {
+		checkSegment(i);
+		return bearings[i];
+	}
+
+	public double getLength(int i) {
+		checkSegment(i);
+		return lengths[i];
+	}
+
+	public float getLevel(int i) {
+		checkSegment(i);
+		return route.getLevel(starts[i]);
+	}
+
+	public boolean isIndoor(int i) {
+		checkSegment(i);
+		return route.isIndoor(starts[i]);
+	}
+
+	public boolean isStairs(int i) {
+		checkSegment(i);
+		return route.isStairs(starts[i]);
+	}
+
+	public boolean isElevator(int i) {
+		checkSegment(i);
+		return route.isElevator(starts[i]);
+	}
+
+	/**
+	 * Returns the number of steps of the i-th segment, the sum of the steps of its edges or -1 if
+	 * one of them is not known.
+	 */
+	public int getSteps(int i) {
+		checkSegment(i);
+		return steps[i];
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Compact, int indexed view of a merged graph for the routing algorithms.
+ *
+ * The nodes are addressed by their index in the {@link NodeIndex} of the graph, the adjacency is
+ * stored in CSR form: the arcs of node i are firstArc[i] .. firstArc[i + 1] - 1, every arc has the
+ * index of its head node and of its edge. The arcs keep the order of the edge lists of the nodes.
+ * The structure is immutable, so it can be used from more threads.
+ *
+ * The arrays are buffers: built from the node objects they wrap heap arrays, loaded from a graph
+ * file they are views of its mapped sections, see {@link GraphFile#createRoutingGraph()}.
+ *
+ * For goal directed searches the nodes are also projected to a plane in metres. The lower bound
+ * of the remaining distance is the projected distance plus a cost per level difference, both
+ * scaled so that no arc is shorter than the estimate between its ends. This keeps the estimate
+ * admissible and consistent even if the edge lengths do not follow the coordinates exactly
+ * (e.g. for the edges of merged stair nodes).
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RoutingGraph {
+	private static final double EARTH_RADIUS = 6378137;  /* same as Graph.getDistance() */
+
+	private final int nodeCount;
+	private final IntBuffer nodeFlags;  /* GraphFile.NODE_INDOOR */
+	private final DoubleBuffer nodeX;  /* projected coordinates in metres */
+	private final DoubleBuffer nodeY;
+	private final FloatBuffer nodeLevel;
+	private double distanceScale;  /* factor of the projected distance in the estimate */
+	private double levelCost;  /* minimal cost of changing one level */
+
+	private final IntBuffer firstArc;
+	private final IntBuffer arcHead;
+	private final IntBuffer arcEdge;
+	private final ByteBuffer arcAttributes;  /* RoutingProfile attribute bits */
+	private final DoubleBuffer arcBearing;  /* initial bearing from the tail to the head in degrees */
+
+	private final DoubleBuffer edgeLength;
+	private final FloatBuffer edgeLevel;
+	private final IntBuffer edgeSteps;
+
+	/**
+	 * Builds the arrays from the nodes of the index and their edge lists.
+	 *
+	 * @param nodeIndex The index of the merged graph.
+	 * @param edges The edges of the graph, their positions become the edge indices.
+	 */
+	public RoutingGraph(NodeIndex nodeIndex, List<GraphEdge> edges) {
+		nodeCount = nodeIndex.size();
+		int[] flags = new int[nodeCount];
+		double[] x = new double[nodeCount];
+		double[] y = new double[nodeCount];
+		float[] levels = new float[nodeCount];
+
+		/* number the edges in list order */
+		IdentityHashMap<GraphEdge, Integer> edgeIds = new IdentityHashMap<>(edges.size());
+		double[] lengths = new double[edges.size()];
+		float[] edgeLevels = new float[edges.size()];
+		int[] steps = new int[edges.size()];
+		int[] edgeAttributes = new int[edges.size()];
+		int e = 0;
+		for (GraphEdge edge : edges) {
+			edgeIds.put(edge, e);
+			lengths[e] = edge.getLength();
+			edgeLevels[e] = edge.getLevel();
+			steps[e] = edge.getSteps();
+			edgeAttributes[e] = (edge.isStairs() ? RoutingProfile.STAIRS : 0)
+					| (edge.isElevator() ? RoutingProfile.ELEVATOR : 0)
+					| (edge.isIndoor() ? 0 : RoutingProfile.OUTDOOR_EDGE);
+			e++;
+		}
+
+		int arcCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			arcCount += nodeIndex.get(i).getLocEdges().size();
+		}
+
+		/* equirectangular projection around the mean latitude */
+		double meanLat = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			meanLat += nodeIndex.get(i).getLat() / nodeCount;
+		}
+		double metresPerDegree = Math.toRadians(EARTH_RADIUS);
+		double cosLat = Math.cos(Math.toRadians(meanLat));
+
+		int[] first = new int[nodeCount + 1];
+		int[] heads = new int[arcCount];
+		int[] arcEdges = new int[arcCount];
+		int a = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			GraphNode node = nodeIndex.get(i);
+			flags[i] = node.isIndoors() ? GraphFile.NODE_INDOOR : 0;
+			x[i] = node.getLon() * metresPerDegree * cosLat;
+			y[i] = node.getLat() * metresPerDegree;
+			levels[i] = node.getLevel();
+			first[i] = a;
+
+			for (GraphEdge edge : node.getLocEdges()) {
+				/* the nodes are compared by their IDs, like everywhere in the graph */
+				GraphNode other;
+				if (edge.getNode0().equals(node)) {
+					other = edge.getNode1();
+				} else if (edge.getNode1().equals(node)) {
+					other = edge.getNode0();
+				} else {
+					continue;
+				}
+
+				int head = nodeIndex.indexOf(other);
+				Integer id = edgeIds.get(edge);
+				if (head == NodeIndex.NOT_FOUND || head == i || id == null) {
+					continue;  /* loops are never part of a shortest path */
+				}
+				heads[a] = head;
+				arcEdges[a] = id;
+				a++;
+			}
+		}
+		first[nodeCount] = a;
+
+		byte[] attributes = new byte[a];
+		double[] bearings = new double[a];
+		for (int i = 0; i < nodeCount; i++) {
+			GraphNode tail = nodeIndex.get(i);
+			for (int arc = first[i]; arc < first[i + 1]; arc++) {
+				GraphNode head = nodeIndex.get(heads[arc]);
+				attributes[arc] = (byte)(edgeAttributes[arcEdges[arc]]
+						| (head.isIndoors() ? 0 : RoutingProfile.OUTDOOR_HEAD)
+						| (tail.isIndoors() ? 0 : RoutingProfile.OUTDOOR_TAIL));
+				bearings[arc] = getInitialBearing(tail.getLat(), tail.getLon(), head.getLat(), head.getLon());
+			}
+		}
+
+		nodeFlags = IntBuffer.wrap(flags);
+		nodeX = DoubleBuffer.wrap(x);
+		nodeY = DoubleBuffer.wrap(y);
+		nodeLevel = FloatBuffer.wrap(levels);
+		firstArc = IntBuffer.wrap(first);
+		arcHead = IntBuffer.wrap(Arrays.copyOf(heads, a));
+		arcEdge = IntBuffer.wrap(Arrays.copyOf(arcEdges, a));
+		arcAttributes = ByteBuffer.wrap(attributes);
+		arcBearing = DoubleBuffer.wrap(bearings);
+		edgeLength = DoubleBuffer.wrap(lengths);
+		edgeLevel = FloatBuffer.wrap(edgeLevels);
+		edgeSteps = IntBuffer.wrap(steps);
+
+		computeEstimateScales();
+	}
+
+	/**
+	 * Uses the sections of a graph file, see {@link GraphFile#createRoutingGraph()}. The buffers
+	 * are read with absolute gets only, so they can be shared.
+	 */
+	RoutingGraph(int nodeCount, IntBuffer nodeFlags, DoubleBuffer nodeX, DoubleBuffer nodeY, FloatBuffer nodeLevel,
+			double distanceScale, double levelCost, IntBuffer firstArc, IntBuffer arcHead, IntBuffer arcEdge,
+			ByteBuffer arcAttributes, DoubleBuffer arcBearing, DoubleBuffer edgeLength, FloatBuffer edgeLevel, IntBuffer edgeSteps) {
+		this.nodeCount = nodeCount;
+		this.nodeFlags = nodeFlags;
+		this.nodeX = nodeX;
+		this.nodeY = nodeY;
+		this.nodeLevel = nodeLevel;
+		this.distanceScale = distanceScale;
+		this.levelCost = levelCost;
+		this.firstArc = firstArc;
+		this.arcHead = arcHead;
+		this.arcEdge = arcEdge;
+		this.arcAttributes = arcAttributes;
+		this.arcBearing = arcBearing;
+		this.edgeLength = edgeLength;
+		this.edgeLevel = edgeLevel;
+		this.edgeSteps = edgeSteps;
+	}
+
+	/**
+	 * Chooses the largest factors for which the estimate is not larger than any arc.
+	 */
+	private void computeEstimateScales() {
+		distanceScale = 1;
+		for (int u = 0; u < nodeCount; u++) {
+			for (int a = firstArc.get(u); a < firstArc.get(u + 1); a++) {
+				double d = projectedDistance(u, arcHead.get(a));
+				if (d > 0 && getArcLength(a) < distanceScale * d) {
+					distanceScale = Math.max(0, getArcLength(a) / d);
+				}
+			}
+		}
+
+		/* the level cost uses what is left of the arcs changing levels */
+		levelCost = Double.POSITIVE_INFINITY;
+		for (int u = 0; u < nodeCount; u++) {
+			for (int a = firstArc.get(u); a < firstArc.get(u + 1); a++) {
+				float levels = Math.abs(nodeLevel.get(u) - nodeLevel.get(arcHead.get(a)));
+				if (levels > 0) {
+					double rest = getArcLength(a) - distanceScale * projectedDistance(u, arcHead.get(a));
+					levelCost = Math.min(levelCost, Math.max(0, rest) / levels);
+				}
+			}
+		}
+		if (levelCost == Double.POSITIVE_INFINITY) {
+			levelCost = 0;  /* there are no arcs between levels */
+		}
+	}
+
+	/**
+	 * Same as Graph.getInitialBearing().
+	 */
+	private static double getInitialBearing(double lat1, double lon1, double lat2, double lon2) {
+		double dLon = Math.toRadians(lon2 - lon1);
+		lat1 = Math.toRadians(lat1);
+		lat2 = Math.toRadians(lat2);
+
+		double y = Math.sin(dLon) * Math.cos(lat2);
+		double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLon);
+		double b = Math.toDegrees(Math.atan2(y, x));
+
+		return (b < 0) ? b + 360.0 : b;
+	}
+
+	private double projectedDistance(int u, int v) {
+		double dx = nodeX.get(u) - nodeX.get(v);
+		double dy = nodeY.get(u) - nodeY.get(v);
+
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/* projected coordinates, used by GraphFile to store them */
+
+	double getX(int node) {
+		return nodeX.get(node);
+	}
+
+	double getY(int node) {
+		return nodeY.get(node);
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getArcCount() {
+		return arcHead.capacity();
+	}
+
+	public int getEdgeCount() {
+		return edgeLength.capacity();
+	}
+
+	public int getFirstArc(int node) {
+		return firstArc.get(node);
+	}
+
+	public int getArcHead(int arc) {
+		return arcHead.get(arc);
+	}
+
+	public int getArcEdge(int arc) {
+		return arcEdge.get(arc);
+	}
+
+	public double getArcLength(int arc) {
+		return edgeLength.get(arcEdge.get(arc));
+	}
+
+	/**
+	 * Returns the arc of the same edge in the other direction, e.g. to follow a backward search
+	 * forwards.
+	 *
+	 * @param arc The index of the arc.
+	 * @return The index of the arc from the head of the arc to its tail, or -1 if the edge has no such arc.
+	 */
+	public int getReverseArc(int arc) {
+		int head = arcHead.get(arc);
+		int edge = arcEdge.get(arc);
+		for (int a = firstArc.get(head); a < firstArc.get(head + 1); a++) {
+			if (arcEdge.get(a) == edge) {
+				return a;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if an arc leaves a node.
+	 */
+	public boolean isArcOf(int arc, int node) {
+		return arc >= firstArc.get(node) && arc < firstArc.get(node + 1);
+	}
+
+	/**
+	 * Returns the initial bearing of an arc, from its tail towards its head.
+	 *
+	 * @param arc The index of the arc.
+	 * @return The bearing in degrees, 0 to 360 clockwise from north.
+	 */
+	public double getArcBearing(int arc) {
+		return arcBearing.get(arc);
+	}
+
+	/**
+	 * Returns the bearing between two nodes on the projected plane, which is accurate within a building.
+	 *
+	 * @param from The index of the first node.
+	 * @param to The index of the second node.
+	 * @return The bearing in degrees, 0 to 360 clockwise from north.
+	 */
+	public double getBearing(int from, int to) {
+		double b = Math.toDegrees(Math.atan2(nodeX.get(to) - nodeX.get(from), nodeY.get(to) - nodeY.get(from)));
+
+		return (b < 0) ? b + 360.0 : b;
+	}
+
+	public float getEdgeLevel(int edge) {
+		return edgeLevel.get(edge);
+	}
+
+	/**
+	 * Returns the number of steps of an edge: 0 if it is not a staircase, -1 if the number is not
+	 * known and -2 for an elevator.
+	 */
+	public int getEdgeSteps(int edge) {
+		return edgeSteps.get(edge);
+	}
+
+	public boolean isIndoor(int node) {
+		return (nodeFlags.get(node) & GraphFile.NODE_INDOOR) != 0;
+	}
+
+	public float getLevel(int node) {
+		return nodeLevel.get(node);
+	}
+
+	/**
+	 * Returns a lower bound of the length of any path between two nodes.
+	 *
+	 * @param from The index of the first node.
+	 * @param to The index of the second node.
+	 * @return The estimate in metres.
+	 */
+	public double estimate(int from, int to) {
+		return distanceScale * projectedDistance(from, to) + levelCost * Math.abs(nodeLevel.get(from) - nodeLevel.get(to));
+	}
+
+	public double getDistanceScale() {
+		return distanceScale;
+	}
+
+	public double getLevelCost() {
+		return levelCost;
+	}
+
+	/**
+	 * Returns the attributes of an arc, the bits of {@link RoutingProfile}.
+	 */
+	public int getArcAttributes(int arc) {
+		return arcAttributes.get(arc);
+	}
+
+	/**
+	 * Checks if an arc can be used with a profile.
+	 *
+	 * @param arc The index of the arc.
+	 * @param profile The profile, see {@link RoutingProfile}. For an arc used backwards, from its
+	 *        head to its tail, the profile must be reversed by {@link RoutingProfile#reverse(int)}.
+	 * @return true if the arc can be used.
+	 */
+	public boolean isAllowed(int arc, int profile) {
+		return (arcAttributes.get(arc) & profile) == 0;
+	}
+}
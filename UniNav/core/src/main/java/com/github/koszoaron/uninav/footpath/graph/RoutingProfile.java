@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * Routing profiles as bit masks.
+ *
+ * Every arc of the {@link RoutingGraph} has a mask of its attributes, computed when the graph is
+ * built, and a profile is the mask of the attributes it avoids. An arc can be used with a
+ * profile if the two masks have no common bit, so checking an arc is a single AND whatever
+ * the profile is, and new profiles can be added without changing the searches.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public final class RoutingProfile {
+	/** The arc is a staircase. */
+	public static final int STAIRS = 1;
+	/** The arc is an elevator. */
+	public static final int ELEVATOR = 2;
+	/** The edge of the arc is outdoors. */
+	public static final int OUTDOOR_EDGE = 4;
+	/** The head node of the arc is outdoors. */
+	public static final int OUTDOOR_HEAD = 8;
+	/** The tail node of the arc is outdoors, used when the arc is searched backwards. */
+	public static final int OUTDOOR_TAIL = 16;
+
+	/** Every arc can be used. */
+	public static final int ALL = 0;
+	public static final int NO_STAIRS = STAIRS;
+	public static final int NO_ELEVATOR = ELEVATOR;
+	/** Only indoor edges leading to indoor nodes. */
+	public static final int INDOOR_ONLY = OUTDOOR_EDGE | OUTDOOR_HEAD;
+	/** Same as {@link #NO_STAIRS}, the stairs are the only obstacles the maps have for wheelchairs. */
+	public static final int WHEELCHAIR = NO_STAIRS;
+
+	/**
+	 * Private constructor.
+	 */
+	private RoutingProfile() {}
+
+	/**
+	 * Returns the profile of the routing options of {@link Graph#getShortestPath(String, String, boolean, boolean, boolean)}.
+	 *
+	 * @param staircase Whether stairs are allowed.
+	 * @param elevator Whether elevators are allowed.
+	 * @param outside Whether outdoor edges and nodes are allowed.
+	 * @return The profile.
+	 */
+	public static int of(boolean staircase, boolean elevator, boolean outside) {
+		return (staircase ? 0 : STAIRS) | (elevator ? 0 : ELEVATOR) | (outside ? 0 : INDOOR_ONLY);
+	}
+
+	/**
+	 * Checks if the profile is one of the eight combinations of the routing options, the ones
+	 * the precomputed structures (e.g. {@link ContractionHierarchy}) are built for.
+	 */
+	public static boolean isStandard(int profile) {
+		return profile == of(allowsStairs(profile), allowsElevator(profile), allowsOutside(profile));
+	}
+
+	public static boolean allowsStairs(int profile) {
+		return (profile & STAIRS) == 0;
+	}
+
+	public static boolean allowsElevator(int profile) {
+		return (profile & ELEVATOR) == 0;
+	}
+
+	public static boolean allowsOutside(int profile) {
+		return (profile & INDOOR_ONLY) == 0;
+	}
+
+	/**
+	 * Returns the profile to check the arcs with when they are used in the opposite direction,
+	 * from their head to their tail, e.g. by backward searches.
+	 */
+	public static int reverse(int profile) {
+		return (profile & ~(OUTDOOR_HEAD | OUTDOOR_TAIL))
+				| (((profile & OUTDOOR_HEAD) != 0) ? OUTDOOR_TAIL : 0)
+				| (((profile & OUTDOOR_TAIL) != 0) ? OUTDOOR_HEAD : 0);
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * The algorithms {@link Graph} can use to find the shortest paths.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public enum SearchMode {
+	/** Dijkstra's algorithm, settles every node closer than the destination. */
+	DIJKSTRA,
+	/** A* with a geographic and level lower bound, settles mostly the nodes towards the destination. */
+	ASTAR,
+	/** Dijkstra from both ends, the two searches stop when they meet; about half the nodes of Dijkstra on long routes. */
+	BIDIRECTIONAL_DIJKSTRA,
+	/** A* from both ends with the averaged estimate of the two directions. */
+	BIDIRECTIONAL_ASTAR,
+	/** Bidirectional search in a {@link ContractionHierarchy}, needs preprocessing but settles only a few nodes. */
+	CONTRACTION_HIERARCHY,
+	/** Searches only the levels of the two ends and connects them through a {@link PortalOverlay} of the stairs and elevators. */
+	PORTAL_OVERLAY,
+	/** A* over the {@link ChainGraph}, which settles only the ends of the corridors, not the nodes along them. */
+	CHAIN_CONTRACTION
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+/**
+ * The cost of a shortest path query, to compare the search modes.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class SearchStatistics {
+	private final SearchMode mode;
+	private final boolean found;
+	private final int settledNodes;
+	private final long durationNanos;
+
+	/**
+	 * Creates the statistics of a query.
+	 *
+	 * @param mode The algorithm used.
+	 * @param found Whether a path was found.
+	 * @param settledNodes The number of nodes settled by the search.
+	 * @param durationNanos The running time of the search in nanoseconds.
+	 */
+	public SearchStatistics(SearchMode mode, boolean found, int settledNodes, long durationNanos) {
+		this.mode = mode;
+		this.found = found;
+		this.settledNodes = settledNodes;
+		this.durationNanos = durationNanos;
+	}
+
+	public SearchMode getMode() {
+		return mode;
+	}
+
+	public boolean isFound() {
+		return found;
+	}
+
+	public int getSettledNodes() {
+		return settledNodes;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public String toString() {
+		return mode + ": " + (found ? "found" : "not found") + ", " + settledNodes + " nodes settled in " + (durationNanos / 1000) + " us";
+	}
+}
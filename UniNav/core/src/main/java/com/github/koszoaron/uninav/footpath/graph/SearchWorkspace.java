@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.Arrays;
+
+/**
+ * Per node state of a shortest path search, reused between the searches.
+ *
+ * Instead of resetting the arrays before every search, the entries are stamped with the number
+ * of the search which wrote them; an entry with an older stamp counts as unreached. Starting a
+ * search is O(1), only the nodes touched by the search are written.
+ *
+ * A workspace must not be used by more searches at the same time.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class SearchWorkspace {
+	public static final int NO_NODE = -1;
+
+	private final double[] distances;
+	private final int[] parents;  /* previous node on the shortest path */
+	private final int[] parentArcs;  /* arc from the previous node */
+	private final int[] reached;  /* generation in which the node got a distance */
+	private final int[] settled;  /* generation in which the distance became final */
+	private int[] targets;  /* generation in which the node was marked as a target, created on demand */
+	private final IndexedMinHeap heap;
+	private int generation;
+	private int settledCount;
+
+	/**
+	 * Creates a workspace.
+	 *
+	 * @param nodeCount The number of nodes in the graph.
+	 */
+	public SearchWorkspace(int nodeCount) {
+		distances = new double[nodeCount];
+		parents = new int[nodeCount];
+		parentArcs = new int[nodeCount];
+		reached = new int[nodeCount];
+		settled = new int[nodeCount];
+		heap = new IndexedMinHeap(nodeCount);
+		generation = 0;
+	}
+
+	/**
+	 * Returns the number of nodes the workspace was created for.
+	 */
+	public int getCapacity() {
+		return distances.length;
+	}
+
+	/**
+	 * Starts a new search, forgetting the results of the previous one.
+	 */
+	public void begin() {
+		heap.clear();
+		settledCount = 0;
+		generation++;
+		if (generation == Integer.MAX_VALUE) {  /* the stamps would wrap around, reset them */
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			if (targets != null) {
+				Arrays.fill(targets, 0);
+			}
+			generation = 1;
+		}
+	}
+
+	public IndexedMinHeap getHeap() {
+		return heap;
+	}
+
+	public boolean isReached(int node) {
+		return reached[node] == generation;
+	}
+
+	public boolean isSettled(int node) {
+		return settled[node] == generation;
+	}
+
+	/**
+	 * Marks a node as a target of the current search.
+	 *
+	 * @param node The node.
+	 * @return false if the node was already marked.
+	 */
+	public boolean markTarget(int node) {
+		if (targets == null) {
+			targets = new int[distances.length];
+		}
+		if (targets[node] == generation) {
+			return false;
+		}
+		targets[node] = generation;
+		return true;
+	}
+
+	public boolean isTarget(int node) {
+		return targets != null && targets[node] == generation;
+	}
+
+	/**
+	 * Marks a node settled, its distance will not change any more.
+	 */
+	public void settle(int node) {
+		settled[node] = generation;
+		settledCount++;
+	}
+
+	/**
+	 * Returns the number of nodes settled by the current search.
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+
+	/**
+	 * Returns the distance of a node, infinity if it was not reached.
+	 */
+	public double getDistance(int node) {
+		return (reached[node] == generation) ? distances[node] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the previous node on the path, {@link #NO_NODE} for the source or an unreached node.
+	 */
+	public int getParent(int node) {
+		return (reached[node] == generation) ? parents[node] : NO_NODE;
+	}
+
+	/**
+	 * Returns the path of the search tree from its root to the given node.
+	 *
+	 * @param node A reached node.
+	 * @return The indices of the nodes of the path, starting with the root.
+	 */
+	public int[] getPath(int node) {
+		int length = 0;
+		for (int v = node; v != NO_NODE; v = getParent(v)) {
+			length++;
+		}
+
+		int[] path = new int[length];
+		for (int v = node; v != NO_NODE; v = getParent(v)) {
+			path[--length] = v;
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the arcs of the path of the search tree from its root to the given node, the arcs
+	 * the search reached the nodes through.
+	 *
+	 * @param node A reached node.
+	 * @return The indices of the arcs of the path, empty for the root.
+	 */
+	public int[] getPathArcs(int node) {
+		int length = 0;
+		for (int v = node; getParent(v) != NO_NODE; v = getParent(v)) {
+			length++;
+		}
+
+		int[] arcs = new int[length];
+		for (int v = node; getParent(v) != NO_NODE; v = getParent(v)) {
+			arcs[--length] = parentArcs[v];
+		}
+		return arcs;
+	}
+
+	/**
+	 * Returns the arc leading to the node on the path.
+	 */
+	public int getParentArc(int node) {
+		return parentArcs[node];
+	}
+
+	/**
+	 * Sets the distance and the previous node of a node.
+	 *
+	 * @param node The node.
+	 * @param distance The distance from the source.
+	 * @param parent The previous node, or {@link #NO_NODE}.
+	 * @param parentArc The arc from the previous node.
+	 */
+	public void update(int node, double distance, int parent, int parentArc) {
+		distances[node] = distance;
+		parents[node] = parent;
+		parentArcs[node] = parentArc;
+		reached[node] = generation;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free pool of search workspaces, so concurrent queries can reuse the arrays of the
+ * earlier ones instead of allocating them. A thread borrows a workspace for one query and
+ * releases it afterwards; when the pool is empty a new workspace is created.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class WorkspacePool {
+	private final int nodeCount;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<SearchWorkspace> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param nodeCount The number of nodes of the graph.
+	 * @param maxIdle The largest number of workspaces kept while they are not used.
+	 */
+	public WorkspacePool(int nodeCount, int maxIdle) {
+		this.nodeCount = nodeCount;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Takes a workspace from the pool, or creates one if the pool is empty.
+	 */
+	public SearchWorkspace borrow() {
+		SearchWorkspace ws = idle.poll();
+		if (ws == null) {
+			return new SearchWorkspace(nodeCount);
+		}
+		idleCount.decrementAndGet();
+		return ws;
+	}
+
+	/**
+	 * Returns a borrowed workspace to the pool, it must not be used by the caller any more.
+	 */
+	public void release(SearchWorkspace ws) {
+		if (ws.getCapacity() != nodeCount) {
+			throw new IllegalArgumentException("The workspace belongs to another graph");
+		}
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(ws);
+		} else {
+			idleCount.decrementAndGet();  /* dropped */
+		}
+	}
+
+	/**
+	 * Returns the number of workspaces waiting in the pool.
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the plateau alternatives of {@link AlternativeRouteFinder}: the first route is the
+ * shortest path, the others are loop free paths within the stretch limit, ordered by length.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class AlternativeRouteFinderTest {
+	private static final long BUDGET_MILLIS = 10000;  /* large enough to never run out */
+
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+	private PathFinder reference;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(14, 10, 3, 9);
+		graph.getRouteCache().setCapacity(0);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		reference = new PathFinder(routing);
+	}
+
+	@Test
+	public void testAlternatives() {
+		SearchWorkspace ws = reference.createWorkspace();
+		Random random = new Random(10);
+		int alternatives = 0;
+
+		for (int q = 0; q < 300; q++) {
+			int source = rooms[random.nextInt(rooms.length)];
+			int target = rooms[random.nextInt(rooms.length)];
+			int profile = TestMaps.PROFILES[q % TestMaps.PROFILES.length];
+
+			List<Route> routes = graph.getAlternativeRoutes(graph.getNodeIndex().get(source).getName(),
+					graph.getNodeIndex().get(target).getName(), profile, 3, BUDGET_MILLIS);
+			if (!reference.findPath(ws, source, target, profile)) {
+				assertTrue("route to an unreachable node", routes.isEmpty());
+				continue;
+			}
+
+			double best = ws.getDistance(target);
+			assertTrue(!routes.isEmpty() && routes.size() <= 3);
+			assertEquals("the first route is the shortest", best, routes.get(0).getCost(), TestMaps.EPSILON);
+
+			double previous = 0;
+			for (Route route : routes) {
+				int[] arcs = new int[route.getEdgeCount()];
+				boolean[] visited = new boolean[routing.getNodeCount()];
+				visited[source] = true;
+				for (int i = 0; i < arcs.length; i++) {
+					arcs[i] = route.getArc(i);
+					int head = routing.getArcHead(arcs[i]);
+					assertTrue("loop in an alternative", !visited[head]);
+					visited[head] = true;
+				}
+				double length = TestMaps.checkPath(routing, source, target, arcs, profile, null);
+				assertEquals(length, route.getCost(), TestMaps.EPSILON);
+				assertTrue("too long alternative", length <= AlternativeRouteFinder.DEFAULT_STRETCH * best + TestMaps.EPSILON);
+				assertTrue("the routes are not ordered", length >= previous - TestMaps.EPSILON);
+				previous = length;
+			}
+			alternatives += routes.size() - 1;
+		}
+
+		assertTrue("no alternatives were found", alternatives > 0);
+	}
+
+	@Test
+	public void testZeroBudgetReturnsShortestPath() {
+		SearchWorkspace ws = reference.createWorkspace();
+		int source = rooms[0];
+		int target = rooms[rooms.length - 1];
+		List<Route> routes = graph.getAlternativeRoutes(graph.getNodeIndex().get(source).getName(),
+				graph.getNodeIndex().get(target).getName(), RoutingProfile.ALL, 3, 0);
+
+		if (reference.findPath(ws, source, target, RoutingProfile.ALL)) {
+			assertEquals(ws.getDistance(target), routes.get(0).getCost(), TestMaps.EPSILON);
+		} else {
+			assertTrue(routes.isEmpty());
+		}
+	}
+}
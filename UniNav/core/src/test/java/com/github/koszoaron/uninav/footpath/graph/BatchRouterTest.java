@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs batches of more requests than a chunk on a thread pool and checks that every request
+ * gets exactly one result, with the distance of a Dijkstra search.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class BatchRouterTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(8, 6, 2, 23);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testResultsMatchDijkstra() {
+		/* few starts, so the chunks have large groups, and nodes outside the graph */
+		Random random = new Random(24);
+		GraphNode stranger = new GraphNode();
+		stranger.setId(Long.MAX_VALUE);
+		List<RouteRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			GraphNode from = graph.getNodeIndex().get(rooms[random.nextInt(5)]);
+			GraphNode to = graph.getNodeIndex().get(rooms[random.nextInt(rooms.length)]);
+			if (i % 1000 == 0) {
+				to = stranger;
+			} else if (i % 1000 == 1) {
+				from = null;
+			}
+			requests.add(new RouteRequest(from, to, TestMaps.PROFILES[random.nextInt(TestMaps.PROFILES.length)]));
+		}
+
+		for (boolean withPaths : new boolean[] {false, true}) {
+			ResultSink sink = new ResultSink();
+			BatchRouter router = graph.createBatchRouter(executor, 3);
+			assertEquals(requests.size(), router.route(requests.iterator(), withPaths, sink));
+			assertEquals(requests.size(), sink.distances.size());
+			assertEquals(requests.size(), sink.count.get());
+
+			PathFinder reference = new PathFinder(routing);
+			SearchWorkspace ws = reference.createWorkspace();
+			NodeIndex nodeIndex = graph.getNodeIndex();
+			for (RouteRequest request : requests) {
+				double distance = sink.distances.get(request);
+				Route route = sink.routes.get(request);
+				int source = (request.getFrom() != null) ? nodeIndex.indexOf(request.getFrom()) : NodeIndex.NOT_FOUND;
+				int target = nodeIndex.indexOf(request.getTo());
+				if (source == NodeIndex.NOT_FOUND || target == NodeIndex.NOT_FOUND
+						|| !reference.findPath(ws, source, target, request.getProfile())) {
+					assertEquals(Double.POSITIVE_INFINITY, distance, 0);
+					assertNull(route);
+					continue;
+				}
+
+				assertEquals(request.toString(), ws.getDistance(target), distance, TestMaps.EPSILON);
+				if (withPaths) {
+					assertNotNull(route);
+					assertSame(request.getFrom(), route.getNode(0));
+					assertSame(request.getTo(), route.getNode(route.getEdgeCount()));
+					assertEquals(distance, route.getLength(), TestMaps.EPSILON);
+				} else {
+					assertNull(route);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyBatch() {
+		ResultSink sink = new ResultSink();
+		assertEquals(0, graph.createBatchRouter(executor, 2).route(new ArrayList<RouteRequest>().iterator(), false, sink));
+		assertEquals(0, sink.count.get());
+	}
+
+	@Test
+	public void testFailingSinkStopsTheBatch() {
+		List<RouteRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			requests.add(new RouteRequest(graph.getNodeIndex().get(rooms[i % rooms.length]), graph.getNodeIndex().get(rooms[0]), RoutingProfile.ALL));
+		}
+
+		final AtomicInteger count = new AtomicInteger();
+		BatchRouter router = graph.createBatchRouter(executor, 3);
+		try {
+			router.route(requests.iterator(), false, new BatchRouter.Sink() {
+				@Override
+				public void onResult(RouteRequest request, double distance, Route route) {
+					if (count.incrementAndGet() == 100) {
+						throw new IllegalArgumentException("full");
+					}
+				}
+			});
+			fail("the failure of the sink was not reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		assertTrue("the batch went on after the failure", count.get() < requests.size());
+
+		/* the workers were released */
+		ResultSink sink = new ResultSink();
+		assertEquals(requests.size(), router.route(requests.iterator(), false, sink));
+		assertEquals(requests.size(), sink.count.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		graph.createBatchRouter(executor, 0);
+	}
+
+	/**
+	 * Stores the results by request and counts the calls.
+	 */
+	private static class ResultSink implements BatchRouter.Sink {
+		final Map<RouteRequest, Double> distances = new ConcurrentHashMap<>();
+		final Map<RouteRequest, Route> routes = new ConcurrentHashMap<>();
+		final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void onResult(RouteRequest request, double distance, Route route) {
+			count.incrementAndGet();
+			distances.put(request, distance);
+			if (route != null) {
+				routes.put(request, route);
+			}
+		}
+	}
+}
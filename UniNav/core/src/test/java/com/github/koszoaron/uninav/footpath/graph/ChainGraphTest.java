@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the paths unpacked from the super-edges of a {@link ChainGraph} against Dijkstra's algorithm.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ChainGraphTest {
+	private RoutingGraph routing;
+	private ChainGraph chains;
+	private PathFinder reference;
+
+	@Before
+	public void setUp() throws Exception {
+		Graph graph = TestMaps.createGraph(14, 10, 3, 4);
+		routing = graph.getRoutingGraph();
+		chains = new ChainGraph(routing);
+		reference = new PathFinder(routing);
+	}
+
+	@Test
+	public void testChainsAreContracted() {
+		assertTrue(chains.getCoreNodeCount() < routing.getNodeCount());
+	}
+
+	@Test
+	public void testPathsMatchDijkstra() {
+		SearchWorkspace ws = reference.createWorkspace();
+		SearchWorkspace chainWs = chains.createWorkspace();
+		Random random = new Random(5);
+
+		/* random nodes, most of them inside the chains */
+		for (int q = 0; q < 2000; q++) {
+			int source = random.nextInt(routing.getNodeCount());
+			int target = random.nextInt(routing.getNodeCount());
+			int profile = TestMaps.PROFILES[q % TestMaps.PROFILES.length];
+
+			int[] arcs = chains.findPath(chainWs, source, target, profile);
+			if (!reference.findPath(ws, source, target, profile)) {
+				assertNull("path to an unreachable node", arcs);
+				continue;
+			}
+
+			assertNotNull("no path from " + source + " to " + target, arcs);
+			double length = TestMaps.checkPath(routing, source, target, arcs, profile, null);
+			assertEquals("length of the path", ws.getDistance(target), length, TestMaps.EPSILON);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the arcs closed by the passage and node closures of {@link Closures}, that a change
+ * publishes a new copy of the bits, and that the searches avoid the closed arcs.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ClosuresTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private Closures closures;
+	private int node;
+	private int neighbour;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(8, 6, 2, 26);
+		routing = graph.getRoutingGraph();
+		closures = new Closures(routing);
+
+		/* a node with at least two neighbours */
+		node = 0;
+		while (routing.getFirstArc(node + 1) - routing.getFirstArc(node) < 2) {
+			node++;
+		}
+		neighbour = routing.getArcHead(routing.getFirstArc(node));
+	}
+
+	@Test
+	public void testPassage() {
+		assertTrue(closures.isEmpty());
+		int[] before = closures.getClosedArcs();
+		int[] copy = before.clone();
+
+		assertTrue(closures.setPassageClosed(node, neighbour, true));
+		assertFalse("closed twice", closures.setPassageClosed(neighbour, node, true));
+		assertFalse(closures.isEmpty());
+		assertTrue(closures.isPassageClosed(node, neighbour));
+		assertTrue(closures.isPassageClosed(neighbour, node));
+
+		/* the published bits are never changed */
+		assertArrayEquals(copy, before);
+		assertNotSame(before, closures.getClosedArcs());
+
+		for (int a = routing.getFirstArc(node); a < routing.getFirstArc(node + 1); a++) {
+			assertEquals(routing.getArcHead(a) == neighbour, closures.isClosed(a));
+		}
+		for (int a = routing.getFirstArc(neighbour); a < routing.getFirstArc(neighbour + 1); a++) {
+			assertEquals(routing.getArcHead(a) == node, closures.isClosed(a));
+		}
+		assertFalse(closures.isNodeClosed(node));
+
+		assertTrue(closures.setPassageClosed(node, neighbour, false));
+		assertTrue(closures.isEmpty());
+		for (int a = 0; a < routing.getArcCount(); a++) {
+			assertFalse(closures.isClosed(a));
+		}
+	}
+
+	@Test
+	public void testNotNeighbours() {
+		int other = node;
+		for (int a = routing.getFirstArc(neighbour); a < routing.getFirstArc(neighbour + 1); a++) {
+			if (!isNeighbour(node, routing.getArcHead(a)) && routing.getArcHead(a) != node) {
+				other = routing.getArcHead(a);
+			}
+		}
+		if (other != node) {
+			int[] before = closures.getClosedArcs();
+			assertFalse(closures.setPassageClosed(node, other, true));
+			assertSame(before, closures.getClosedArcs());
+		}
+	}
+
+	@Test
+	public void testNode() {
+		assertTrue(closures.setPassageClosed(node, neighbour, true));
+		int[] before = closures.getClosedArcs();
+		assertTrue(closures.setNodeClosed(node, true));
+		assertFalse(closures.setNodeClosed(node, true));
+		assertTrue(closures.isNodeClosed(node));
+		assertNotSame(before, closures.getClosedArcs());
+
+		/* the arcs from and to the node */
+		for (int u = 0; u < routing.getNodeCount(); u++) {
+			for (int a = routing.getFirstArc(u); a < routing.getFirstArc(u + 1); a++) {
+				assertEquals(u == node || routing.getArcHead(a) == node, closures.isClosed(a));
+			}
+		}
+
+		/* the passage stays closed when the node is opened */
+		assertTrue(closures.setNodeClosed(node, false));
+		assertFalse(closures.isNodeClosed(node));
+		for (int a = routing.getFirstArc(node); a < routing.getFirstArc(node + 1); a++) {
+			assertEquals(routing.getArcHead(a) == neighbour, closures.isClosed(a));
+		}
+
+		closures.clear();
+		assertTrue(closures.isEmpty());
+		assertFalse(closures.isPassageClosed(node, neighbour));
+		for (int a = 0; a < routing.getArcCount(); a++) {
+			assertFalse(closures.isClosed(a));
+		}
+	}
+
+	@Test
+	public void testSearchesAvoidClosures() {
+		int[] rooms = TestMaps.getRooms(graph);
+		PathFinder pathFinder = new PathFinder(routing);
+		pathFinder.setClosures(closures);
+		SearchWorkspace ws = pathFinder.createWorkspace();
+
+		int source = rooms[0];
+		int target = rooms[rooms.length - 1];
+		for (int round = 0; round < 5 && pathFinder.findPath(ws, source, target, RoutingProfile.ALL); round++) {
+			int[] arcs = ws.getPathArcs(target);
+			assertEquals(ws.getDistance(target), TestMaps.checkPath(routing, source, target, arcs, RoutingProfile.ALL, closures), TestMaps.EPSILON);
+
+			/* close a node in the middle of the path, or its only passage */
+			int middle = routing.getArcHead(arcs[arcs.length / 2]);
+			if (middle != target) {
+				closures.setNodeClosed(middle, true);
+			} else {
+				int tail = (arcs.length > 1) ? routing.getArcHead(arcs[arcs.length - 2]) : source;
+				closures.setPassageClosed(tail, target, true);
+			}
+		}
+	}
+
+	private boolean isNeighbour(int u, int v) {
+		for (int a = routing.getFirstArc(u); a < routing.getFirstArc(u + 1); a++) {
+			if (routing.getArcHead(a) == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
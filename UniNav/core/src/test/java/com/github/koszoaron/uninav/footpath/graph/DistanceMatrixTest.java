@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the distances, the nearest targets and the paths of a {@link DistanceMatrix} against
+ * one Dijkstra search per pair.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class DistanceMatrixTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+	private PathFinder reference;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(12, 8, 3, 19);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		reference = new PathFinder(routing);
+	}
+
+	@Test
+	public void testMatrixMatchesDijkstra() {
+		Random random = new Random(20);
+		int[] sources = new int[8];
+		int[] targets = new int[12];
+		List<GraphNode> sourceNodes = new ArrayList<>();
+		List<GraphNode> targetNodes = new ArrayList<>();
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = rooms[random.nextInt(rooms.length)];
+			sourceNodes.add(graph.getNodeIndex().get(sources[i]));
+		}
+		for (int j = 0; j < targets.length; j++) {
+			targets[j] = rooms[random.nextInt(rooms.length)];
+			targetNodes.add(graph.getNodeIndex().get(targets[j]));
+		}
+
+		SearchWorkspace ws = reference.createWorkspace();
+		for (int profile : TestMaps.PROFILES) {
+			DistanceMatrix matrix = graph.getDistanceMatrix(sourceNodes, targetNodes, profile, true);
+			assertEquals(sources.length, matrix.getSourceCount());
+			assertEquals(targets.length, matrix.getTargetCount());
+
+			for (int i = 0; i < sources.length; i++) {
+				double min = Double.POSITIVE_INFINITY;
+				for (int j = 0; j < targets.length; j++) {
+					double distance = reference.findPath(ws, sources[i], targets[j], profile)
+							? ws.getDistance(targets[j]) : Double.POSITIVE_INFINITY;
+					assertEquals("distance", distance, matrix.getDistance(i, j), TestMaps.EPSILON);
+					checkPath(matrix.getPath(i, j), sources[i], targets[j], distance, profile);
+					min = Math.min(min, distance);
+				}
+
+				int nearest = matrix.getNearest(i);
+				if (min == Double.POSITIVE_INFINITY) {
+					assertEquals(-1, nearest);
+				} else {
+					assertEquals("distance to the nearest target", min, matrix.getDistance(i, nearest), TestMaps.EPSILON);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNodesOutsideTheGraph() {
+		GraphNode stranger = new GraphNode();
+		stranger.setId(Long.MAX_VALUE);
+		List<GraphNode> sources = new ArrayList<>();
+		sources.add(stranger);
+		sources.add(graph.getNodeIndex().get(rooms[0]));
+		List<GraphNode> targets = new ArrayList<>();
+		targets.add(graph.getNodeIndex().get(rooms[0]));
+		targets.add(stranger);
+
+		DistanceMatrix matrix = graph.getDistanceMatrix(sources, targets, RoutingProfile.ALL, false);
+		assertEquals(Double.POSITIVE_INFINITY, matrix.getDistance(0, 0), 0);
+		assertEquals(Double.POSITIVE_INFINITY, matrix.getDistance(1, 1), 0);
+		assertEquals(0, matrix.getDistance(1, 0), 0);
+		assertEquals(-1, matrix.getNearest(0));
+		assertEquals(0, matrix.getNearest(1));
+		assertTrue(!matrix.hasPaths());
+	}
+
+	private void checkPath(Stack<GraphNode> path, int source, int target, double distance, int profile) {
+		if (distance == Double.POSITIVE_INFINITY) {
+			assertNull("path to an unreachable node", path);
+			return;
+		}
+		if (source == target) {
+			assertTrue(path.isEmpty());
+			return;
+		}
+
+		/* the source is at the top */
+		NodeIndex nodeIndex = graph.getNodeIndex();
+		double length = 0;
+		int u = nodeIndex.indexOf(path.pop());
+		assertEquals(source, u);
+		while (!path.isEmpty()) {
+			int v = nodeIndex.indexOf(path.pop());
+			length += TestMaps.getArcLength(routing, u, v, profile, null);
+			u = v;
+		}
+		assertEquals(target, u);
+		assertEquals("length of the path", distance, length, TestMaps.EPSILON);
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the batches of {@link EdgeWeights}, that a batch publishes a new copy of the factors,
+ * and that the searches and the graph use the factors.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class EdgeWeightsTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private EdgeWeights weights;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(8, 6, 2, 27);
+		routing = graph.getRoutingGraph();
+		weights = new EdgeWeights(routing, routing.getEdgeCount());
+	}
+
+	@Test
+	public void testApply() {
+		assertNull(weights.getFactors());
+		weights.set(3, 2.5f);
+		assertNull("the factors changed before apply()", weights.getFactors());
+		assertEquals(1, weights.getFactor(3), 0);
+
+		IntArray increased = new IntArray();
+		assertFalse(weights.apply(increased));
+		float[] first = weights.getFactors();
+		assertNotNull(first);
+		assertEquals(2.5f, first[3], 0);
+		assertEquals(1, first[4], 0);
+		assertEquals(1, increased.size);
+		assertEquals(3, increased.values[0]);
+
+		/* the published factors are never changed */
+		float[] copy = first.clone();
+		weights.set(4, 2);
+		weights.set(3, 1.5f);
+		increased = new IntArray();
+		assertTrue("a factor decreased", weights.apply(increased));
+		assertArrayEquals(copy, first, 0);
+		assertEquals(1.5f, weights.getFactor(3), 0);
+		assertEquals(2, weights.getFactor(4), 0);
+		assertArrayEquals(new int[] {4}, increased.toArray());
+
+		/* without congested edges there is no array */
+		weights.set(3, 1);
+		weights.set(4, 1);
+		weights.apply();
+		assertNull(weights.getFactors());
+		assertFalse("nothing to apply", weights.apply(null));
+	}
+
+	@Test
+	public void testInvalidFactors() {
+		float[] invalid = {0.5f, 0, -1, Float.NaN, Float.POSITIVE_INFINITY};
+		for (float factor : invalid) {
+			try {
+				weights.set(0, factor);
+				fail("factor " + factor);
+			} catch (IllegalArgumentException e) {
+				/* expected */
+			}
+		}
+		try {
+			weights.set(routing.getEdgeCount(), 2);
+			fail("edge out of the graph");
+		} catch (IndexOutOfBoundsException e) {
+			/* expected */
+		}
+		weights.apply();
+		assertNull(weights.getFactors());
+	}
+
+	@Test
+	public void testEnds() {
+		for (int u = 0; u < routing.getNodeCount(); u++) {
+			for (int a = routing.getFirstArc(u); a < routing.getFirstArc(u + 1); a++) {
+				int edge = routing.getArcEdge(a);
+				int v = routing.getArcHead(a);
+				assertTrue((weights.getEnd(edge, 0) == u && weights.getEnd(edge, 1) == v)
+						|| (weights.getEnd(edge, 0) == v && weights.getEnd(edge, 1) == u));
+			}
+		}
+	}
+
+	@Test
+	public void testSearchesUseTheFactors() {
+		int[] rooms = TestMaps.getRooms(graph);
+		String from = graph.getNodeIndex().get(rooms[0]).getName();
+		String to = graph.getNodeIndex().get(rooms[rooms.length - 1]).getName();
+		Route route = graph.getRoute(from, to, RoutingProfile.ALL);
+		assertTrue(route.getEdgeCount() >= 1);
+		assertEquals(route.getLength(), route.getCost(), 0);
+		assertFalse(graph.getEdgeWeights().isCongested(route));
+
+		/* the congested route is not cached any more, the new one costs at most the old one with the factor */
+		assertTrue(graph.setCongestion(route.getNode(0), route.getNode(1), 10));
+		graph.applyCongestion();
+		assertTrue(graph.getEdgeWeights().isCongested(route));
+		Route detour = graph.getRoute(from, to, RoutingProfile.ALL);
+		double congested = route.getLength() + 9 * route.getEdgeLength(0);
+		assertTrue(detour.getCost() <= congested + TestMaps.EPSILON);
+		assertTrue(detour.getLength() >= route.getLength() - TestMaps.EPSILON);
+
+		PathFinder pathFinder = new PathFinder(routing);
+		pathFinder.setEdgeWeights(graph.getEdgeWeights());
+		SearchWorkspace ws = pathFinder.createWorkspace();
+		assertTrue(pathFinder.findPath(ws, rooms[0], rooms[rooms.length - 1], RoutingProfile.ALL));
+		assertEquals(detour.getCost(), ws.getDistance(rooms[rooms.length - 1]), TestMaps.EPSILON);
+
+		/* removing the congestion brings the first route back */
+		assertTrue(graph.setCongestion(route.getNode(0), route.getNode(1), 1));
+		graph.applyCongestion();
+		assertEquals(route.getLength(), graph.getRoute(from, to, RoutingProfile.ALL).getCost(), TestMaps.EPSILON);
+	}
+}
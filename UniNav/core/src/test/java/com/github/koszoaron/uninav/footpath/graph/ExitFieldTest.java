@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the distances of an {@link ExitField} against Dijkstra searches to the exits, after
+ * creating it and after repairing it for blocked passages and closed exits.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class ExitFieldTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private List<GraphNode> exits;
+	private int[] exitIndices;
+	private boolean[] blocked;  /* by arc, the passages blocked in the field */
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(12, 10, 3, 11);
+		routing = graph.getRoutingGraph();
+		blocked = new boolean[routing.getArcCount()];
+
+		int[] rooms = TestMaps.getRooms(graph);
+		Random random = new Random(12);
+		exits = new ArrayList<>();
+		exitIndices = new int[6];
+		for (int i = 0; i < exitIndices.length; i++) {
+			exitIndices[i] = rooms[random.nextInt(rooms.length)];
+			exits.add(graph.getNodeIndex().get(exitIndices[i]));
+		}
+	}
+
+	@Test
+	public void testDistancesMatchDijkstra() {
+		for (int profile : TestMaps.PROFILES) {
+			ExitField field = graph.createExitField(exits, profile);
+			checkField(field, profile, new boolean[exitIndices.length]);
+		}
+	}
+
+	@Test
+	public void testRepairMatchesDijkstra() {
+		int profile = RoutingProfile.WHEELCHAIR;
+		ExitField field = graph.createExitField(exits, profile);
+		boolean[] closedExits = new boolean[exitIndices.length];
+		Random random = new Random(13);
+
+		for (int step = 0; step < 60; step++) {
+			if (random.nextInt(4) == 0) {
+				int exit = random.nextInt(field.getExitCount());
+				closedExits[exit] = field.isExitOpen(exit);
+				field.setExitOpen(exit, !closedExits[exit]);
+			} else {
+				int u = random.nextInt(routing.getNodeCount());
+				int degree = routing.getFirstArc(u + 1) - routing.getFirstArc(u);
+				if (degree == 0) {
+					continue;
+				}
+				int a = routing.getFirstArc(u) + random.nextInt(degree);
+				int v = routing.getArcHead(a);
+				boolean isBlocked = !blocked[a];
+				field.setBlocked(u, v, isBlocked);
+				TestMaps.setBlocked(routing, blocked, u, v, isBlocked);
+			}
+			checkField(field, profile, closedExits);
+		}
+	}
+
+	private void checkField(ExitField field, int profile, boolean[] closedExits) {
+		assertEquals(exitIndices.length, field.getExitCount());
+		for (int v = 0; v < routing.getNodeCount(); v++) {
+			double[] distances = TestMaps.getDistances(routing, v, profile, blocked);
+			double expected = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < exitIndices.length; i++) {
+				if (!closedExits[i]) {
+					expected = Math.min(expected, distances[exitIndices[i]]);
+				}
+			}
+
+			assertEquals("distance of node " + v, expected, field.getDistance(v), TestMaps.EPSILON);
+			int exit = field.getNearestExit(v);
+			if (expected == Double.POSITIVE_INFINITY) {
+				assertEquals(-1, exit);
+			} else {
+				assertTrue(field.isExitOpen(exit));
+				assertEquals("distance to the nearest exit", expected, distances[exitIndices[exit]], TestMaps.EPSILON);
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.koszoaron.uninav.pojo.Location;
+
+/**
+ * Writes a merged graph into a {@link GraphFile}, loads it back and compares the nodes, the edges,
+ * the walls, the {@link RoutingGraph} and the {@link NameIndex} of the two graphs.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class GraphFileTest {
+	private Graph graph;
+	private GraphFile file;
+	private Graph loaded;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(10, 8, 3, 16);
+		File f = File.createTempFile("graph", ".ung");
+		f.deleteOnExit();
+		GraphFile.write(graph, f);
+
+		file = GraphFile.map(f);
+		loaded = new Graph();
+		loaded.loadCompiledGraph(file);
+	}
+
+	@Test
+	public void testNodesAndEdges() {
+		NodeIndex nodes = graph.getNodeIndex();
+		NodeIndex read = loaded.getNodeIndex();
+		assertEquals(nodes.size(), read.size());
+		assertEquals(graph.getEdges().size(), loaded.getEdges().size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			GraphNode node = nodes.get(i);
+			GraphNode other = read.get(i);
+			assertEquals(node.getId(), other.getId());
+			assertEquals(node.getLat(), read.getLat(i), 0);
+			assertEquals(node.getLon(), read.getLon(i), 0);
+			assertEquals(node.getLevel(), read.getLevel(i), 0);
+			assertEquals(node.isIndoors(), read.isIndoors(i));
+			assertEquals(node.getName(), read.getName(i));
+			assertEquals(node.getName(), other.getName());
+			assertEquals(node.getMergeId(), other.getMergeId());
+			assertEquals(node.getSteps(), other.getSteps());
+			assertEquals("node with ID " + node.getId(), nodes.indexOf(node.getId()), read.indexOf(node.getId()));
+
+			List<GraphEdge> edges = node.getLocEdges();
+			List<GraphEdge> otherEdges = other.getLocEdges();
+			assertEquals(edges.size(), otherEdges.size());
+			for (int k = 0; k < edges.size(); k++) {
+				GraphEdge edge = edges.get(k);
+				GraphEdge otherEdge = otherEdges.get(k);
+				assertEquals(nodes.indexOf(edge.getNode0()), read.indexOf(otherEdge.getNode0()));
+				assertEquals(nodes.indexOf(edge.getNode1()), read.indexOf(otherEdge.getNode1()));
+				assertEquals(edge.getLength(), otherEdge.getLength(), 0);
+				assertEquals(edge.getCompDir(), otherEdge.getCompDir(), 0);
+				assertEquals(edge.isStairs(), otherEdge.isStairs());
+				assertEquals(edge.isElevator(), otherEdge.isElevator());
+				assertEquals(edge.isIndoor(), otherEdge.isIndoor());
+				assertEquals(edge.getSteps(), otherEdge.getSteps());
+			}
+		}
+		assertEquals(NodeIndex.NOT_FOUND, read.indexOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testObjectsAreCreatedOnce() {
+		GraphNode node = file.getNode(5);
+		assertSame(node, file.getNode(5));
+		assertSame(node, loaded.getNodeIndex().get(5));
+
+		/* the edges point to the same node objects */
+		for (GraphEdge edge : node.getLocEdges()) {
+			assertTrue(edge.getNode0() == node || edge.getNode1() == node);
+			GraphNode other = (edge.getNode0() == node) ? edge.getNode1() : edge.getNode0();
+			assertSame(other, loaded.getNodeIndex().getNode(other.getId()));
+		}
+	}
+
+	@Test
+	public void testRoutingGraph() {
+		RoutingGraph routing = graph.getRoutingGraph();
+		RoutingGraph read = loaded.getRoutingGraph();
+		assertEquals(routing.getNodeCount(), read.getNodeCount());
+		assertEquals(routing.getArcCount(), read.getArcCount());
+		assertEquals(routing.getEdgeCount(), read.getEdgeCount());
+		assertEquals(routing.getDistanceScale(), read.getDistanceScale(), 0);
+		assertEquals(routing.getLevelCost(), read.getLevelCost(), 0);
+
+		for (int u = 0; u <= routing.getNodeCount(); u++) {
+			assertEquals(routing.getFirstArc(u), read.getFirstArc(u));
+		}
+		for (int u = 0; u < routing.getNodeCount(); u++) {
+			assertEquals(routing.isIndoor(u), read.isIndoor(u));
+			assertEquals(routing.getLevel(u), read.getLevel(u), 0);
+			assertEquals(routing.getX(u), read.getX(u), 0);
+			assertEquals(routing.getY(u), read.getY(u), 0);
+		}
+		for (int a = 0; a < routing.getArcCount(); a++) {
+			assertEquals(routing.getArcHead(a), read.getArcHead(a));
+			assertEquals(routing.getArcEdge(a), read.getArcEdge(a));
+			assertEquals(routing.getArcAttributes(a), read.getArcAttributes(a));
+			assertEquals(routing.getArcLength(a), read.getArcLength(a), 0);
+			assertEquals(routing.getArcBearing(a), read.getArcBearing(a), 0);
+			assertEquals(routing.getEdgeLevel(routing.getArcEdge(a)), read.getEdgeLevel(read.getArcEdge(a)), 0);
+			assertEquals(routing.getEdgeSteps(routing.getArcEdge(a)), read.getEdgeSteps(read.getArcEdge(a)));
+		}
+	}
+
+	@Test
+	public void testNameIndex() {
+		assertEquals(graph.getRoomsList(), loaded.getRoomsList());
+
+		NameIndex names = graph.getNameIndex();
+		NameIndex read = loaded.getNameIndex();
+		String[] queries = {"r1-", "R2-3", "out", "r1-4-6", "r2-5-x", "ou1"};
+		for (String query : queries) {
+			assertEquals(names.countPrefix(query), read.countPrefix(query));
+			assertEquals(ids(names.findByPrefix(query, 2, 7)), ids(read.findByPrefix(query, 2, 7)));
+			assertEquals(ids(names.search(query, 10)), ids(read.search(query, 10)));
+		}
+		for (String name : graph.getRoomsList()) {
+			assertEquals(graph.getNodeFromName(name).getId(), loaded.getNodeFromName(name).getId());
+		}
+	}
+
+	@Test
+	public void testClosestNodes() {
+		Random random = new Random(17);
+		for (int q = 0; q < 50; q++) {
+			Location pos = new Location(46.2455 + random.nextDouble() * 0.0004, 20.146 + random.nextDouble() * 0.0005, 0);
+			float level = random.nextInt(3);
+			boolean indoor = random.nextBoolean();
+			GraphNode node = graph.getClosestNodeToLatLonPos(pos, level, indoor, 100);
+			GraphNode other = loaded.getClosestNodeToLatLonPos(pos, level, indoor, 100);
+			assertEquals((node != null) ? node.getId() : null, (other != null) ? other.getId() : null);
+		}
+	}
+
+	@Test
+	public void testWalls() {
+		List<Location[]> walls = graph.getWalls(0);
+		List<Location[]> read = loaded.getWalls(0);
+		assertEquals(walls.size(), read.size());
+		for (int w = 0; w < walls.size(); w++) {
+			assertEquals(walls.get(w).length, read.get(w).length);
+			for (int p = 0; p < walls.get(w).length; p++) {
+				assertEquals(walls.get(w)[p].getLatitude(), read.get(w)[p].getLatitude(), 0);
+				assertEquals(walls.get(w)[p].getLongitude(), read.get(w)[p].getLongitude(), 0);
+				assertEquals(walls.get(w)[p].getElevation(), read.get(w)[p].getElevation(), 0);
+			}
+		}
+	}
+
+	private static String ids(List<GraphNode> nodes) {
+		StringBuilder sb = new StringBuilder();
+		for (GraphNode node : nodes) {
+			sb.append(node.getId()).append(' ');
+		}
+		return sb.toString();
+	}
+}
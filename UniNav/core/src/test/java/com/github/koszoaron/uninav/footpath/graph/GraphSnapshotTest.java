@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the {@link WorkspacePool} and that the routes of a {@link GraphSnapshot} match the
+ * routes of its graph, from more threads and after the graph is rebuilt.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class GraphSnapshotTest {
+	private Graph graph;
+	private List<String> names;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(8, 6, 2, 25);
+		names = graph.getRoomsList();
+	}
+
+	@Test
+	public void testWorkspacePool() {
+		WorkspacePool pool = new WorkspacePool(10, 2);
+		SearchWorkspace a = pool.borrow();
+		SearchWorkspace b = pool.borrow();
+		SearchWorkspace c = pool.borrow();
+		assertNotSame(a, b);
+		assertEquals(10, a.getCapacity());
+		assertEquals(0, pool.getIdleCount());
+
+		pool.release(a);
+		pool.release(b);
+		pool.release(c);
+		assertEquals("only maxIdle workspaces are kept", 2, pool.getIdleCount());
+
+		SearchWorkspace d = pool.borrow();
+		assertTrue(d == a || d == b);
+		assertEquals(1, pool.getIdleCount());
+
+		try {
+			pool.release(new SearchWorkspace(11));
+			fail("workspace of another graph");
+		} catch (IllegalArgumentException e) {
+			assertEquals(1, pool.getIdleCount());
+		}
+	}
+
+	@Test
+	public void testRoutesMatchTheGraph() throws Exception {
+		final GraphSnapshot snapshot = graph.getSnapshot();
+		assertNotNull(snapshot);
+		assertSame(graph.getRoutingGraph(), snapshot.getGraph());
+		assertEquals(names, snapshot.getRoomsList());
+		assertNull(snapshot.getRoute("no such room", names.get(0), RoutingProfile.ALL));
+
+		/* the same queries from more threads at once */
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						StringBuilder sb = new StringBuilder();
+						for (int profile : TestMaps.PROFILES) {
+							for (int k = 1; k < names.size(); k += 2) {
+								sb.append(describe(snapshot.getRoute(names.get(0), names.get(k), profile))).append('\n');
+							}
+						}
+						return sb.toString();
+					}
+				}));
+			}
+
+			StringBuilder expected = new StringBuilder();
+			for (int profile : TestMaps.PROFILES) {
+				for (int k = 1; k < names.size(); k += 2) {
+					expected.append(describe(graph.getRoute(names.get(0), names.get(k), profile))).append('\n');
+				}
+			}
+			for (Future<String> result : results) {
+				assertEquals(expected.toString(), result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(snapshot.getWorkspacePool().getIdleCount() >= 1);
+	}
+
+	@Test
+	public void testOldSnapshotAfterRebuild() throws Exception {
+		GraphSnapshot old = graph.getSnapshot();
+		GraphNode node = old.getNodeFromName(names.get(0));
+		Route before = old.getRoute(names.get(0), names.get(names.size() - 1), RoutingProfile.ALL);
+
+		File f = File.createTempFile("graph", ".ung");
+		f.deleteOnExit();
+		GraphFile.write(graph, f);
+		graph.loadCompiledGraph(f);
+
+		GraphSnapshot current = graph.getSnapshot();
+		assertNotSame(old, current);
+		assertNotSame(old.getGraph(), current.getGraph());
+
+		/* the old snapshot still answers with the old nodes */
+		assertSame(node, old.getNodeFromName(names.get(0)));
+		Route after = old.getRoute(names.get(0), names.get(names.size() - 1), RoutingProfile.ALL);
+		assertEquals(describe(before), describe(after));
+		assertEquals(describe(before), describe(current.getRoute(names.get(0), names.get(names.size() - 1), RoutingProfile.ALL)));
+		assertSame(node, after.getNode(0));
+	}
+
+	/**
+	 * Returns the IDs of the nodes and the length of a route.
+	 */
+	private static String describe(Route route) {
+		if (route == null) {
+			return "none";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < route.getNodeCount(); i++) {
+			sb.append(route.getNode(i).getId()).append(' ');
+		}
+		return sb.append(Math.round(route.getLength() * 1000)).toString();
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Walks along the paths of an {@link IncrementalRouter} (D* Lite) while blocking passages ahead,
+ * and checks every repaired path against a Dijkstra search with the same passages closed.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class IncrementalRouterTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(12, 10, 3, 14);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+	}
+
+	@Test
+	public void testWalkMatchesDijkstra() {
+		Random random = new Random(15);
+
+		for (int trial = 0; trial < 40; trial++) {
+			int target = rooms[random.nextInt(rooms.length)];
+			int profile = TestMaps.PROFILES[trial % TestMaps.PROFILES.length];
+			IncrementalRouter router = graph.createIncrementalRouter(graph.getNodeIndex().get(target).getName(), profile);
+			boolean[] blocked = new boolean[routing.getArcCount()];
+
+			int position = rooms[random.nextInt(rooms.length)];
+			for (int step = 0; step < 15; step++) {
+				int[] path = router.findPath(position);
+				double distance = TestMaps.getDistances(routing, position, profile, blocked)[target];
+				if (distance == Double.POSITIVE_INFINITY) {
+					assertNull("path to an unreachable node", path);
+					break;
+				}
+
+				assertNotNull("no path from " + position + " to " + target, path);
+				assertEquals(position, path[0]);
+				assertEquals(target, path[path.length - 1]);
+				double length = 0;
+				for (int i = 1; i < path.length; i++) {
+					length += TestMaps.getArcLength(routing, path[i - 1], path[i], profile, blocked);
+				}
+				assertEquals("length of the path", distance, length, TestMaps.EPSILON);
+				if (path.length < 3) {
+					break;
+				}
+
+				/* block a passage ahead of the walker now and then, then take a step */
+				if (random.nextInt(3) == 0) {
+					int k = 1 + random.nextInt(path.length - 2);
+					router.setBlocked(path[k], path[k + 1], true);
+					TestMaps.setBlocked(routing, blocked, path[k], path[k + 1], true);
+				}
+				position = path[1];
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the reachable nodes and the boundary edges of an {@link Isochrone} against a Dijkstra
+ * search of the whole graph.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class IsochroneTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+	private PathFinder pathFinder;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(10, 6, 3, 21);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		pathFinder = new PathFinder(routing);
+	}
+
+	@Test
+	public void testReachableMatchesDijkstra() {
+		SearchWorkspace ws = pathFinder.createWorkspace();
+		SearchWorkspace reference = pathFinder.createWorkspace();
+		Isochrone result = new Isochrone(graph.getNodeIndex());
+		double[] maxDistances = {0, 15, 40, 120};
+
+		for (int profile : TestMaps.PROFILES) {
+			for (int k = 0; k < rooms.length; k += 7) {
+				pathFinder.findPaths(reference, rooms[k], profile);
+				for (double maxDistance : maxDistances) {
+					pathFinder.findReachable(ws, rooms[k], maxDistance, profile, result);
+					checkIsochrone(result, reference, rooms[k], maxDistance, profile, 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGraphQueries() {
+		String name = graph.getRoomsList().get(0);
+		Isochrone result = graph.getReachable(name, 50, RoutingProfile.ALL);
+		assertEquals(graph.getNodeFromName(name), result.getNode(0));
+		assertEquals(0, result.getDistance(0), 0);
+		assertNull(graph.getReachable("no such room", 50, RoutingProfile.ALL));
+
+		Isochrone[] all = graph.getReachableFromRooms(50, RoutingProfile.ALL);
+		assertEquals(rooms.length, all.length);
+		assertEquals(result.getNodeCount(), all[0].getNodeCount());
+		assertEquals(result.getBoundaryCount(), all[0].getBoundaryCount());
+	}
+
+	@Test
+	public void testCongestedBoundary() {
+		/* with every factor 2 the costs are twice the lengths, the remaining parts are still in metres */
+		EdgeWeights weights = new EdgeWeights(routing, routing.getEdgeCount());
+		for (int edge = 0; edge < routing.getEdgeCount(); edge++) {
+			weights.set(edge, 2);
+		}
+		weights.apply();
+		pathFinder.setEdgeWeights(weights);
+
+		SearchWorkspace ws = pathFinder.createWorkspace();
+		SearchWorkspace reference = new PathFinder(routing).createWorkspace();
+		Isochrone result = new Isochrone(graph.getNodeIndex());
+		for (int k = 0; k < rooms.length; k += 7) {
+			new PathFinder(routing).findPaths(reference, rooms[k], RoutingProfile.ALL);
+			pathFinder.findReachable(ws, rooms[k], 80, RoutingProfile.ALL, result);
+			checkIsochrone(result, reference, rooms[k], 80, RoutingProfile.ALL, 2);
+		}
+	}
+
+	/**
+	 * Compares an isochrone with the distances of a search without a limit.
+	 *
+	 * @param factor The congestion factor of every edge, the reference distances are plain lengths.
+	 */
+	private void checkIsochrone(Isochrone result, SearchWorkspace reference, int source, double maxDistance, int profile, double factor) {
+		assertEquals(source, result.getSource());
+		assertEquals(maxDistance, result.getMaxDistance(), 0);
+		assertEquals(source, result.getNodeIndex(0));
+
+		boolean[] reachable = new boolean[routing.getNodeCount()];
+		int expectedCount = 0;
+		for (int u = 0; u < routing.getNodeCount(); u++) {
+			if (factor * reference.getDistance(u) <= maxDistance - TestMaps.EPSILON) {
+				expectedCount++;
+			}
+		}
+
+		double last = 0;
+		for (int i = 0; i < result.getNodeCount(); i++) {
+			int u = result.getNodeIndex(i);
+			assertTrue("node " + u + " is listed twice", !reachable[u]);
+			reachable[u] = true;
+			assertEquals("distance of node " + u, factor * reference.getDistance(u), result.getDistance(i), TestMaps.EPSILON);
+			assertTrue(result.getDistance(i) <= maxDistance);
+			assertTrue("the distances are not sorted", result.getDistance(i) >= last);
+			last = result.getDistance(i);
+		}
+		/* the nodes just at the limit may be on either side of it */
+		assertTrue(result.getNodeCount() >= expectedCount);
+
+		int expectedBoundary = 0;
+		for (int i = 0; i < result.getNodeCount(); i++) {
+			int u = result.getNodeIndex(i);
+			for (int a = routing.getFirstArc(u); a < routing.getFirstArc(u + 1); a++) {
+				if (routing.isAllowed(a, profile) && !reachable[routing.getArcHead(a)]) {
+					expectedBoundary++;
+				}
+			}
+		}
+		assertEquals(expectedBoundary, result.getBoundaryCount());
+
+		for (int i = 0; i < result.getBoundaryCount(); i++) {
+			int tail = result.getBoundaryTail(i);
+			int head = result.getBoundaryHead(i);
+			assertTrue("the tail of a boundary edge is reachable", reachable[tail]);
+			assertTrue("the head of a boundary edge is not reachable", !reachable[head]);
+			assertTrue(factor * reference.getDistance(head) >= maxDistance - TestMaps.EPSILON);
+
+			double remaining = (maxDistance - factor * reference.getDistance(tail)) / factor;
+			assertEquals("remaining metres", remaining, result.getBoundaryRemaining(i), TestMaps.EPSILON);
+			assertTrue(remaining < getEdgeLength(tail, head, result.getBoundaryEdge(i)) + TestMaps.EPSILON);
+		}
+	}
+
+	private double getEdgeLength(int tail, int head, int edge) {
+		for (int a = routing.getFirstArc(tail); a < routing.getFirstArc(tail + 1); a++) {
+			if (routing.getArcHead(a) == head && routing.getArcEdge(a) == edge) {
+				return routing.getArcLength(a);
+			}
+		}
+		throw new AssertionError("edge " + edge + " does not join " + tail + " and " + head);
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the exact, prefix and typo tolerant lookups of a {@link NameIndex}.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class NameIndexTest {
+
+	@Test
+	public void testGetNode() {
+		NameIndex index = createIndex("Lab 2", "Office", "Lab 1", "Kitchen");
+		assertEquals("Lab 1", index.getNode("Lab 1").getName());
+		assertEquals("Office", index.getNode("Office").getName());
+		assertNull(index.getNode("lab 1"));
+		assertNull(index.getNode("Lab"));
+		assertEquals(Arrays.asList("Kitchen", "Lab 1", "Lab 2", "Office"), index.getNames());
+	}
+
+	@Test
+	public void testPrefixPaging() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			names.add(String.format("Room %02d", 24 - i));
+		}
+		names.add("Rest room");
+		names.add("Lab");
+		names.add("\u00c9b\u00e9dl\u0151");
+		NameIndex index = createIndex(names.toArray(new String[names.size()]));
+
+		assertEquals(25, index.countPrefix("room"));
+		assertEquals(25, index.countPrefix("  ROOM"));
+		assertEquals(0, index.countPrefix("rooms"));
+		assertEquals(1, index.countPrefix("ebed"));
+
+		/* the pages follow each other in the order of the normalized names */
+		List<String> paged = new ArrayList<>();
+		for (int offset = 0; offset < 30; offset += 10) {
+			List<GraphNode> page = index.findByPrefix("Room", offset, 10);
+			assertEquals(Math.min(10, 25 - offset), page.size());
+			for (GraphNode node : page) {
+				paged.add(node.getName());
+			}
+		}
+		for (int i = 0; i < 25; i++) {
+			assertEquals(String.format("Room %02d", i), paged.get(i));
+		}
+		assertTrue(index.findByPrefix("Room", 30, 10).isEmpty());
+	}
+
+	@Test
+	public void testRanking() {
+		NameIndex index = createIndex("Old kitchen", "Kitchenette", "Kitchn", "Library", "Kitchen 2", "Kitchen", "Kit");
+
+		/* no edits first, the names starting with the query first, then the shorter names */
+		assertEquals(Arrays.asList("Kitchen", "Kitchen 2", "Kitchenette", "Old kitchen", "Kitchn"), names(index.search("kitchen", 10)));
+		assertEquals(Arrays.asList("Kitchen", "Kitchen 2", "Kitchenette"), names(index.search("KITCHEN", 3)));
+
+		/* one edit for all of them, none starts with the query */
+		assertEquals(Arrays.asList("Kitchn", "Kitchen", "Kitchen 2", "Kitchenette", "Old kitchen"), names(index.search("kitcen", 10)));
+
+		/* short queries are prefixes */
+		assertEquals(Arrays.asList("Kit", "Kitchen", "Kitchen 2"), names(index.search("ki", 3)));
+	}
+
+	@Test
+	public void testRepeatedTrigrams() {
+		/* the query has 10 inner trigrams but only 3 distinct ones, a name containing it shares only those */
+		NameIndex index = createIndex("Labor xabcabcabcabcx", "Office", "Labor xabcx");
+		assertEquals(Arrays.asList("Labor xabcabcabcabcx"), names(index.search("abcabcabcabc", 5)));
+		assertEquals(Arrays.asList("Labor xabcabcabcabcx"), names(index.search("abcabcabdabc", 5)));
+	}
+
+	private static NameIndex createIndex(String... names) {
+		List<GraphNode> nodes = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			GraphNode node = new GraphNode();
+			node.setId(i + 1);
+			node.setName(names[i]);
+			nodes.add(node);
+		}
+		final NodeIndex nodeIndex = new NodeIndex(nodes);
+
+		Integer[] order = new Integer[names.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return nodeIndex.getName(a).compareTo(nodeIndex.getName(b));
+			}
+		});
+		int[] nameOrder = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			nameOrder[i] = order[i];
+		}
+
+		return new NameIndex(nodeIndex, nameOrder);
+	}
+
+	private static List<String> names(List<GraphNode> nodes) {
+		List<String> names = new ArrayList<>();
+		for (GraphNode node : nodes) {
+			names.add(node.getName());
+		}
+		return names;
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the distances and the paths decoded from the slots of a {@link RoomTable} against Dijkstra's algorithm.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RoomTableTest {
+	private RoutingGraph routing;
+	private int[] rooms;
+	private RoomTable table;
+	private PathFinder reference;
+
+	@Before
+	public void setUp() throws Exception {
+		Graph graph = TestMaps.createGraph(12, 10, 3, 6);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		table = RoomTable.compute(routing, rooms, 2);
+		reference = new PathFinder(routing);
+	}
+
+	@Test
+	public void testRooms() {
+		assertEquals(rooms.length, table.getRoomCount());
+		boolean[] isRoom = new boolean[routing.getNodeCount()];
+		for (int room : rooms) {
+			isRoom[room] = true;
+		}
+		for (int v = 0; v < routing.getNodeCount(); v++) {
+			assertEquals(isRoom[v], table.isRoom(v));
+		}
+	}
+
+	@Test
+	public void testPathsMatchDijkstra() {
+		SearchWorkspace ws = reference.createWorkspace();
+		Random random = new Random(7);
+
+		for (int q = 0; q < 1000; q++) {
+			int source = rooms[random.nextInt(rooms.length)];
+			int target = rooms[random.nextInt(rooms.length)];
+			boolean staircase = random.nextBoolean();
+			boolean elevator = random.nextBoolean();
+			boolean outside = random.nextBoolean();
+			int profile = RoutingProfile.of(staircase, elevator, outside);
+
+			int[] arcs = table.getPath(source, target, staircase, elevator, outside);
+			if (!reference.findPath(ws, source, target, profile)) {
+				assertNull("path to an unreachable room", arcs);
+				assertEquals(Double.POSITIVE_INFINITY, table.getDistance(source, target, staircase, elevator, outside), 0);
+				continue;
+			}
+
+			assertNotNull("no path from " + source + " to " + target, arcs);
+			double length = TestMaps.checkPath(routing, source, target, arcs, profile, null);
+			assertEquals("length of the path", ws.getDistance(target), length, TestMaps.EPSILON);
+
+			/* the distances are stored as floats */
+			double distance = table.getDistance(source, target, staircase, elevator, outside);
+			assertEquals("distance", ws.getDistance(target), distance, 1e-6 * Math.max(1, distance));
+		}
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		File file = File.createTempFile("rooms", ".rt");
+		try {
+			table.write(file);
+			RoomTable read = RoomTable.read(file, routing);
+			assertEquals(table.getRoomCount(), read.getRoomCount());
+			assertEquals(table.getTableCount(), read.getTableCount());
+
+			Random random = new Random(8);
+			for (int q = 0; q < 500; q++) {
+				int source = rooms[random.nextInt(rooms.length)];
+				int target = rooms[random.nextInt(rooms.length)];
+				int p = random.nextInt(8);
+				boolean staircase = (p & 1) != 0;
+				boolean elevator = (p & 2) != 0;
+				boolean outside = (p & 4) != 0;
+
+				assertArrayEquals(table.getPath(source, target, staircase, elevator, outside),
+						read.getPath(source, target, staircase, elevator, outside));
+				assertEquals(table.getDistance(source, target, staircase, elevator, outside),
+						read.getDistance(source, target, staircase, elevator, outside), 0);
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Test
+	public void testPathToItself() {
+		int room = rooms[0];
+		assertEquals(0, table.getPath(room, room, true, true, true).length);
+		assertEquals(0, table.getDistance(room, room, true, true, true), 0);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the eviction order, the versions and the invalidation of a {@link RouteCache}, and that
+ * the graph drops the cached routes crossing a new closure.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RouteCacheTest {
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(8, 6, 2, 18);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		RouteCache cache = new RouteCache(2);
+		int version = cache.getVersion();
+		cache.put(1, RouteCache.NO_PATH, version);
+		cache.put(2, RouteCache.NO_PATH, version);
+		assertSame(RouteCache.NO_PATH, cache.get(1));
+		cache.put(3, RouteCache.NO_PATH, version);
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get(2));
+		assertNotNull(cache.get(1));
+		assertNotNull(cache.get(3));
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		/* 1 was used before 3 */
+		cache.setCapacity(1);
+		assertNull(cache.get(1));
+		assertNotNull(cache.get(3));
+
+		cache.setCapacity(0);
+		cache.put(4, RouteCache.NO_PATH, cache.getVersion());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testOlderSearchesAreNotStored() {
+		RouteCache cache = new RouteCache(4);
+		int version = cache.getVersion();
+		cache.put(1, RouteCache.NO_PATH, version);
+		cache.invalidate();
+
+		assertEquals(0, cache.size());
+		cache.put(2, RouteCache.NO_PATH, version);
+		assertNull(cache.get(2));
+		cache.put(2, RouteCache.NO_PATH, cache.getVersion());
+		assertNotNull(cache.get(2));
+	}
+
+	@Test
+	public void testGraphCachesRoutes() {
+		String from = graph.getNodeIndex().get(rooms[0]).getName();
+		String to = graph.getNodeIndex().get(rooms[rooms.length - 1]).getName();
+		RouteCache cache = graph.getRouteCache();
+		Route route = graph.getRoute(from, to, RoutingProfile.ALL);
+		assertTrue(route.getEdgeCount() >= 1);
+		assertSame(route, graph.getRoute(from, to, RoutingProfile.ALL));
+		assertEquals(1, cache.getHits());
+
+		/* other profiles are other queries */
+		graph.getRoute(from, to, RoutingProfile.WHEELCHAIR);
+		assertEquals(2, cache.size());
+
+		cache.invalidate();
+		Route again = graph.getRoute(from, to, RoutingProfile.ALL);
+		assertNotSame(route, again);
+		assertEquals(route.getLength(), again.getLength(), 0);
+	}
+
+	@Test
+	public void testInvalidateNodeAndPassage() {
+		Route first = findRoute(rooms[0], rooms[rooms.length - 1]);
+		Route second = findRoute(rooms[1], rooms[rooms.length - 2]);
+		assertTrue(first.getEdgeCount() >= 2 && second.getEdgeCount() >= 2);
+
+		RouteCache cache = new RouteCache(4);
+		cache.put(1, first, cache.getVersion());
+		cache.put(2, second, cache.getVersion());
+
+		/* a passage of the first route, in the other direction */
+		int u = first.getNodeIndex(1);
+		int v = first.getNodeIndex(2);
+		int expected = crosses(second, u, v) ? 2 : 1;
+		assertEquals(expected, cache.invalidatePassage(v, u));
+		assertNull(cache.get(1));
+
+		if (expected == 1) {
+			int node = second.getNodeIndex(second.getNodeCount() / 2);
+			assertEquals(1, cache.invalidateNode(node));
+			assertNull(cache.get(2));
+		}
+	}
+
+	@Test
+	public void testClosureRemovesCachedRoutes() {
+		int source = rooms[0];
+		int target = rooms[rooms.length - 1];
+		String from = graph.getNodeIndex().get(source).getName();
+		String to = graph.getNodeIndex().get(target).getName();
+		Route route = graph.getRoute(from, to, RoutingProfile.ALL);
+		assertTrue(route.getEdgeCount() >= 1);
+		assertSame(route, graph.getRoute(from, to, RoutingProfile.ALL));
+
+		int u = route.getNodeIndex(0);
+		int v = route.getNodeIndex(1);
+		graph.setPassageClosed(route.getNode(0), route.getNode(1), true);
+		Route detour = graph.getRoute(from, to, RoutingProfile.ALL);
+		if (detour != null) {
+			assertTrue("the cached route was used", !crosses(detour, u, v));
+		}
+	}
+
+	private Route findRoute(int source, int target) {
+		PathFinder pathFinder = new PathFinder(routing);
+		SearchWorkspace ws = pathFinder.createWorkspace();
+		assertTrue(pathFinder.findPath(ws, source, target, RoutingProfile.ALL));
+		return Route.create(routing, graph.getNodeIndex(), source, ws.getPathArcs(target), null);
+	}
+
+	private static boolean crosses(Route route, int u, int v) {
+		for (int i = 1; i < route.getNodeCount(); i++) {
+			int a = route.getNodeIndex(i - 1);
+			int b = route.getNodeIndex(i);
+			if ((a == u && b == v) || (a == v && b == u)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.koszoaron.uninav.footpath.core.BestFitPositioner;
+
+/**
+ * Checks that the segments of a {@link RouteSimplifier} cover their route and keep its length,
+ * its levels and its steps.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class RouteSimplifierTest {
+	private Graph graph;
+	private int[] rooms;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(10, 6, 3, 22);
+		rooms = TestMaps.getRooms(graph);
+	}
+
+	@Test
+	public void testSegmentsCoverTheRoute() {
+		RouteSimplifier simplifier = new RouteSimplifier();
+		assertNull(simplifier.getRoute());
+
+		int checked = 0;
+		for (int k = 1; k < rooms.length; k += 3) {
+			Route route = getRoute(rooms[0], rooms[k]);
+			if (route == null) {
+				continue;
+			}
+			checked++;
+
+			simplifier.simplify(route, RouteSimplifier.DEFAULT_TOLERANCE);
+			assertSame(route, simplifier.getRoute());
+			checkSegments(simplifier, route, RouteSimplifier.DEFAULT_TOLERANCE);
+
+			/* a larger tolerance only merges more */
+			int count = simplifier.getSegmentCount();
+			simplifier.simplify(route, 90);
+			checkSegments(simplifier, route, 90);
+			assertTrue(simplifier.getSegmentCount() <= count);
+
+			/* without a tolerance only the straight edges are merged */
+			simplifier.simplify(route, 0);
+			checkSegments(simplifier, route, 0);
+			assertTrue(simplifier.getSegmentCount() >= count);
+		}
+		assertTrue(checked > 0);
+	}
+
+	@Test
+	public void testEmptyRoute() {
+		Route route = getRoute(rooms[0], rooms[0]);
+		RouteSimplifier simplifier = new RouteSimplifier();
+		simplifier.simplify(route, RouteSimplifier.DEFAULT_TOLERANCE);
+		assertEquals(0, simplifier.getSegmentCount());
+		try {
+			simplifier.getLength(0);
+			fail("segment of an empty route");
+		} catch (IndexOutOfBoundsException e) {
+			/* expected */
+		}
+	}
+
+	private Route getRoute(int source, int target) {
+		NodeIndex nodeIndex = graph.getNodeIndex();
+		return graph.getRoute(nodeIndex.get(source).getName(), nodeIndex.get(target).getName(), RoutingProfile.ALL);
+	}
+
+	private static void checkSegments(RouteSimplifier simplifier, Route route, double tolerance) {
+		assertTrue(simplifier.getSegmentCount() >= 1 && simplifier.getSegmentCount() <= route.getEdgeCount());
+		assertEquals(0, simplifier.getStart(0));
+		assertEquals(route.getEdgeCount(), simplifier.getEnd(simplifier.getSegmentCount() - 1));
+
+		double length = 0;
+		for (int i = 0; i < simplifier.getSegmentCount(); i++) {
+			int start = simplifier.getStart(i);
+			int end = simplifier.getEnd(i);
+			assertTrue("empty segment", start < end);
+			if (i > 0) {
+				assertEquals("the segments follow each other", simplifier.getEnd(i - 1), start);
+			}
+			assertSame(route.getNode(start), simplifier.getStartNode(i));
+			assertSame(route.getNode(end), simplifier.getEndNode(i));
+
+			double segmentLength = 0;
+			int steps = 0;
+			for (int e = start; e < end; e++) {
+				assertEquals(route.getLevel(start), route.getLevel(e), 0);
+				assertEquals(route.isIndoor(start), route.isIndoor(e));
+				assertEquals(route.isStairs(start), route.isStairs(e));
+				assertEquals(route.isElevator(start), route.isElevator(e));
+				assertTrue(BestFitPositioner.isInRange(route.getBearing(start), route.getBearing(e), tolerance));
+				segmentLength += route.getEdgeLength(e);
+				steps = (steps == -1 || route.getSteps(e) == -1) ? -1 : steps + route.getSteps(e);
+			}
+			assertEquals(segmentLength, simplifier.getLength(i), TestMaps.EPSILON);
+			assertEquals(steps, simplifier.getSteps(i));
+			assertEquals(route.getLevel(start), simplifier.getLevel(i), 0);
+			assertEquals(route.isStairs(start), simplifier.isStairs(i));
+
+			/* the first edge of the next segment can not be merged into this one */
+			if (i + 1 < simplifier.getSegmentCount()) {
+				int next = simplifier.getStart(i + 1);
+				assertTrue("the next edge could have been merged", route.getLevel(start) != route.getLevel(next)
+						|| route.isIndoor(start) != route.isIndoor(next)
+						|| route.isStairs(start) != route.isStairs(next)
+						|| route.isElevator(start) != route.isElevator(next)
+						|| !BestFitPositioner.isInRange(route.getBearing(start), route.getBearing(next), tolerance));
+			}
+			length += simplifier.getLength(i);
+		}
+		assertEquals(route.getLength(), length, TestMaps.EPSILON);
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the routes of every {@link SearchMode} with plain Dijkstra searches of {@link PathFinder}.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+public class SearchModeTest {
+	private static final int QUERIES = 300;
+
+	private Graph graph;
+	private RoutingGraph routing;
+	private int[] rooms;
+	private PathFinder reference;
+	private SearchWorkspace ws;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = TestMaps.createGraph(14, 10, 3, 1);
+		graph.getRouteCache().setCapacity(0);
+		routing = graph.getRoutingGraph();
+		rooms = TestMaps.getRooms(graph);
+		reference = new PathFinder(routing);
+		ws = reference.createWorkspace();
+	}
+
+	@Test
+	public void testModesMatchDijkstra() {
+		for (SearchMode mode : SearchMode.values()) {
+			graph.setSearchMode(mode);
+			checkRoutes(mode.name(), null);
+		}
+	}
+
+	@Test
+	public void testModesAvoidClosuresAndCongestion() {
+		Closures closures = new Closures(routing);
+		EdgeWeights weights = new EdgeWeights(routing, graph.getEdges().size());
+		Random random = new Random(2);
+		for (int i = 0; i < routing.getNodeCount() / 30; i++) {
+			int u = random.nextInt(routing.getNodeCount());
+			if (routing.getFirstArc(u + 1) > routing.getFirstArc(u)) {
+				int v = routing.getArcHead(routing.getFirstArc(u));
+				graph.setPassageClosed(graph.getNodeIndex().get(u), graph.getNodeIndex().get(v), true);
+				closures.setPassageClosed(u, v, true);
+			}
+		}
+		for (int i = 0; i < routing.getArcCount() / 10; i++) {
+			int edge = routing.getArcEdge(random.nextInt(routing.getArcCount()));
+			float factor = 1 + 3 * random.nextFloat();
+			graph.getEdgeWeights().set(edge, factor);
+			weights.set(edge, factor);
+		}
+		graph.applyCongestion();
+		weights.apply();
+		reference.setClosures(closures);
+		reference.setEdgeWeights(weights);
+
+		for (SearchMode mode : SearchMode.values()) {
+			graph.setSearchMode(mode);
+			checkRoutes(mode.name(), closures);
+		}
+
+		/* the paths of the room table were computed without the closures and congestion */
+		graph.computeRoomTable(2);
+		graph.setSearchMode(SearchMode.DIJKSTRA);
+		checkRoutes("room table", closures);
+	}
+
+	@Test
+	public void testRoomTableMatchesDijkstra() {
+		graph.computeRoomTable(2);
+		checkRoutes("room table", null);
+	}
+
+	private void checkRoutes(String name, Closures closures) {
+		Random random = new Random(3);
+		for (int q = 0; q < QUERIES; q++) {
+			int source = rooms[random.nextInt(rooms.length)];
+			int target = rooms[random.nextInt(rooms.length)];
+			int profile = TestMaps.PROFILES[q % TestMaps.PROFILES.length];
+
+			Route route = graph.getRoute(graph.getNodeIndex().get(source).getName(), graph.getNodeIndex().get(target).getName(), profile);
+			if (!reference.findPath(ws, source, target, profile)) {
+				assertNull(name + ": route to an unreachable node", route);
+				continue;
+			}
+
+			assertNotNull(name + ": no route from " + source + " to " + target, route);
+			assertEquals(name + ": start of the route", source, route.getNodeIndex(0));
+			int[] arcs = new int[route.getEdgeCount()];
+			for (int i = 0; i < arcs.length; i++) {
+				arcs[i] = route.getArc(i);
+			}
+			double length = TestMaps.checkPath(routing, source, target, arcs, profile, closures);
+			assertEquals(name + ": length of the route", length, route.getLength(), TestMaps.EPSILON);
+			assertEquals(name + ": cost of the route", ws.getDistance(target), route.getCost(), TestMaps.EPSILON);
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2015 Aron Koszo
+ *
+ * This file is part of UniNav.
+ *
+ * UniNav is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UniNav is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with UniNav.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.koszoaron.uninav.footpath.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.kxml2.io.KXmlParser;
+
+/**
+ * Synthetic maps for the tests of the routing algorithms, and the checks shared by the tests.
+ *
+ * A map is a grid of corridors on more levels in the JOSM flavour of the maps of the app. The
+ * levels are connected by stairs and elevators whose landings are merged by their merge IDs,
+ * about a third of the nodes are named rooms and a few outdoor paths lead around the ground floor.
+ * The corridors are broken into ways of random length and some are missing, so the grid has
+ * chains of degree 2 nodes and dead ends too.
+ *
+ * @author Aron Koszo <koszoaron@gmail.com>
+ */
+final class TestMaps {
+	/** The profiles the tests are run with, including one which can not leave the ground floor. */
+	static final int[] PROFILES = {
+		RoutingProfile.ALL,
+		RoutingProfile.WHEELCHAIR,
+		RoutingProfile.NO_ELEVATOR,
+		RoutingProfile.INDOOR_ONLY,
+		RoutingProfile.of(false, false, false)
+	};
+
+	/* the tolerance of the compared path lengths, the lengths are sums of doubles in different orders */
+	static final double EPSILON = 1e-6;
+
+	private TestMaps() {
+	}
+
+	/**
+	 * Creates and merges a synthetic graph.
+	 *
+	 * @param width The number of nodes of a level in east-west direction.
+	 * @param height The number of nodes of a level in north-south direction.
+	 * @param levels The number of levels.
+	 * @param seed The seed of the random choices, the same seed gives the same map.
+	 */
+	static Graph createGraph(int width, int height, int levels, long seed) throws Exception {
+		KXmlParser parser = new KXmlParser();
+		parser.setInput(new StringReader(createMap(width, height, levels, seed)));
+
+		Graph graph = new Graph();
+		graph.addToGraphFromXmlPullParser(parser);
+		graph.mergeNodes();
+		return graph;
+	}
+
+	/**
+	 * Creates the XML of a synthetic map, see {@link #createGraph(int, int, int, long)}.
+	 */
+	static String createMap(int width, int height, int levels, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version='1.0' encoding='UTF-8'?>\n<osm version='0.6' generator='JOSM'>\n");
+
+		long[] id = {-1};
+		long[][][] grid = new long[levels][width][height];
+		for (int l = 0; l < levels; l++) {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					List<String> tags = new ArrayList<>();
+					tags.add("indoor=yes");
+					tags.add("level=" + l);
+					if (random.nextDouble() < 0.3) {
+						tags.add("name=R" + l + "-" + x + "-" + y);
+					}
+					if (l > 0 && x % 4 == 1 && y % 4 == 1) {
+						tags.add("merge_id=S" + x + "_" + y + "_" + l);
+					}
+					if (l > 0 && x % 5 == 3 && y % 5 == 2) {
+						tags.add("merge_id=E" + x + "_" + y + "_" + l);
+					}
+					grid[l][x][y] = appendNode(sb, id, 46.246 + y * 0.00004 + jitter(random), 20.146 + x * 0.00005 + jitter(random), tags);
+				}
+			}
+		}
+
+		List<long[]> ways = new ArrayList<>();
+		List<String> wayTags = new ArrayList<>();
+		for (int l = 0; l < levels; l++) {
+			String corridor = "highway=footway;indoor=yes;level=" + l;
+			for (int y = 0; y < height; y++) {
+				int i = 0;
+				while (i < width - 1) {
+					int j = Math.min(width - 1, i + 1 + random.nextInt(4));
+					if (random.nextDouble() < 0.9) {
+						long[] refs = new long[j - i + 1];
+						for (int x = i; x <= j; x++) {
+							refs[x - i] = grid[l][x][y];
+						}
+						ways.add(refs);
+						wayTags.add(corridor);
+					}
+					i = j;
+				}
+			}
+			for (int x = 0; x < width; x++) {
+				if (random.nextBoolean()) {
+					ways.add(grid[l][x].clone());
+					wayTags.add(corridor);
+				}
+			}
+			ways.add(new long[] {grid[l][0][0], grid[l][width - 1][0], grid[l][width - 1][height - 1]});
+			wayTags.add("indoor=wall;level=" + l);
+		}
+
+		/* the landings of the stairs and elevators are merged with the grid nodes of the level above */
+		for (int l = 0; l + 1 < levels; l++) {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					if (x % 4 == 1 && y % 4 == 1) {
+						long landing = appendNode(sb, id, 46.246 + y * 0.00004 + 0.00001, 20.146 + x * 0.00005,
+								tags("indoor=yes", "level=" + (l + 1), "merge_id=S" + x + "_" + y + "_" + (l + 1)));
+						ways.add(new long[] {grid[l][x][y], landing});
+						wayTags.add("highway=steps;highway=footway;indoor=yes;level=" + l
+								+ (random.nextBoolean() ? ";step_count=" + (10 + random.nextInt(10)) : ""));
+					}
+					if (x % 5 == 3 && y % 5 == 2) {
+						long landing = appendNode(sb, id, 46.246 + y * 0.00004, 20.146 + x * 0.00005 + 0.00001,
+								tags("indoor=yes", "level=" + (l + 1), "merge_id=E" + x + "_" + y + "_" + (l + 1)));
+						ways.add(new long[] {grid[l][x][y], landing});
+						wayTags.add("highway=elevator;highway=footway;indoor=yes;level=" + l);
+					}
+				}
+			}
+		}
+
+		/* outdoor paths connecting some doors of the ground floor */
+		long previous = 0;
+		for (int k = 0; k < Math.max(1, width / 3); k++) {
+			long a = appendNode(sb, id, 46.2455 - k * 0.00003, 20.146 + k * 0.0001, tags("level=0"));
+			long b = appendNode(sb, id, 46.2454 - k * 0.00003, 20.1462 + k * 0.0001, tags("level=0", "name=Out" + k));
+			ways.add(new long[] {grid[0][Math.min(width - 1, 3 * k)][0], a, b});
+			wayTags.add("highway=footway;level=0");
+			if (k > 0) {
+				ways.add(new long[] {b, previous});
+				wayTags.add("highway=footway;level=0");
+			}
+			previous = b;
+		}
+
+		long wayId = -1000000;
+		for (int w = 0; w < ways.size(); w++) {
+			sb.append("  <way id='").append(--wayId).append("' visible='true'>\n");
+			for (long ref : ways.get(w)) {
+				sb.append("    <nd ref='").append(ref).append("' />\n");
+			}
+			appendTags(sb, tags(wayTags.get(w).split(";")));
+			sb.append("  </way>\n");
+		}
+		sb.append("</osm>\n");
+		return sb.toString();
+	}
+
+	private static double jitter(Random random) {
+		return (random.nextDouble() - 0.5) * 2e-5;
+	}
+
+	private static List<String> tags(String... tags) {
+		List<String> list = new ArrayList<>();
+		for (String tag : tags) {
+			list.add(tag);
+		}
+		return list;
+	}
+
+	private static long appendNode(StringBuilder sb, long[] id, double lat, double lon, List<String> tags) {
+		id[0]--;
+		sb.append(String.format(Locale.US, "  <node id='%d' visible='true' lat='%.9f' lon='%.9f'>\n", id[0], lat, lon));
+		appendTags(sb, tags);
+		sb.append("  </node>\n");
+		return id[0];
+	}
+
+	private static void appendTags(StringBuilder sb, List<String> tags) {
+		for (String tag : tags) {
+			int eq = tag.indexOf('=');
+			sb.append("    <tag k='").append(tag.substring(0, eq)).append("' v='").append(tag.substring(eq + 1)).append("' />\n");
+		}
+	}
+
+	/**
+	 * Checks that arcs form a path between two nodes which can be used with a profile.
+	 *
+	 * @param graph The routing graph.
+	 * @param source The index of the first node of the path.
+	 * @param target The index of the last node of the path.
+	 * @param arcs The arcs of the path.
+	 * @param profile The routing profile.
+	 * @param closures The closed arcs the path must avoid, or null.
+	 * @return The length of the path.
+	 */
+	static double checkPath(RoutingGraph graph, int source, int target, int[] arcs, int profile, Closures closures) {
+		double length = 0;
+		int node = source;
+		for (int arc : arcs) {
+			assertTrue("arc " + arc + " does not leave node " + node, arc >= graph.getFirstArc(node) && arc < graph.getFirstArc(node + 1));
+			assertTrue("arc " + arc + " is not allowed with profile " + profile, graph.isAllowed(arc, profile));
+			assertTrue("arc " + arc + " is closed", closures == null || !closures.isClosed(arc));
+			length += graph.getArcLength(arc);
+			node = graph.getArcHead(arc);
+		}
+		assertEquals("end of the path", target, node);
+		return length;
+	}
+
+	/**
+	 * Returns the length of the shortest arc between two nodes which can be used with a profile.
+	 *
+	 * @param blocked The arcs which must not be used, or null.
+	 */
+	static double getArcLength(RoutingGraph graph, int u, int v, int profile, boolean[] blocked) {
+		double length = Double.POSITIVE_INFINITY;
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v && graph.isAllowed(a, profile) && (blocked == null || !blocked[a])) {
+				length = Math.min(length, graph.getArcLength(a));
+			}
+		}
+		assertTrue("no usable arc from " + u + " to " + v, length < Double.POSITIVE_INFINITY);
+		return length;
+	}
+
+	/**
+	 * Blocks or opens the arcs between two nodes in both directions.
+	 */
+	static void setBlocked(RoutingGraph graph, boolean[] blocked, int u, int v, boolean isBlocked) {
+		for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+			if (graph.getArcHead(a) == v) {
+				blocked[a] = isBlocked;
+			}
+		}
+		for (int a = graph.getFirstArc(v); a < graph.getFirstArc(v + 1); a++) {
+			if (graph.getArcHead(a) == u) {
+				blocked[a] = isBlocked;
+			}
+		}
+	}
+
+	/**
+	 * Returns the distances of all nodes from a source with a plain Dijkstra search, which does not
+	 * depend on the {@link PathFinder}.
+	 *
+	 * @param blocked The arcs which must not be used, or null.
+	 * @return The distances by node, infinity if the node is not reachable.
+	 */
+	static double[] getDistances(RoutingGraph graph, int source, int profile, boolean[] blocked) {
+		final double[] distances = new double[graph.getNodeCount()];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		distances[source] = 0;
+		PriorityQueue<double[]> queue = new PriorityQueue<>(16, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] a, double[] b) {
+				return Double.compare(a[0], b[0]);
+			}
+		});
+		queue.add(new double[] {0, source});
+
+		while (!queue.isEmpty()) {
+			double[] entry = queue.poll();
+			int u = (int) entry[1];
+			if (entry[0] > distances[u]) {
+				continue;  /* settled before with a shorter distance */
+			}
+			for (int a = graph.getFirstArc(u); a < graph.getFirstArc(u + 1); a++) {
+				if (!graph.isAllowed(a, profile) || (blocked != null && blocked[a])) {
+					continue;
+				}
+				int v = graph.getArcHead(a);
+				double dv = distances[u] + graph.getArcLength(a);
+				if (dv < distances[v]) {
+					distances[v] = dv;
+					queue.add(new double[] {dv, v});
+				}
+			}
+		}
+
+		return distances;
+	}
+
+	/**
+	 * Returns the indices of the named nodes of a graph.
+	 */
+	static int[] getRooms(Graph graph) {
+		List<String> names = graph.getRoomsList();
+		int[] rooms = new int[names.size()];
+		for (int i = 0; i < rooms.length; i++) {
+			rooms[i] = graph.getNodeIndex().indexOf(graph.getNodeFromName(names.get(i)));
+		}
+		return rooms;
+	}
+}